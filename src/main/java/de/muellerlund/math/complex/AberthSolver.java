@@ -0,0 +1,159 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds all zeros of a complex polynomial simultaneously by the Aberth–Ehrlich method.
+ *
+ * <p>Slower than Newton's method with deflation for well-behaved polynomials, but it converges from the standard
+ * start values for practically every polynomial, so it serves as a fallback if Newton's method doesn't converge.</p>
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Aberth_method">Aberth method</a>
+ */
+public final class AberthSolver {
+    private AberthSolver() {
+    }
+
+    /**
+     * Approximations of all zeros and the telemetry of their search.
+     *
+     * @param zeros The approximations of the zeros.
+     * @param iterations The number of iteration steps.
+     * @param evaluations The number of evaluations of the polynomial and its derivative.
+     */
+    public record Result(List<MutableComplex> zeros, int iterations, int evaluations) {
+    }
+
+    /**
+     * Approximates all zeros of the given polynomial, multiple zeros appear multiple times.
+     *
+     * <p>The iteration stops if all zeros are found or after {@code maxIterations} steps, so the result may be
+     * inaccurate for pathological polynomials but the method never spins.</p>
+     *
+     * @param p The given complex polynomial of degree at least 1.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of iteration steps.
+     * @return {@code p.degree()} approximations of the zeros.
+     */
+    public static List<MutableComplex> solveAll(ComplexPolynomial p, double eps2, int maxIterations) {
+        return solve(p, eps2, maxIterations).zeros();
+    }
+
+    /**
+     * Approximates all zeros of the given polynomial as {@link #solveAll(ComplexPolynomial, double, int)} does.
+     *
+     * @param p The given complex polynomial of degree at least 1.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of iteration steps.
+     * @return {@code p.degree()} approximations of the zeros and the telemetry of their search.
+     */
+    public static Result solve(ComplexPolynomial p, double eps2, int maxIterations) {
+        int n = p.degree();
+
+        if (n < 1) {
+            throw new IllegalArgumentException("Degree of polynomial must be at least 1.");
+        }
+
+        if (eps2 <= 0.0) {
+            throw new IllegalArgumentException("ε² must be positive.");
+        }
+
+        ComplexPolynomial pd = p.derivative();
+        MutableComplex[] z = startValues(p);
+        boolean[] done = new boolean[n];
+        int iterations = 0;
+        int evaluations = 0;
+
+        while (iterations < maxIterations) {
+            boolean converged = true;
+            iterations++;
+
+            for (int i = 0; i < n; i++) {
+                if (done[i]) {
+                    continue;
+                }
+
+                MutableComplex w = p.apply(z[i]);
+                evaluations++;
+
+                if (w.norm() < eps2) {
+                    done[i] = true;
+                    continue;
+                }
+
+                converged = false;
+
+                // ratio = p / p', offset = ratio / (1 - ratio * Σ 1 / (z_i - z_j))
+                MutableComplex ratio = w.div(pd.apply(z[i]));
+                evaluations++;
+                MutableComplex sum = MutableComplex.zero();
+
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        sum.add(z[i].clone().sub(z[j]).inv());
+                    }
+                }
+
+                MutableComplex denominator = MutableComplex.one().sub(sum.mult(ratio));
+                MutableComplex offset = ratio.div(denominator);
+
+                if (offset.isNaN() || offset.isInfinite()) {
+                    // z_i hit a zero of p' or another approximation, shake it a bit
+                    z[i].add(new MutableComplex(1e-7 * (i + 1), 1e-7));
+                }
+                else {
+                    z[i].sub(offset);
+                }
+            }
+
+            if (converged) {
+                break;
+            }
+        }
+
+        List<MutableComplex> zeros = new ArrayList<>(n);
+        for (MutableComplex zi : z) {
+            zeros.add(zi);
+        }
+
+        return new Result(zeros, iterations, evaluations);
+    }
+
+    private static MutableComplex[] startValues(ComplexPolynomial p) {
+        int n = p.degree();
+        double an = p.get(n).abs();
+
+        // Fujiwara's bound for the absolute values of the zeros
+        double r = 0.0;
+        for (int k = 0; k < n; k++) {
+            r = Math.max(r, Math.pow(p.get(k).abs() / an, 1.0 / (n - k)));
+        }
+        r = Math.max(2.0 * r, 1e-3);
+
+        // asymmetric offset to avoid symmetric configurations
+        MutableComplex[] z = new MutableComplex[n];
+        for (int k = 0; k < n; k++) {
+            z[k] = MutableComplex.polar(r, 2.0 * Math.PI * k / n + 0.4);
+        }
+
+        return z;
+    }
+}
@@ -0,0 +1,732 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+/**
+ * Reusable primitive workspace finding all zeros of a complex polynomial without allocations.
+ *
+ * <p>Does the same as {@link NewtonSolver#solveAll(ComplexPolynomial, MutableComplex, double, int,
+ * NewtonSolver.Listener)} (damped Newton's method, deflation of each zero found, closed forms for the last two
+ * zeros and the Aberth–Ehrlich method as fallback) but iteratively on {@code double} arrays: the polynomial is
+ * deflated in place by synthetic division, the derivatives are evaluated in the same Horner pass as the polynomial
+ * and the zeros are written to output arrays. Arrays only grow if a polynomial of a higher degree than before is
+ * solved.</p>
+ *
+ * <p>Instead of Newton's method Laguerre's or Halley's method may be used to find each zero, see
+ * {@link RootMethod}. Both need p, p' and p'' per step but converge cubically. They don't estimate multiplicities,
+ * a multiple zero is found as a cluster of simple ones.</p>
+ *
+ * <p>Not thread-safe, use one instance per thread.</p>
+ */
+public final class DeflationWorkspace {
+
+    // iteration budget of the Aberth-Ehrlich fallback
+    private static final int MAX_ABERTH_ITERATIONS = 500;
+
+    // coefficients of the working polynomial, a[lo + k] belongs to z^k
+    private double[] are = new double[0];
+    private double[] aim = new double[0];
+    private int lo;
+    private int degree;
+
+    // scratch for higher derivatives and the Aberth-Ehrlich approximations
+    private double[] tre = new double[0];
+    private double[] tim = new double[0];
+
+    // output
+    private double[] zre = new double[0];
+    private double[] zim = new double[0];
+    private int[] quantities = new int[0];
+    private int count;
+
+    // result of the last evaluation
+    private double pre;
+    private double pim;
+    private double dre;
+    private double dim;
+    private double sre;
+    private double sim;
+
+    // telemetry of the current zero
+    private int evaluations;
+
+    /**
+     * Finds all zeros of {@code a[n] z^n + … + a[1] z + a[0] - s}.
+     *
+     * <p>The coefficients are given in ascending order, which is the reverse order of the
+     * {@link ComplexPolynomial#ComplexPolynomial(MutableComplex...) natural constructor}.</p>
+     *
+     * @param re Real parts of the coefficients, {@code re[k]} belongs to {@code z^k}.
+     * @param im Imaginary parts of the coefficients.
+     * @param n The degree of the polynomial, the highest coefficient must not be zero.
+     * @param sre The real part of the value to subtract from the constant coefficient.
+     * @param sim The imaginary part of the value to subtract from the constant coefficient.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of Newton steps per zero.
+     * @param listener Gets notified about every zero found by Newton's method, may be {@code null}.
+     * @return the number of distinct zeros, see {@link #re(int)}, {@link #im(int)} and {@link #quantity(int)}.
+     */
+    public int solveAll(double[] re, double[] im, int n, double sre, double sim, double eps2, int maxIterations,
+                        NewtonSolver.Listener listener) {
+        return solveAll(re, im, n, sre, sim, eps2, maxIterations, RootMethod.NEWTON, listener);
+    }
+
+    /**
+     * Finds all zeros of {@code a[n] z^n + … + a[1] z + a[0] - s} with the given iteration for each zero.
+     *
+     * @param re Real parts of the coefficients, {@code re[k]} belongs to {@code z^k}.
+     * @param im Imaginary parts of the coefficients.
+     * @param n The degree of the polynomial, the highest coefficient must not be zero.
+     * @param sre The real part of the value to subtract from the constant coefficient.
+     * @param sim The imaginary part of the value to subtract from the constant coefficient.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of iteration steps per zero.
+     * @param method The iteration to find a single zero.
+     * @param listener Gets notified about every zero found, may be {@code null}.
+     * @return the number of distinct zeros, see {@link #re(int)}, {@link #im(int)} and {@link #quantity(int)}.
+     */
+    public int solveAll(double[] re, double[] im, int n, double sre, double sim, double eps2, int maxIterations,
+                        RootMethod method, NewtonSolver.Listener listener) {
+        return solveAll(re, im, n, sre, sim, eps2, maxIterations, method, listener, null, null, 0);
+    }
+
+    /**
+     * Finds all zeros of {@code a[n] z^n + … + a[1] z + a[0] - s} starting the searches at given approximations, e.g.
+     * the zeros of a slightly different polynomial. The search for the {@code j}-th zero starts at
+     * {@code seed[offset + j]} and the zeros are ordered to match the seeds, so they follow their approximations
+     * continuously.
+     *
+     * @param re Real parts of the coefficients, {@code re[k]} belongs to {@code z^k}.
+     * @param im Imaginary parts of the coefficients.
+     * @param n The degree of the polynomial, the highest coefficient must not be zero.
+     * @param sre The real part of the value to subtract from the constant coefficient.
+     * @param sim The imaginary part of the value to subtract from the constant coefficient.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of iteration steps per zero.
+     * @param method The iteration to find a single zero.
+     * @param listener Gets notified about every zero found, may be {@code null}.
+     * @param seedRe Real parts of the approximations, {@code null} to start as without seeds. {@code NaN} entries
+     * are skipped.
+     * @param seedIm Imaginary parts of the approximations.
+     * @param offset The index of the approximation of the first zero.
+     * @return the number of distinct zeros, see {@link #re(int)}, {@link #im(int)} and {@link #quantity(int)}.
+     */
+    public int solveAll(double[] re, double[] im, int n, double sre, double sim, double eps2, int maxIterations,
+                        RootMethod method, NewtonSolver.Listener listener, double[] seedRe, double[] seedIm,
+                        int offset) {
+        if (eps2 <= 0.0) {
+            throw new IllegalArgumentException("ε² must be positive.");
+        }
+
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Iteration budget must be positive.");
+        }
+
+        ensureCapacity(n + 1);
+        System.arraycopy(re, 0, are, 0, n + 1);
+        System.arraycopy(im, 0, aim, 0, n + 1);
+        are[0] -= sre;
+        aim[0] -= sim;
+        lo = 0;
+        degree = n;
+        count = 0;
+
+        // start of the first search as NewtonSolver does for z0 == null
+        double zr = 0.0;
+        double zi = 0.0;
+
+        while (degree > 2) {
+            if (seedRe != null && !Double.isNaN(seedRe[offset + count])) {
+                zr = seedRe[offset + count];
+                zi = seedIm[offset + count];
+            }
+
+            int q = method == RootMethod.NEWTON
+                    ? newton(zr, zi, eps2, maxIterations, listener)
+                    : cubic(method, zr, zi, eps2, maxIterations, listener);
+            zr = zre[count - 1];
+            zi = zim[count - 1];
+
+            for (int k = 0; k < q && degree > 0; k++) {
+                deflate(zr, zi);
+            }
+        }
+
+        if (degree == 2) {
+            quadratic(eps2);
+        }
+        else if (degree == 1) {
+            // z = -a0 / a1
+            double d = are[lo + 1] * are[lo + 1] + aim[lo + 1] * aim[lo + 1];
+            double r = -(are[lo] * are[lo + 1] + aim[lo] * aim[lo + 1]) / d;
+            double i = -(aim[lo] * are[lo + 1] - are[lo] * aim[lo + 1]) / d;
+            add(r, i, 1);
+        }
+
+        if (seedRe != null) {
+            match(seedRe, seedIm, offset);
+        }
+
+        return count;
+    }
+
+    /**
+     * Orders the zeros greedily by the seeds: the {@code j}-th zero is the one closest to the {@code j}-th seed among
+     * the remaining ones.
+     */
+    private void match(double[] seedRe, double[] seedIm, int offset) {
+        for (int j = 0; j < count; j++) {
+            double sr = seedRe[offset + j];
+            double si = seedIm[offset + j];
+
+            if (Double.isNaN(sr)) {
+                continue;
+            }
+
+            int nearest = j;
+            double min = Double.MAX_VALUE;
+
+            for (int k = j; k < count; k++) {
+                double dr = zre[k] - sr;
+                double di = zim[k] - si;
+                double d = dr * dr + di * di;
+
+                if (d < min) {
+                    min = d;
+                    nearest = k;
+                }
+            }
+
+            double tr = zre[j];
+            double ti = zim[j];
+            int tq = quantities[j];
+            zre[j] = zre[nearest];
+            zim[j] = zim[nearest];
+            quantities[j] = quantities[nearest];
+            zre[nearest] = tr;
+            zim[nearest] = ti;
+            quantities[nearest] = tq;
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public double re(int i) {
+        return zre[i];
+    }
+
+    public double im(int i) {
+        return zim[i];
+    }
+
+    public int quantity(int i) {
+        return quantities[i];
+    }
+
+    /**
+     * Damped Newton's method on the working polynomial, adds the zero and returns its multiplicity.
+     */
+    private int newton(double zr, double zi, double eps2, int maxIterations, NewtonSolver.Listener listener) {
+        evaluations = 0;
+        int d = degree;
+
+        evaluate(zr, zi);
+        double wn = pre * pre + pim * pim;
+
+        if (wn < eps2) { // maybe we enter with a zero
+            int k = multiplicity(zr, zi, eps2);
+            add(zr, zi, k);
+            notify(listener, 0, wn, false);
+            return k;
+        }
+
+        for (int iterations = 1; iterations <= maxIterations; iterations++) {
+            divider(zr, zi);
+
+            // qt = p(z) / divider
+            double dn = dre * dre + dim * dim;
+            double qr = (pre * dre + pim * dim) / dn;
+            double qi = (pim * dre - pre * dim) / dn;
+
+            if (Double.isInfinite(qr) || Double.isInfinite(qi) || Double.isNaN(qr) || Double.isNaN(qi)) {
+                // (almost) critical point, the step overflows
+                break;
+            }
+
+            double mn = Double.MAX_VALUE;
+            double mr = 0.0;
+            double mi = 0.0;
+            int q = 0;
+
+            for (int k = 0; k < d; k++) {
+                double nr = zr - qr * (k + 1);
+                double ni = zi - qi * (k + 1);
+                double nn = value(nr, ni);
+
+                if (nn < mn) {
+                    q = k;
+                    mn = nn;
+                    mr = nr;
+                    mi = ni;
+                }
+                else {
+                    break;
+                }
+            }
+
+            if (mn < eps2) {
+                add(mr, mi, q + 1);
+                notify(listener, iterations, mn, false);
+                return q + 1;
+            }
+
+            zr = mr;
+            zi = mi;
+        }
+
+        return escalate(zr, zi, eps2, maxIterations, listener);
+    }
+
+    /**
+     * Laguerre's or Halley's method on the working polynomial, adds the zero and returns its multiplicity which is
+     * always 1 unless we enter with a zero.
+     */
+    private int cubic(RootMethod method, double zr, double zi, double eps2, int maxIterations,
+                      NewtonSolver.Listener listener) {
+        evaluations = 0;
+        int n = degree;
+
+        for (int iterations = 0; iterations <= maxIterations; iterations++) {
+            evaluate2(zr, zi);
+            double wn = pre * pre + pim * pim;
+
+            if (wn < eps2) {
+                int k = iterations == 0 ? multiplicity(zr, zi, eps2) : 1;
+                add(zr, zi, k);
+                notify(listener, iterations, wn, false);
+                return k;
+            }
+
+            if (iterations == maxIterations) {
+                break;
+            }
+
+            double ar;
+            double ai;
+
+            if (method == RootMethod.LAGUERRE) {
+                // G = p' / p, H = G² - p'' / p
+                double gr = (dre * pre + dim * pim) / wn;
+                double gi = (dim * pre - dre * pim) / wn;
+                double hr = gr * gr - gi * gi - (sre * pre + sim * pim) / wn;
+                double hi = 2.0 * gr * gi - (sim * pre - sre * pim) / wn;
+
+                // sq = sqrt((n - 1) (n H - G²))
+                double xr = (n - 1) * (n * hr - (gr * gr - gi * gi));
+                double xi = (n - 1) * (n * hi - 2.0 * gr * gi);
+                double xa = Math.sqrt(xr * xr + xi * xi);
+                double qr = Math.sqrt((xa + xr) / 2);
+                double qi = (xi >= 0 ? 1 : -1) * Math.sqrt((xa - xr) / 2);
+
+                // a = n / (G ± sq) with the larger denominator
+                double pr = gr + qr;
+                double pi = gi + qi;
+                double mr = gr - qr;
+                double mi = gi - qi;
+                double pn = pr * pr + pi * pi;
+                double mn = mr * mr + mi * mi;
+
+                if (mn > pn) {
+                    pr = mr;
+                    pi = mi;
+                    pn = mn;
+                }
+
+                if (pn == 0.0) {
+                    // p' = p'' = 0, step out of the critical point
+                    ar = -1e-3 * (1.0 + Math.hypot(zr, zi));
+                    ai = 0.5 * ar;
+                }
+                else {
+                    ar = n * pr / pn;
+                    ai = -n * pi / pn;
+                }
+            }
+            else {
+                // a = 2 p p' / (2 p'² - p p'')
+                double ur = 2.0 * (pre * dre - pim * dim);
+                double ui = 2.0 * (pre * dim + pim * dre);
+                double vr = 2.0 * (dre * dre - dim * dim) - (pre * sre - pim * sim);
+                double vi = 4.0 * dre * dim - (pre * sim + pim * sre);
+                double vn = vr * vr + vi * vi;
+
+                if (vn == 0.0) {
+                    ar = -1e-3 * (1.0 + Math.hypot(zr, zi));
+                    ai = 0.5 * ar;
+                }
+                else {
+                    ar = (ur * vr + ui * vi) / vn;
+                    ai = (ui * vr - ur * vi) / vn;
+                }
+            }
+
+            double nr = zr - ar;
+            double ni = zi - ai;
+
+            if (nr == zr && ni == zi) {
+                // stagnation within the precision of double, accept
+                add(zr, zi, 1);
+                notify(listener, iterations + 1, wn, false);
+                return 1;
+            }
+
+            zr = nr;
+            zi = ni;
+        }
+
+        return escalate(zr, zi, eps2, maxIterations, listener);
+    }
+
+    /**
+     * Evaluates the working polynomial and its first two derivatives at z in a single Horner pass.
+     */
+    private void evaluate2(double zr, double zi) {
+        double br = are[lo + degree];
+        double bi = aim[lo + degree];
+        double cr = 0.0;
+        double ci = 0.0;
+        double er = 0.0;
+        double ei = 0.0;
+
+        for (int k = degree - 1; k >= 0; k--) {
+            // e = e * z + c
+            double t = er * zr - ei * zi + cr;
+            ei = er * zi + ei * zr + ci;
+            er = t;
+            // c = c * z + b
+            t = cr * zr - ci * zi + br;
+            ci = cr * zi + ci * zr + bi;
+            cr = t;
+            // b = b * z + a[k]
+            t = br * zr - bi * zi + are[lo + k];
+            bi = br * zi + bi * zr + aim[lo + k];
+            br = t;
+        }
+
+        pre = br;
+        pim = bi;
+        dre = cr;
+        dim = ci;
+        sre = 2.0 * er;
+        sim = 2.0 * ei;
+        evaluations++;
+    }
+
+    /**
+     * Evaluates the working polynomial and its derivative at z by Horner's scheme.
+     */
+    private void evaluate(double zr, double zi) {
+        double br = are[lo + degree];
+        double bi = aim[lo + degree];
+        double cr = 0.0;
+        double ci = 0.0;
+
+        for (int k = degree - 1; k >= 0; k--) {
+            // c = c * z + b
+            double t = cr * zr - ci * zi + br;
+            ci = cr * zi + ci * zr + bi;
+            cr = t;
+            // b = b * z + a[k]
+            t = br * zr - bi * zi + are[lo + k];
+            bi = br * zi + bi * zr + aim[lo + k];
+            br = t;
+        }
+
+        pre = br;
+        pim = bi;
+        dre = cr;
+        dim = ci;
+        evaluations++;
+    }
+
+    /**
+     * Returns the square of the absolute value of the working polynomial at z.
+     */
+    private double value(double zr, double zi) {
+        double br = are[lo + degree];
+        double bi = aim[lo + degree];
+
+        for (int k = degree - 1; k >= 0; k--) {
+            double t = br * zr - bi * zi + are[lo + k];
+            bi = br * zi + bi * zr + aim[lo + k];
+            br = t;
+        }
+
+        evaluations++;
+
+        return br * br + bi * bi;
+    }
+
+    /**
+     * Sets (dre, dim) to the first derivative at z which is not zero, as NewtonSolver does.
+     */
+    private void divider(double zr, double zi) {
+        evaluate(zr, zi);
+
+        if (dre != 0.0 || dim != 0.0) {
+            return;
+        }
+
+        taylor(zr, zi);
+        double f = 1.0;
+
+        for (int k = 2; k <= degree; k++) {
+            f *= k;
+            if (tre[k] != 0.0 || tim[k] != 0.0) {
+                dre = f * tre[k];
+                dim = f * tim[k];
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException("Illegal zero-Polynomial.");
+    }
+
+    /**
+     * Returns the order of the first derivative which doesn't vanish at z (k-th derivative = k! t[k]).
+     */
+    private int multiplicity(double zr, double zi, double eps2) {
+        taylor(zr, zi);
+        double f = 1.0;
+
+        for (int k = 1; k <= degree; k++) {
+            f *= k;
+            if (f * f * (tre[k] * tre[k] + tim[k] * tim[k]) >= eps2) {
+                return k;
+            }
+        }
+
+        // should not happen! 😜
+        throw new IllegalStateException("Unexpected zero state.");
+    }
+
+    /**
+     * Computes the Taylor coefficients of the working polynomial at z into the scratch arrays by repeated synthetic
+     * division, i.e. {@code t[k] = p^(k)(z) / k!}.
+     */
+    private void taylor(double zr, double zi) {
+        System.arraycopy(are, lo, tre, 0, degree + 1);
+        System.arraycopy(aim, lo, tim, 0, degree + 1);
+
+        for (int i = 0; i < degree; i++) {
+            for (int k = degree - 1; k >= i; k--) {
+                double t = tre[k] + tre[k + 1] * zr - tim[k + 1] * zi;
+                tim[k] = tim[k] + tre[k + 1] * zi + tim[k + 1] * zr;
+                tre[k] = t;
+            }
+        }
+
+        evaluations += degree;
+    }
+
+    /**
+     * Divides the working polynomial by (x - z) in place, the remainder is dropped.
+     */
+    private void deflate(double zr, double zi) {
+        double cr = 0.0;
+        double ci = 0.0;
+
+        for (int k = degree; k >= 1; k--) {
+            double t = are[lo + k] + cr * zr - ci * zi;
+            ci = aim[lo + k] + cr * zi + ci * zr;
+            cr = t;
+            are[lo + k] = cr;
+            aim[lo + k] = ci;
+        }
+
+        lo++;
+        degree--;
+    }
+
+    private void quadratic(double eps2) {
+        // normalize: z² + b z + c
+        double ar = are[lo + 2];
+        double ai = aim[lo + 2];
+        double an = ar * ar + ai * ai;
+        double br = (are[lo + 1] * ar + aim[lo + 1] * ai) / an;
+        double bi = (aim[lo + 1] * ar - are[lo + 1] * ai) / an;
+        double cr = (are[lo] * ar + aim[lo] * ai) / an;
+        double ci = (aim[lo] * ar - are[lo] * ai) / an;
+
+        // p2 = b / 2, dis = sqrt(p2² - c)
+        double hr = br * 0.5;
+        double hi = bi * 0.5;
+        double xr = hr * hr - hi * hi - cr;
+        double xi = 2.0 * hr * hi - ci;
+        double xa = Math.sqrt(xr * xr + xi * xi);
+        double sr = Math.sqrt((xa + xr) / 2);
+        double si = (xi >= 0 ? 1 : -1) * Math.sqrt((xa - xr) / 2);
+
+        if (sr * sr + si * si <= eps2) {
+            add(-hr, -hi, 2);
+        }
+        else {
+            add(-hr + sr, -hi + si, 1);
+            add(-hr - sr, -hi - si, 1);
+        }
+    }
+
+    /**
+     * Determines all zeros of the working polynomial by the Aberth–Ehrlich method (as {@link AberthSolver}) and adds
+     * the one closest to z with the number of approximations within a small cluster radius as multiplicity.
+     */
+    private int escalate(double zr, double zi, double eps2, int iterations, NewtonSolver.Listener listener) {
+        int n = degree;
+        double an = Math.hypot(are[lo + n], aim[lo + n]);
+
+        // Fujiwara's bound for the absolute values of the zeros
+        double r = 0.0;
+        for (int k = 0; k < n; k++) {
+            r = Math.max(r, Math.pow(Math.hypot(are[lo + k], aim[lo + k]) / an, 1.0 / (n - k)));
+        }
+        r = Math.max(2.0 * r, 1e-3);
+
+        for (int k = 0; k < n; k++) {
+            double phi = 2.0 * Math.PI * k / n + 0.4;
+            tre[k] = r * Math.cos(phi);
+            tim[k] = r * Math.sin(phi);
+        }
+
+        int steps = 0;
+
+        while (steps < MAX_ABERTH_ITERATIONS) {
+            boolean converged = true;
+            steps++;
+
+            for (int i = 0; i < n; i++) {
+                evaluate(tre[i], tim[i]);
+
+                if (pre * pre + pim * pim < eps2) {
+                    continue;
+                }
+
+                converged = false;
+
+                // ratio = p / p'
+                double dn = dre * dre + dim * dim;
+                double rr = (pre * dre + pim * dim) / dn;
+                double ri = (pim * dre - pre * dim) / dn;
+
+                // sum = Σ 1 / (z_i - z_j)
+                double sr = 0.0;
+                double si = 0.0;
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        double ur = tre[i] - tre[j];
+                        double ui = tim[i] - tim[j];
+                        double un = ur * ur + ui * ui;
+                        sr += ur / un;
+                        si -= ui / un;
+                    }
+                }
+
+                // offset = ratio / (1 - ratio * sum)
+                double er = 1.0 - (rr * sr - ri * si);
+                double ei = -(rr * si + ri * sr);
+                double en = er * er + ei * ei;
+                double or = (rr * er + ri * ei) / en;
+                double oi = (ri * er - rr * ei) / en;
+
+                if (Double.isNaN(or) || Double.isNaN(oi) || Double.isInfinite(or) || Double.isInfinite(oi)) {
+                    // hit a zero of p' or another approximation, shake it a bit
+                    tre[i] += 1e-7 * (i + 1);
+                    tim[i] += 1e-7;
+                }
+                else {
+                    tre[i] -= or;
+                    tim[i] -= oi;
+                }
+            }
+
+            if (converged) {
+                break;
+            }
+        }
+
+        int nearest = 0;
+        double nd = Double.MAX_VALUE;
+        for (int k = 0; k < n; k++) {
+            double d = (tre[k] - zr) * (tre[k] - zr) + (tim[k] - zi) * (tim[k] - zi);
+            if (d < nd) {
+                nearest = k;
+                nd = d;
+            }
+        }
+
+        double cr = 1e-3 * (1.0 + Math.hypot(tre[nearest], tim[nearest]));
+        double sr = 0.0;
+        double si = 0.0;
+        int quantity = 0;
+
+        for (int k = 0; k < n; k++) {
+            double ur = tre[k] - tre[nearest];
+            double ui = tim[k] - tim[nearest];
+            if (ur * ur + ui * ui < cr * cr) {
+                sr += tre[k];
+                si += tim[k];
+                quantity++;
+            }
+        }
+
+        double vr = sr / quantity;
+        double vi = si / quantity;
+        add(vr, vi, quantity);
+
+        // the Newton and Aberth steps as NewtonSolver reports them
+        notify(listener, iterations + steps, value(vr, vi), true);
+
+        return quantity;
+    }
+
+    private void add(double re, double im, int quantity) {
+        zre[count] = re;
+        zim[count] = im;
+        quantities[count] = quantity;
+        count++;
+    }
+
+    private void notify(NewtonSolver.Listener listener, int iterations, double residual, boolean escalated) {
+        if (listener != null) {
+            listener.solved(iterations, evaluations, residual, escalated);
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (are.length < n) {
+            are = new double[n];
+            aim = new double[n];
+            tre = new double[n];
+            tim = new double[n];
+            zre = new double[n];
+            zim = new double[n];
+            quantities = new int[n];
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Mutable complex number with double-double precision (about 32 significant digits) for real and imaginary part.
+ *
+ * <p>Each part is the unevaluated sum {@code hi + lo} of two doubles with {@code |lo| <= ulp(hi) / 2}. The operations
+ * are the error-free transformations of Dekker and Knuth, using {@link Math#fma(double, double, double)} for the
+ * products, so they are only a few times slower than plain double arithmetic.</p>
+ *
+ * <p>As {@link MutableComplex} all operations modify and return {@code this}.</p>
+ *
+ * @see <a href="https://www.davidhbailey.com/dhbpapers/qd.pdf">Hida, Li, Bailey: Library for Double-Double and
+ * Quad-Double Arithmetic</a>
+ */
+public final class DoubleDoubleComplex implements Cloneable {
+
+    private double reHi;
+    private double reLo;
+    private double imHi;
+    private double imLo;
+
+    // result of the last error-free transformation
+    private double hi;
+    private double lo;
+
+    public DoubleDoubleComplex() {
+    }
+
+    public DoubleDoubleComplex(double re, double im) {
+        reHi = re;
+        imHi = im;
+    }
+
+    /**
+     * Creates a number from decimal representations of real and imaginary part keeping about 32 digits.
+     *
+     * @param re The real part, e.g. {@code "-0.743643887037158704752191506114774"}.
+     * @param im The imaginary part.
+     * @return the parsed number.
+     * @throws NumberFormatException if a part isn't a decimal number.
+     */
+    public static DoubleDoubleComplex parse(String re, String im) {
+        DoubleDoubleComplex z = new DoubleDoubleComplex();
+        BigDecimal r = new BigDecimal(re.trim());
+        BigDecimal i = new BigDecimal(im.trim());
+
+        z.reHi = r.doubleValue();
+        z.reLo = r.subtract(new BigDecimal(z.reHi), MathContext.DECIMAL128).doubleValue();
+        z.imHi = i.doubleValue();
+        z.imLo = i.subtract(new BigDecimal(z.imHi), MathContext.DECIMAL128).doubleValue();
+
+        return z;
+    }
+
+    public DoubleDoubleComplex assign(DoubleDoubleComplex z) {
+        reHi = z.reHi;
+        reLo = z.reLo;
+        imHi = z.imHi;
+        imLo = z.imLo;
+
+        return this;
+    }
+
+    public DoubleDoubleComplex assign(double re, double im) {
+        reHi = re;
+        reLo = 0.0;
+        imHi = im;
+        imLo = 0.0;
+
+        return this;
+    }
+
+    /**
+     * Returns the real part rounded to double.
+     *
+     * @return the real part rounded to double.
+     */
+    public double real() {
+        return reHi + reLo;
+    }
+
+    /**
+     * Returns the imaginary part rounded to double.
+     *
+     * @return the imaginary part rounded to double.
+     */
+    public double imag() {
+        return imHi + imLo;
+    }
+
+    public double realHi() {
+        return reHi;
+    }
+
+    public double realLo() {
+        return reLo;
+    }
+
+    public double imagHi() {
+        return imHi;
+    }
+
+    public double imagLo() {
+        return imLo;
+    }
+
+    /**
+     * Returns the square of the absolute value rounded to double.
+     *
+     * @return the square of the absolute value.
+     */
+    public double norm() {
+        double re = real();
+        double im = imag();
+
+        return re * re + im * im;
+    }
+
+    @Override
+    public DoubleDoubleComplex clone() {
+        try {
+            return (DoubleDoubleComplex) super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new Error(ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "(" + new BigDecimal(reHi).add(new BigDecimal(reLo)).round(MathContext.DECIMAL128) + ", "
+               + new BigDecimal(imHi).add(new BigDecimal(imLo)).round(MathContext.DECIMAL128) + ")";
+    }
+
+    public DoubleDoubleComplex add(DoubleDoubleComplex w) {
+        add(reHi, reLo, w.reHi, w.reLo);
+        reHi = hi;
+        reLo = lo;
+        add(imHi, imLo, w.imHi, w.imLo);
+        imHi = hi;
+        imLo = lo;
+
+        return this;
+    }
+
+    public DoubleDoubleComplex add(double re, double im) {
+        add(reHi, reLo, re, 0.0);
+        reHi = hi;
+        reLo = lo;
+        add(imHi, imLo, im, 0.0);
+        imHi = hi;
+        imLo = lo;
+
+        return this;
+    }
+
+    public DoubleDoubleComplex sub(DoubleDoubleComplex w) {
+        add(reHi, reLo, -w.reHi, -w.reLo);
+        reHi = hi;
+        reLo = lo;
+        add(imHi, imLo, -w.imHi, -w.imLo);
+        imHi = hi;
+        imLo = lo;
+
+        return this;
+    }
+
+    public DoubleDoubleComplex mult(DoubleDoubleComplex w) {
+        // re = a c - b d
+        mult(reHi, reLo, w.reHi, w.reLo);
+        double acHi = hi;
+        double acLo = lo;
+        mult(imHi, imLo, w.imHi, w.imLo);
+        add(acHi, acLo, -hi, -lo);
+        double rHi = hi;
+        double rLo = lo;
+
+        // im = a d + b c
+        mult(reHi, reLo, w.imHi, w.imLo);
+        double adHi = hi;
+        double adLo = lo;
+        mult(imHi, imLo, w.reHi, w.reLo);
+        add(adHi, adLo, hi, lo);
+
+        reHi = rHi;
+        reLo = rLo;
+        imHi = hi;
+        imLo = lo;
+
+        return this;
+    }
+
+    public DoubleDoubleComplex mult(double re, double im) {
+        mult(reHi, reLo, re, 0.0);
+        double acHi = hi;
+        double acLo = lo;
+        mult(imHi, imLo, im, 0.0);
+        add(acHi, acLo, -hi, -lo);
+        double rHi = hi;
+        double rLo = lo;
+
+        mult(reHi, reLo, im, 0.0);
+        double adHi = hi;
+        double adLo = lo;
+        mult(imHi, imLo, re, 0.0);
+        add(adHi, adLo, hi, lo);
+
+        reHi = rHi;
+        reLo = rLo;
+        imHi = hi;
+        imLo = lo;
+
+        return this;
+    }
+
+    public DoubleDoubleComplex sqr() {
+        // re = a² - b²
+        mult(reHi, reLo, reHi, reLo);
+        double aaHi = hi;
+        double aaLo = lo;
+        mult(imHi, imLo, imHi, imLo);
+        add(aaHi, aaLo, -hi, -lo);
+        double rHi = hi;
+        double rLo = lo;
+
+        // im = 2 a b
+        mult(reHi, reLo, imHi, imLo);
+
+        reHi = rHi;
+        reLo = rLo;
+        imHi = 2.0 * hi;
+        imLo = 2.0 * lo;
+
+        return this;
+    }
+
+    // (hi, lo) = (ah + al) + (bh + bl)
+    private void add(double ah, double al, double bh, double bl) {
+        double s = ah + bh;
+        double bb = s - ah;
+        double e = (ah - (s - bb)) + (bh - bb);
+        e += al + bl;
+
+        hi = s + e;
+        lo = e - (hi - s);
+    }
+
+    // (hi, lo) = (ah + al) * (bh + bl)
+    private void mult(double ah, double al, double bh, double bl) {
+        double p = ah * bh;
+        double e = Math.fma(ah, bh, -p);
+        e += ah * bl + al * bh;
+
+        hi = p + e;
+        lo = e - (hi - p);
+    }
+}
@@ -21,9 +21,33 @@ import java.util.ArrayList;
 import java.util.List;
 
 public final class NewtonSolver {
+    /**
+     * Default number of Newton steps before escalating to {@link AberthSolver}.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    // iteration budget of the Aberth-Ehrlich fallback
+    private static final int MAX_ABERTH_ITERATIONS = 500;
+
     private NewtonSolver() {
     }
 
+    /**
+     * Gets notified about every single zero found, e.g. for telemetry.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called after a zero was found, the arguments are the telemetry of {@link SolverResult}.
+         *
+         * @param iterations The number of iteration steps.
+         * @param evaluations The number of polynomial evaluations (including derivatives).
+         * @param residual The square of the absolute value of the polynomial at the zero.
+         * @param escalated {@code true} if the iteration budget was exhausted.
+         */
+        void solved(int iterations, int evaluations, double residual, boolean escalated);
+    }
+
     /**
      * Find a zero of the given complex polynomial by newton's method.
      *
@@ -33,6 +57,22 @@ public final class NewtonSolver {
      * @return A zero of the given complex
      */
     public static Zero solve(ComplexPolynomial p, MutableComplex z0, double eps2) {
+        return solve(p, z0, eps2, DEFAULT_MAX_ITERATIONS).zero();
+    }
+
+    /**
+     * Find a zero of the given complex polynomial by newton's method.
+     *
+     * <p>If Newton's method doesn't converge within {@code maxIterations} steps the zero is determined by the
+     * {@link AberthSolver} instead, namely the one closest to the last Newton approximation.</p>
+     *
+     * @param p The given complex polynomial.
+     * @param z0 A start value relative close to a guessed zero.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of Newton steps.
+     * @return A zero of the given complex and the telemetry of its search.
+     */
+    public static SolverResult solve(ComplexPolynomial p, MutableComplex z0, double eps2, int maxIterations) {
         int d = p.degree();
 
         if (d <= 1) {
@@ -43,6 +83,11 @@ public final class NewtonSolver {
             throw new IllegalArgumentException("ε² must be positive.");
         }
 
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Iteration budget must be positive.");
+        }
+
+        int[] evaluations = {1};
         ComplexPolynomial pd = p.derivative();
         MutableComplex z = z0.clone();
         MutableComplex w = p.apply(z);
@@ -50,8 +95,9 @@ public final class NewtonSolver {
         if (w.norm() < eps2) { // maybe we enter with a zero
             ComplexPolynomial q = pd;
             for (int k = 1; k <= d; k++) {
+                evaluations[0]++;
                 if (q.apply(z).norm() >= eps2) {
-                    return new Zero(z, k);
+                    return new SolverResult(new Zero(z, k), 0, evaluations[0], w.norm(), false);
                 }
                 q = q.derivative();
             }
@@ -60,8 +106,8 @@ public final class NewtonSolver {
             throw new IllegalStateException("Unexpected zero state.");
         }
 
-        while (true) {
-            MutableComplex dd = getDivider(pd, z);
+        for (int iterations = 1; iterations <= maxIterations; iterations++) {
+            MutableComplex dd = getDivider(pd, z, evaluations);
             MutableComplex qt = w.clone().div(dd);
             if (qt.isInfinite()) {
                 // should not happen! 😜
@@ -76,6 +122,7 @@ public final class NewtonSolver {
                 MutableComplex nz = z.clone().sub(qt.clone().rmult(k + 1));
                 MutableComplex nw = p.apply(nz);
                 double nn = nw.norm();
+                evaluations[0]++;
 
                 if (nn < mn) {
                     q = k;
@@ -89,17 +136,56 @@ public final class NewtonSolver {
             }
 
             if (mn < eps2) {
-                return new Zero(mz, q + 1);
+                return new SolverResult(new Zero(mz, q + 1), iterations, evaluations[0], mn, false);
             }
 
             z = mz;
         }
+
+        return escalate(p, z, eps2, maxIterations, evaluations[0]);
     }
 
-    private static MutableComplex getDivider(ComplexPolynomial pd, MutableComplex z) {
+    /**
+     * Determines all zeros by the Aberth–Ehrlich method and picks the one closest to {@code z}, approximations
+     * closer than a small cluster radius count as one multiple zero.
+     */
+    private static SolverResult escalate(ComplexPolynomial p, MutableComplex z, double eps2, int iterations,
+                                         int evaluations) {
+        AberthSolver.Result aberth = AberthSolver.solve(p, eps2, MAX_ABERTH_ITERATIONS);
+        List<MutableComplex> zeros = aberth.zeros();
+
+        MutableComplex nearest = zeros.get(0);
+        for (MutableComplex zero : zeros) {
+            if (zero.clone().sub(z).norm() < nearest.clone().sub(z).norm()) {
+                nearest = zero;
+            }
+        }
+
+        double r = 1e-3 * (1.0 + nearest.abs());
+        MutableComplex sum = MutableComplex.zero();
+        int quantity = 0;
+
+        for (MutableComplex zero : zeros) {
+            if (zero.clone().sub(nearest).norm() < r * r) {
+                sum.add(zero);
+                quantity++;
+            }
+        }
+
+        MutableComplex value = sum.rmult(1.0 / quantity);
+        double residual = p.apply(value).norm();
+
+        // the Newton and Aberth steps, the evaluations include the residual
+        return new SolverResult(new Zero(value, quantity), iterations + aberth.iterations(),
+                                evaluations + aberth.evaluations() + 1, residual, true);
+    }
+
+    private static MutableComplex getDivider(ComplexPolynomial pd, MutableComplex z, int[] evaluations) {
         MutableComplex w = MutableComplex.zero();
+        evaluations[0]++;
         while (w.assign(pd.apply(z)).isZero()) {
             pd = pd.derivative();
+            evaluations[0]++;
             if (pd.degree() == 0 && pd.get(0).isZero()) {
                 throw new IllegalArgumentException("Illegal zero-Polynomial.");
             }
@@ -109,6 +195,26 @@ public final class NewtonSolver {
     }
 
     public static List<Zero> solveAll(ComplexPolynomial p, MutableComplex z0, double eps2) {
+        return solveAll(p, z0, eps2, null);
+    }
+
+    public static List<Zero> solveAll(ComplexPolynomial p, MutableComplex z0, double eps2, Listener listener) {
+        return solveAll(p, z0, eps2, DEFAULT_MAX_ITERATIONS, listener);
+    }
+
+    /**
+     * Finds all zeros of the given complex polynomial.
+     *
+     * @param p The given complex polynomial.
+     * @param z0 Start value of the first search, may be {@code null}.
+     * @param eps2 The square of the radius of the neighbourhood of 0.
+     * @param maxIterations The maximal number of Newton steps per zero, see
+     * {@link #solve(ComplexPolynomial, MutableComplex, double, int)}.
+     * @param listener Gets notified about every zero found by Newton's method, may be {@code null}.
+     * @return All zeros with their multiplicity.
+     */
+    public static List<Zero> solveAll(ComplexPolynomial p, MutableComplex z0, double eps2, int maxIterations,
+                                      Listener listener) {
         if (eps2 <= 0.0) {
             throw new IllegalArgumentException("ε² must be positive.");
         }
@@ -133,7 +239,7 @@ public final class NewtonSolver {
             case 2:
                 ComplexPolynomial pn = p.normalize();
                 MutableComplex p2 = pn.get(1).rmult(0.5);
-                MutableComplex dis = p2.clone().mult(p2).sub(p.get(0)).sqrt();
+                MutableComplex dis = p2.clone().mult(p2).sub(pn.get(0)).sqrt();
                 p2.neg();
 
                 if (dis.norm() <= eps2) {
@@ -147,14 +253,19 @@ public final class NewtonSolver {
                 break;
 
             default:
-                Zero eta = solve(p, z0, eps2);
+                SolverResult result = solve(p, z0, eps2, maxIterations);
+                Zero eta = result.zero();
                 zeros.add(eta);
 
+                if (listener != null) {
+                    listener.solved(result.iterations(), result.evaluations(), result.residual(), result.escalated());
+                }
+
                 for (int i = 0; i < eta.quantity(); i++) {
                     p = p.splitZero(eta.value());
                 }
 
-                zeros.addAll(solveAll(p, eta.value(), eps2));
+                zeros.addAll(solveAll(p, eta.value(), eps2, maxIterations, listener));
                 break;
         }
 
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+/**
+ * Iteration used to find a single zero of a polynomial, see {@link DeflationWorkspace}.
+ */
+public enum RootMethod {
+    /**
+     * Damped Newton's method, the damping factor also estimates the multiplicity (quadratic convergence).
+     */
+    NEWTON,
+
+    /**
+     * Laguerre's method, converges from (almost) arbitrary start values (cubic convergence).
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Laguerre%27s_method">Laguerre's method</a>
+     */
+    LAGUERRE,
+
+    /**
+     * Halley's method (cubic convergence).
+     *
+     * @see <a href="https://en.wikipedia.org/wiki/Halley%27s_method">Halley's method</a>
+     */
+    HALLEY
+}
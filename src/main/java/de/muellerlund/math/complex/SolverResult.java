@@ -0,0 +1,30 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+/**
+ * Result of a single root search including convergence telemetry.
+ *
+ * @param zero The zero found.
+ * @param iterations The number of iteration steps.
+ * @param evaluations The number of polynomial evaluations (including derivatives).
+ * @param residual The square of the absolute value of the polynomial at the zero.
+ * @param escalated {@code true} if the iteration budget was exhausted and a more robust method took over.
+ */
+public record SolverResult(Zero zero, int iterations, int evaluations, double residual, boolean escalated) {
+}
@@ -22,6 +22,7 @@ import de.muellerlund.math.complex.MutableComplex;
 import org.apache.commons.math3.complex.Complex;
 
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,10 +30,284 @@ public final class Calculator {
 
     private final static BigInteger MAX_NUMBERS = BigInteger.valueOf(1 << 20);
 
+    // limit of trees spilled to a memory-mapped file
+    private final static BigInteger MAX_SPILLED_NUMBERS = BigInteger.valueOf(1 << 28);
+
+    // limit of the recursion depth of deduplicated trees
+    private final static int MAX_DEDUPLICATED_DEPTH = 1 << 12;
+
     private Calculator() {
     }
 
     public static List<ExtendedComplex> calculate(ComplexFractal fractal, Complex z0, int maxDepth) {
+        checkSize(fractal, maxDepth, MAX_NUMBERS);
+
+        List<ExtendedComplex> list = new ArrayList<>();
+        calculate(list, fractal, new MutableComplex(z0), 0, maxDepth);
+        return list;
+    }
+
+    /**
+     * Calculates the preimage tree into a point cloud of the given precision, in the same order as
+     * {@link #calculate(ComplexFractal, Complex, int)}.
+     *
+     * <p>Single precision fractals with a {@link FloatKernel} are calculated in single precision as well, the others
+     * are only stored in single precision.</p>
+     *
+     * @param fractal The fractal.
+     * @param z0 The root of the tree.
+     * @param maxDepth The depth of the tree.
+     * @param precision The precision of the points.
+     * @return the points of the tree.
+     */
+    public static PointCloud calculate(ComplexFractal fractal, Complex z0, int maxDepth, Precision precision) {
+        return calculate(fractal, z0, maxDepth, precision, null);
+    }
+
+    /**
+     * Calculates the preimage tree into a point cloud of the given precision. Trees of more than 2^20 points are
+     * appended to a memory-mapped file in the spill directory, up to 2^28 points, the caller must close the returned
+     * point cloud then.
+     *
+     * @param fractal The fractal.
+     * @param z0 The root of the tree.
+     * @param maxDepth The depth of the tree.
+     * @param precision The precision of the points.
+     * @param spillDirectory The directory of the memory-mapped file, {@code null} to keep all points on the heap.
+     * @return the points of the tree.
+     * @see #calculate(ComplexFractal, Complex, int, Precision)
+     */
+    public static PointCloud calculate(ComplexFractal fractal, Complex z0, int maxDepth, Precision precision,
+                                       Path spillDirectory) {
+        return calculate(fractal, z0, maxDepth, precision, spillDirectory, 0.0);
+    }
+
+    /**
+     * Calculates the preimage tree into a point cloud of the given precision, optionally deduplicated.
+     *
+     * <p>With a positive grid size a subtree is skipped if its root lands in a grid cell where a subtree at least as
+     * deep was rooted before, e.g. a fraction of a pixel. So the work grows with the visible detail instead of with
+     * dimensions^depth, and only the points actually calculated count against the size limit.</p>
+     *
+     * @param fractal The fractal.
+     * @param z0 The root of the tree.
+     * @param maxDepth The depth of the tree.
+     * @param precision The precision of the points.
+     * @param spillDirectory The directory of the memory-mapped file, {@code null} to keep all points on the heap.
+     * @param grid The edge length of a grid cell, 0 to keep all points.
+     * @return the points of the tree.
+     * @see #calculate(ComplexFractal, Complex, int, Precision, Path)
+     */
+    public static PointCloud calculate(ComplexFractal fractal, Complex z0, int maxDepth, Precision precision,
+                                       Path spillDirectory, double grid) {
+        return calculate(fractal, z0, maxDepth, precision, spillDirectory, grid, false);
+    }
+
+    /**
+     * Calculates the preimage tree into a point cloud of the given precision, optionally deduplicated and reduced by
+     * the symmetry of the fractal.
+     *
+     * <p>If the fractal has a {@link ComplexFractal#symmetry() rotational symmetry} of order {@code m} every level of
+     * the tree below the root is invariant under the rotations. So only the fundamental preimages of each point and
+     * its rotations are calculated and stored, the point cloud restores the others, see
+     * {@link PointCloud#symmetry()}. That saves a factor of {@code m} in storage and, for polynomial fractals, in root
+     * finding. The tree isn't in the order of {@link #calculate(ComplexFractal, Complex, int)} then.</p>
+     *
+     * @param fractal The fractal.
+     * @param z0 The root of the tree.
+     * @param maxDepth The depth of the tree.
+     * @param precision The precision of the points.
+     * @param spillDirectory The directory of the memory-mapped file, {@code null} to keep all points on the heap.
+     * @param grid The edge length of a grid cell, 0 to keep all points.
+     * @param symmetric {@code true} to store only the fundamental points.
+     * @return the points of the tree.
+     * @see #calculate(ComplexFractal, Complex, int, Precision, Path, double)
+     */
+    public static PointCloud calculate(ComplexFractal fractal, Complex z0, int maxDepth, Precision precision,
+                                       Path spillDirectory, double grid, boolean symmetric) {
+        BigInteger max = spillDirectory == null ? MAX_NUMBERS : MAX_SPILLED_NUMBERS;
+        VisitedCells cells = grid == 0.0 ? null : new VisitedCells(grid);
+        int m = symmetric ? fractal.symmetry() : 1;
+        PointCloud cloud;
+
+        if (cells == null) {
+            int n = checkSize(fractal, maxDepth, max);
+            cloud = spillDirectory != null && n > MAX_NUMBERS.intValue()
+                    ? PointCloud.mapped(precision, spillDirectory)
+                    : PointCloud.create(precision, n / m + 1);
+        }
+        else {
+            if (maxDepth < 1 || maxDepth > MAX_DEDUPLICATED_DEPTH) {
+                throw new IllegalArgumentException("Recursion depth must be in [1, " + MAX_DEDUPLICATED_DEPTH + "].");
+            }
+
+            // the size isn't known in advance
+            cloud = spillDirectory != null
+                    ? PointCloud.mapped(precision, spillDirectory)
+                    : PointCloud.create(precision, 1 << 16);
+        }
+
+        Pruning pruning = cells == null ? null : new Pruning(cells, max.intValue());
+        Rotations rotations = new Rotations(m);
+
+        if (m > 1) {
+            cloud.setSymmetry(m, fractal.dimensions() / m);
+        }
+
+        try {
+            if (precision == Precision.FLOAT && fractal instanceof FloatKernel kernel) {
+                float[][] preImages = new float[maxDepth + 1][2 * fractal.dimensions()];
+
+                if (m > 1) {
+                    calculate(cloud, kernel, rotations, fractal.dimensions() / m, (float) z0.getReal(),
+                              (float) z0.getImaginary(), 0, maxDepth, true, preImages, pruning);
+                }
+                else {
+                    calculate(cloud, kernel, (float) z0.getReal(), (float) z0.getImaginary(), 0, maxDepth,
+                              preImages, pruning);
+                }
+            }
+            else if (m > 1) {
+                calculate(cloud, fractal, rotations, z0.getReal(), z0.getImaginary(), 0, maxDepth, true, pruning);
+            }
+            else {
+                calculate(cloud, fractal, new MutableComplex(z0), 0, maxDepth, pruning);
+            }
+        }
+        catch (RuntimeException e) {
+            cloud.close();
+            throw e;
+        }
+
+        return cloud;
+    }
+
+    /**
+     * Returns whether a tree exceeds the size limit on the heap, so it needs a spill directory, see
+     * {@link #calculate(ComplexFractal, Complex, int, Precision, Path)}.
+     *
+     * @param fractal The fractal.
+     * @param maxDepth The depth of the tree.
+     * @return {@code true} if the tree has more than 2^20 points.
+     */
+    public static boolean spills(ComplexFractal fractal, int maxDepth) {
+        return maxDepth > 0 && BigInteger.valueOf(fractal.dimensions()).pow(maxDepth).compareTo(MAX_NUMBERS) > 0;
+    }
+
+    /**
+     * Checks the depth of a tree for {@link #calculateLevels}, so a request can be refused before any work is
+     * scheduled.
+     *
+     * @param fractal The fractal.
+     * @param maxDepth The depth of the tree.
+     * @throws IllegalArgumentException if the depth is less than 1 or the tree has too many points.
+     */
+    public static void checkDepth(ComplexFractal fractal, int maxDepth) {
+        checkSize(fractal, maxDepth, MAX_NUMBERS);
+    }
+
+    /**
+     * Calculates the preimage tree level by level with
+     * {@link ComplexFractal#preImages(double[], double[], int, double[], double[])}, so there is one call per level
+     * instead of one per point. The points are ordered by level, the ids are the same as in the depth-first order.
+     *
+     * @param fractal The fractal.
+     * @param z0 The root of the tree.
+     * @param maxDepth The depth of the tree.
+     * @param precision The precision of the points.
+     * @return the points of the tree.
+     */
+    public static PointCloud calculateLevels(ComplexFractal fractal, Complex z0, int maxDepth, Precision precision) {
+        return calculateLevels(fractal, z0, maxDepth, precision, null);
+    }
+
+    /**
+     * Calculates the preimage tree level by level starting at the preimages of the last tree, see
+     * {@link ComplexFractal#preImages(double[], double[], int, double[], double[], double[], double[])}. For a
+     * sequence of slightly different fractals the solver needs fewer steps and the ids of the points don't jump.
+     *
+     * @param fractal The fractal.
+     * @param z0 The root of the tree.
+     * @param maxDepth The depth of the tree.
+     * @param precision The precision of the points.
+     * @param warmStart The preimages of the last tree, replaced by the ones of this tree, {@code null} for none.
+     * @return the points of the tree.
+     */
+    public static PointCloud calculateLevels(ComplexFractal fractal, Complex z0, int maxDepth, Precision precision,
+                                             WarmStart warmStart) {
+        int n = checkSize(fractal, maxDepth, MAX_NUMBERS);
+        int d = fractal.dimensions();
+        PointCloud cloud = PointCloud.create(precision, n);
+
+        // current and next level, they swap and grow by the dimensions
+        double[] re = new double[1];
+        double[] im = new double[1];
+        double[] nextRe = new double[d];
+        double[] nextIm = new double[d];
+
+        re[0] = z0.getReal();
+        im[0] = z0.getImaginary();
+        cloud.add(re[0], im[0], maxDepth, 0);
+        int count = 1;
+
+        for (int depth = maxDepth - 1; depth > 0 && count > 0; depth--) {
+            if (nextRe.length < count * d) {
+                nextRe = new double[count * d];
+                nextIm = new double[count * d];
+            }
+
+            int level = maxDepth - 1 - depth;
+            double[] seedRe = warmStart == null ? null : warmStart.re(level, count * d);
+            int slots = seedRe == null
+                        ? fractal.preImages(re, im, count, nextRe, nextIm)
+                        : fractal.preImages(re, im, count, nextRe, nextIm, seedRe, warmStart.im(level));
+            count = 0;
+
+            for (int k = 0; k < slots; k++) {
+                if (!Double.isNaN(nextRe[k])) {
+                    cloud.add(nextRe[k], nextIm[k], depth, k % d);
+
+                    // compact in place, the next level doesn't need the gaps
+                    nextRe[count] = nextRe[k];
+                    nextIm[count] = nextIm[k];
+                    count++;
+                }
+            }
+
+            if (warmStart != null) {
+                // the compacted level still has the slot layout if there were no gaps
+                warmStart.set(level, nextRe, nextIm, count, count == slots);
+            }
+
+            double[] t = re;
+            re = nextRe;
+            nextRe = t;
+            t = im;
+            im = nextIm;
+            nextIm = t;
+        }
+
+        return cloud;
+    }
+
+    // visited cells and the limit of points of a deduplicated tree
+    private record Pruning(VisitedCells cells, int limit) {
+        // whether to add the point and its subtree
+        boolean visit(PointCloud cloud, double re, double im, int depth) {
+            if (!cells.visit(re, im, depth)) {
+                return false;
+            }
+
+            if (cloud.size() == limit) {
+                throw new IllegalArgumentException("Number of points exceeds " + limit + ".");
+            }
+
+            return true;
+        }
+    }
+
+    // returns the number of points
+    private static int checkSize(ComplexFractal fractal, int maxDepth, BigInteger max) {
         if (maxDepth < 1) {
             throw new IllegalArgumentException("Maximal recursion depth should be at least 1.");
         }
@@ -40,13 +315,12 @@ public final class Calculator {
         BigInteger n = BigInteger.valueOf(fractal.dimensions());
         BigInteger nd = n.pow(maxDepth);
 
-        if (nd.compareTo(MAX_NUMBERS) > 0) {
-            throw new IllegalArgumentException("Number of needed calculations (" + nd + ") exceeds " + MAX_NUMBERS + ".");
+        if (nd.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Number of needed calculations (" + nd + ") exceeds " + max + ".");
         }
 
-        List<ExtendedComplex> list = new ArrayList<>();
-        calculate(list, fractal, new MutableComplex(z0), 0, maxDepth);
-        return list;
+        // 1 + n + … + n^(maxDepth - 1) <= n^maxDepth for n >= 2
+        return nd.intValue();
     }
 
     private static void calculate(List<ExtendedComplex> list, ComplexFractal fractal, MutableComplex z0, int i, int maxDepth) {
@@ -61,4 +335,75 @@ public final class Calculator {
             calculate(list, fractal, w, j++, maxDepth - 1);
         }
     }
+
+    private static void calculate(PointCloud cloud, ComplexFractal fractal, MutableComplex z0, int i, int maxDepth,
+                                  Pruning pruning) {
+        if (maxDepth <= 0 || pruning != null && !pruning.visit(cloud, z0.real(), z0.imag(), maxDepth)) {
+            return;
+        }
+
+        cloud.add(z0.real(), z0.imag(), maxDepth, i);
+
+        int j = 0;
+        for (MutableComplex w : fractal.preImages(z0)) {
+            calculate(cloud, fractal, w, j++, maxDepth - 1, pruning);
+        }
+    }
+
+    // preImages[d] is the scratch array of depth d
+    private static void calculate(PointCloud cloud, FloatKernel kernel, float re, float im, int i, int maxDepth,
+                                  float[][] preImages, Pruning pruning) {
+        if (maxDepth <= 0 || pruning != null && !pruning.visit(cloud, re, im, maxDepth)) {
+            return;
+        }
+
+        cloud.add(re, im, maxDepth, i);
+
+        float[] w = preImages[maxDepth];
+        int n = kernel.preImages(re, im, w);
+
+        for (int j = 0; j < n; j++) {
+            calculate(cloud, kernel, w[2 * j], w[2 * j + 1], j, maxDepth - 1, preImages, pruning);
+        }
+    }
+
+    // the children of a point but the root are the fundamental preimages of all its rotations
+    private static void calculate(PointCloud cloud, ComplexFractal fractal, Rotations rotations, double re, double im,
+                                  int i, int maxDepth, boolean root, Pruning pruning) {
+        if (maxDepth <= 0 || pruning != null && !pruning.visit(cloud, re, im, maxDepth)) {
+            return;
+        }
+
+        cloud.add(re, im, maxDepth, i);
+
+        for (int r = 0; r < (root ? 1 : rotations.order); r++) {
+            MutableComplex z = new MutableComplex(rotations.re(r, re, im), rotations.im(r, re, im));
+
+            int j = 0;
+            for (MutableComplex w : fractal.fundamentalPreImages(z)) {
+                calculate(cloud, fractal, rotations, w.real(), w.imag(), j++, maxDepth - 1, false, pruning);
+            }
+        }
+    }
+
+    // the first preimages of the kernel are the fundamental ones
+    private static void calculate(PointCloud cloud, FloatKernel kernel, Rotations rotations, int orbits, float re,
+                                  float im, int i, int maxDepth, boolean root, float[][] preImages, Pruning pruning) {
+        if (maxDepth <= 0 || pruning != null && !pruning.visit(cloud, re, im, maxDepth)) {
+            return;
+        }
+
+        cloud.add(re, im, maxDepth, i);
+
+        float[] w = preImages[maxDepth];
+
+        for (int r = 0; r < (root ? 1 : rotations.order); r++) {
+            kernel.preImages((float) rotations.re(r, re, im), (float) rotations.im(r, re, im), w);
+
+            for (int j = 0; j < orbits; j++) {
+                calculate(cloud, kernel, rotations, orbits, w[2 * j], w[2 * j + 1], j, maxDepth - 1, false,
+                          preImages, pruning);
+            }
+        }
+    }
 }
@@ -24,4 +24,87 @@ import java.util.List;
 public interface ComplexFractal {
     int dimensions();
     List<MutableComplex> preImages(MutableComplex z);
+
+    /**
+     * Returns the estimated cost of one {@link #preImages(MutableComplex)} call relative to a complex square root.
+     *
+     * @return the relative cost of one preimage calculation.
+     */
+    default double preImageCost() {
+        return dimensions();
+    }
+
+    /**
+     * Returns the order {@code m} of the rotational symmetry of the preimages: with every preimage of a point its
+     * rotations around 0 by the multiples of {@code 2π / m} are preimages of that point, too.
+     *
+     * @return the order of symmetry, 1 if there is none.
+     */
+    default int symmetry() {
+        return 1;
+    }
+
+    /**
+     * Returns one preimage of each orbit of the rotations of {@link #symmetry()}, so {@code dimensions() / symmetry()}
+     * preimages whose rotations are all the preimages.
+     *
+     * @param z The point.
+     * @return the representatives of the preimages.
+     */
+    default List<MutableComplex> fundamentalPreImages(MutableComplex z) {
+        return preImages(z);
+    }
+
+    /**
+     * Calculates the preimages of a whole level of a tree in one call. The preimages of point {@code k} are stored at
+     * {@code k * dimensions() + j} in the order of {@link #preImages(MutableComplex)}, slots of missing preimages, e.g.
+     * of multiple zeros, are {@code NaN}.
+     *
+     * <p>This default adapts {@link #preImages(MutableComplex)}, implementations should override it with a loop over
+     * primitive arrays.</p>
+     *
+     * @param re The real parts of the points.
+     * @param im The imaginary parts of the points.
+     * @param count The number of points.
+     * @param outRe Receives the real parts of the preimages, at least {@code count * dimensions()} long.
+     * @param outIm Receives the imaginary parts of the preimages.
+     * @return the number of slots written, {@code count * dimensions()}.
+     */
+    default int preImages(double[] re, double[] im, int count, double[] outRe, double[] outIm) {
+        int n = dimensions();
+        MutableComplex z = new MutableComplex();
+
+        for (int k = 0; k < count; k++) {
+            List<MutableComplex> preImages = preImages(z.assign(re[k], im[k]));
+
+            for (int j = 0; j < n; j++) {
+                boolean found = j < preImages.size();
+                outRe[k * n + j] = found ? preImages.get(j).real() : Double.NaN;
+                outIm[k * n + j] = found ? preImages.get(j).imag() : Double.NaN;
+            }
+        }
+
+        return count * n;
+    }
+
+    /**
+     * Calculates the preimages of a whole level like {@link #preImages(double[], double[], int, double[], double[])}
+     * starting at approximations, e.g. the preimages of the same level of a tree of a slightly different fractal. The
+     * preimages keep the order of their approximations, so they follow them continuously.
+     *
+     * <p>Preimages in closed form don't need approximations, this default ignores them.</p>
+     *
+     * @param re The real parts of the points.
+     * @param im The imaginary parts of the points.
+     * @param count The number of points.
+     * @param outRe Receives the real parts of the preimages, at least {@code count * dimensions()} long.
+     * @param outIm Receives the imaginary parts of the preimages.
+     * @param seedRe The real parts of the approximations in the layout of the output.
+     * @param seedIm The imaginary parts of the approximations.
+     * @return the number of slots written, {@code count * dimensions()}.
+     */
+    default int preImages(double[] re, double[] im, int count, double[] outRe, double[] outIm, double[] seedRe,
+                          double[] seedIm) {
+        return preImages(re, im, count, outRe, outIm);
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import java.util.Arrays;
+
+/**
+ * The extent of a stream of points: their exact bounds and optionally a histogram of each axis for outlier-robust
+ * bounds.
+ *
+ * <p>Each histogram has {@value #BINS} bins covering {@code [-R, R)} where {@code R} is a power of two. If a value
+ * falls outside, {@code R} doubles and pairs of bins are merged, so an update costs a few operations and no
+ * allocation, and the quantiles are accurate up to {@code 2R / BINS}, i.e. up to a fraction of a per mille of the
+ * bounds. The two histograms take 64 KB, so long-lived extents like the one of a {@link PointCloud} keep only the
+ * bounds.</p>
+ */
+public final class Extent {
+
+    static final int BINS = 4096;
+
+    private double minRe = Double.POSITIVE_INFINITY;
+    private double maxRe = Double.NEGATIVE_INFINITY;
+    private double minIm = Double.POSITIVE_INFINITY;
+    private double maxIm = Double.NEGATIVE_INFINITY;
+
+    private long count;
+
+    // null if only the bounds are kept
+    private final Histogram re;
+    private final Histogram im;
+
+    /**
+     * Creates an empty extent with histograms for quantiles.
+     */
+    public Extent() {
+        this(true);
+    }
+
+    private Extent(boolean quantiles) {
+        re = quantiles ? new Histogram() : null;
+        im = quantiles ? new Histogram() : null;
+    }
+
+    /**
+     * Creates an empty extent which keeps only the bounds, its quantiles aren't available.
+     */
+    public static Extent bounds() {
+        return new Extent(false);
+    }
+
+    /**
+     * Adds a point.
+     */
+    public void add(double re, double im) {
+        minRe = Math.min(minRe, re);
+        maxRe = Math.max(maxRe, re);
+        minIm = Math.min(minIm, im);
+        maxIm = Math.max(maxIm, im);
+
+        if (Double.isFinite(re)) {
+            count++;
+        }
+
+        if (this.re != null) {
+            this.re.add(re);
+            this.im.add(im);
+        }
+    }
+
+    /**
+     * Returns the number of points with a finite real part added, the others are ignored by the histograms.
+     */
+    public long count() {
+        return count;
+    }
+
+    public double minRe() {
+        return minRe;
+    }
+
+    public double maxRe() {
+        return maxRe;
+    }
+
+    public double minIm() {
+        return minIm;
+    }
+
+    public double maxIm() {
+        return maxIm;
+    }
+
+    /**
+     * Returns the {@code q}-quantile of the real parts rounded outward to a bin edge: down below the median and up
+     * above it, so a box of quantiles contains the exact one.
+     *
+     * @param q The quantile in {@code [0, 1]}.
+     * @return the approximate quantile, {@code NaN} if there are no points.
+     * @throws IllegalStateException if the extent keeps only the bounds.
+     */
+    public double quantileRe(double q) {
+        return histogram(re).quantile(q, minRe, maxRe);
+    }
+
+    /**
+     * Returns the {@code q}-quantile of the imaginary parts rounded outward to a bin edge: down below the median and up
+     * above it, so a box of quantiles contains the exact one.
+     *
+     * @param q The quantile in {@code [0, 1]}.
+     * @return the approximate quantile, {@code NaN} if there are no points.
+     * @throws IllegalStateException if the extent keeps only the bounds.
+     */
+    public double quantileIm(double q) {
+        return histogram(im).quantile(q, minIm, maxIm);
+    }
+
+    private static Histogram histogram(Histogram histogram) {
+        if (histogram == null) {
+            throw new IllegalStateException("Extent keeps only the bounds.");
+        }
+
+        return histogram;
+    }
+
+    private static final class Histogram {
+        private final long[] bins = new long[BINS];
+
+        // number of finite values
+        private long count;
+
+        // values added before the first one different from 0
+        private long zeros;
+
+        // half the range, 0 until the first value different from 0
+        private double radius;
+        private double scale;
+
+        void add(double x) {
+            if (Double.isNaN(x) || Double.isInfinite(x)) {
+                return;
+            }
+
+            count++;
+
+            if (!(Math.abs(x) < radius)) {
+                if (x == 0.0) {
+                    zeros++;
+                    return;
+                }
+
+                grow(Math.abs(x));
+            }
+
+            // x + radius may round up to 2 radius
+            bins[Math.min(BINS - 1, (int) ((x + radius) * scale))]++;
+        }
+
+        private void grow(double x) {
+            if (radius == 0.0) {
+                // smallest power of two above x
+                radius = 2.0 * Math.scalb(1.0, Math.getExponent(x));
+                bins[BINS / 2] = zeros;
+            }
+
+            while (x >= radius) {
+                // bin k of [-R, R) is part of bin BINS / 4 + k / 2 of [-2R, 2R)
+                for (int k = 0; k < BINS / 2; k++) {
+                    bins[k] = bins[2 * k] + bins[2 * k + 1];
+                }
+
+                System.arraycopy(bins, 0, bins, BINS / 4, BINS / 2);
+                Arrays.fill(bins, 0, BINS / 4, 0);
+                Arrays.fill(bins, 3 * BINS / 4, BINS, 0);
+
+                radius *= 2.0;
+            }
+
+            scale = BINS / (2.0 * radius);
+        }
+
+        double quantile(double q, double min, double max) {
+            if (!(q >= 0.0 && q <= 1.0)) {
+                throw new IllegalArgumentException("Quantile must be in [0, 1].");
+            }
+
+            if (count == 0) {
+                return Double.NaN;
+            }
+
+            if (radius == 0.0) {
+                return 0.0;
+            }
+
+            // the bin reaching the rank
+            double rank = q * count;
+            long sum = 0;
+            int k = 0;
+            while (k < BINS - 1 && (sum += bins[k]) < rank) {
+                k++;
+            }
+
+            double edge = (q < 0.5 ? k : k + 1) / scale - radius;
+
+            return Math.max(min, Math.min(max, edge));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+/**
+ * A fractal whose preimages can be calculated in single precision, e.g. for previews.
+ */
+public interface FloatKernel {
+
+    /**
+     * Calculates the preimages of {@code re + i im} in the same order as {@link ComplexFractal#preImages}. The first
+     * ones are the {@link ComplexFractal#fundamentalPreImages fundamental preimages}.
+     *
+     * @param re The real part of the point.
+     * @param im The imaginary part of the point.
+     * @param out Receives real and imaginary part of each preimage alternately.
+     * @return the number of preimages.
+     */
+    int preImages(float re, float im, float[] out);
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Strategy to run the independent iterations of a loop, e.g. the rows of an image.
+ */
+@FunctionalInterface
+public interface ParallelLoop {
+
+    /**
+     * Runs every iteration on the calling thread.
+     */
+    ParallelLoop SEQUENTIAL = (count, action) -> {
+        for (int i = 0; i < count; i++) {
+            action.accept(i);
+        }
+    };
+
+    /**
+     * Calls {@code action} for each index in {@code [0, count)} and returns when all calls are done.
+     *
+     * @param count The number of iterations.
+     * @param action The body of the loop, it may be called concurrently for different indices.
+     */
+    void forEach(int count, IntConsumer action);
+}
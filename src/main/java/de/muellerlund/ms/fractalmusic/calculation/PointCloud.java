@@ -0,0 +1,550 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Growable columnar storage of points with their depth and id, in single or double precision.
+ *
+ * <p>Compared to a list of {@link ExtendedComplex} a point takes 12 (float) or 20 (double) bytes instead of about 80
+ * and no objects at all, so large trees stay cache friendly. Trees larger than the heap are stored in a memory-mapped
+ * file, see {@link #mapped(Precision, Path)}, such a point cloud must be closed.</p>
+ *
+ * <p>A point cloud shared by several users, e.g. a cache and the requests rendering it, is reference counted: each
+ * of them {@link #retain() retains} it and closes it when done, the storage is released with the last reference.</p>
+ *
+ * <p>A point cloud of a fractal with rotational symmetry may store only the fundamental points: every point but the
+ * first one stands for itself and its rotations, see {@link #symmetry()}. {@link #forEach(PointConsumer)} passes all
+ * of them, index based consumers use {@link #re(int, int)}, {@link #im(int, int)} and {@link #id(int, int)}.</p>
+ *
+ * <p>The bounds of the points including their rotations, see {@link #extent()}, are maintained while they are added,
+ * so framing them needs no further pass. Only the {@link #quantiles()} for outlier-robust bounds take one.</p>
+ */
+public abstract class PointCloud implements AutoCloseable {
+
+    // maximal id, it is packed into the lowest byte
+    private static final int MAX_ID = 255;
+
+    protected int size;
+
+    private Rotations rotations = new Rotations(1);
+
+    // the id of the r-th rotation of a point is id + r * orbits
+    private int orbits = 1;
+
+    private final Extent extent = Extent.bounds();
+
+    // the creator holds the first one
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private PointCloud() {
+    }
+
+    /**
+     * Creates an empty point cloud on the heap.
+     *
+     * @param precision The precision of the coordinates.
+     * @param capacity The expected number of points.
+     * @return the empty point cloud.
+     */
+    public static PointCloud create(Precision precision, int capacity) {
+        return precision == Precision.FLOAT ? new FloatPoints(capacity) : new DoublePoints(capacity);
+    }
+
+    /**
+     * Creates an empty point cloud in an anonymous temporary file which is mapped into memory page by page, so only
+     * the address space and the file system limit its size. The file is removed when the last reference is closed, see
+     * {@link #close()}, or once the point cloud is garbage collected if a reference is lost.
+     *
+     * @param precision The precision of the coordinates.
+     * @param directory The directory of the temporary file.
+     * @return the empty point cloud.
+     * @throws UncheckedIOException if the file can't be created.
+     */
+    public static PointCloud mapped(Precision precision, Path directory) {
+        try {
+            return new MappedPoints(precision, directory);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies a list of points into a new double precision point cloud.
+     *
+     * @param numbers The points.
+     * @return the point cloud.
+     */
+    public static PointCloud of(List<ExtendedComplex> numbers) {
+        PointCloud cloud = create(Precision.DOUBLE, numbers.size());
+
+        for (ExtendedComplex ez : numbers) {
+            cloud.add(ez.number().getReal(), ez.number().getImaginary(), ez.depth(), ez.id());
+        }
+
+        return cloud;
+    }
+
+    public abstract Precision precision();
+
+    public int size() {
+        return size;
+    }
+
+    public abstract double re(int i);
+
+    public abstract double im(int i);
+
+    public int depth(int i) {
+        return tag(i) >>> 8;
+    }
+
+    public int id(int i) {
+        return tag(i) & MAX_ID;
+    }
+
+    /**
+     * Returns the order {@code m} of the symmetry, each point but the first one stands for its rotations around 0 by
+     * the multiples of {@code 2π / m}.
+     *
+     * @return the order of symmetry, 1 if all points are stored.
+     */
+    public int symmetry() {
+        return rotations.order;
+    }
+
+    /**
+     * Returns the number of points including the rotations.
+     *
+     * @return the number of points passed to {@link #forEach(PointConsumer)}.
+     */
+    public long count() {
+        return size == 0 ? 0 : 1 + (long) (size - 1) * symmetry();
+    }
+
+    /**
+     * Returns the number of rotations the point stands for.
+     *
+     * @param i The index of the point.
+     * @return 1 for the first point, {@link #symmetry()} for the others.
+     */
+    public int rotations(int i) {
+        return i == 0 ? 1 : symmetry();
+    }
+
+    /**
+     * Returns the real part of the {@code r}-th rotation of point {@code i}.
+     */
+    public double re(int i, int r) {
+        return r == 0 ? re(i) : rotations.re(r, re(i), im(i));
+    }
+
+    /**
+     * Returns the imaginary part of the {@code r}-th rotation of point {@code i}.
+     */
+    public double im(int i, int r) {
+        return r == 0 ? im(i) : rotations.im(r, re(i), im(i));
+    }
+
+    /**
+     * Returns the id of the {@code r}-th rotation of point {@code i}, its index among the preimages of its parent.
+     */
+    public int id(int i, int r) {
+        return id(i) + r * orbits;
+    }
+
+    /**
+     * Returns the extent of the points including their rotations.
+     *
+     * @return the extent, updated by {@link #add(double, double, int, int)}.
+     */
+    public Extent extent() {
+        return extent;
+    }
+
+    /**
+     * Returns the extent of the points including their rotations with the histograms for quantiles. They are built by
+     * a pass over the points, so cached point clouds don't carry them.
+     *
+     * @return a new extent with quantiles.
+     */
+    public Extent quantiles() {
+        Extent quantiles = new Extent();
+        forEach((re, im, depth, id) -> quantiles.add(re, im));
+
+        return quantiles;
+    }
+
+    /**
+     * Declares the points but the first one as fundamental points of a symmetric fractal.
+     *
+     * @param symmetry The order of the symmetry.
+     * @param orbits The number of fundamental preimages of a point.
+     */
+    void setSymmetry(int symmetry, int orbits) {
+        if (size > 0) {
+            throw new IllegalStateException("Symmetry must be declared before adding points.");
+        }
+
+        if ((long) symmetry * orbits - 1 > MAX_ID) {
+            throw new IllegalArgumentException("Too many preimages: " + symmetry * orbits);
+        }
+
+        this.rotations = new Rotations(symmetry);
+        this.orbits = orbits;
+    }
+
+    /**
+     * Appends a point, the coordinates are rounded to the precision of the cloud.
+     *
+     * @param re The real part.
+     * @param im The imaginary part.
+     * @param depth The depth, at most 2^23 - 1.
+     * @param id The id, at most 255.
+     */
+    public void add(double re, double im, int depth, int id) {
+        if (id < 0 || id > MAX_ID || depth < 0 || depth > Integer.MAX_VALUE >>> 8) {
+            throw new IllegalArgumentException("Depth or id out of range: " + depth + ", " + id);
+        }
+
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Point cloud is full.");
+        }
+
+        set(size, re, im, depth << 8 | id);
+        int i = size++;
+
+        // the stored coordinates, rounded to the precision
+        double x = re(i);
+        double y = im(i);
+        extent.add(x, y);
+
+        for (int r = 1; r < rotations(i); r++) {
+            extent.add(rotations.re(r, x, y), rotations.im(r, x, y));
+        }
+    }
+
+    /**
+     * Passes all points in their order to the consumer, each one followed by its rotations.
+     */
+    public void forEach(PointConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            double re = re(i);
+            double im = im(i);
+            int depth = depth(i);
+            int id = id(i);
+            consumer.accept(re, im, depth, id);
+
+            for (int r = 1; r < rotations(i); r++) {
+                consumer.accept(rotations.re(r, re, im), rotations.im(r, re, im), depth, id + r * orbits);
+            }
+        }
+    }
+
+    /**
+     * Adds a reference, it is given up by {@link #close()}.
+     *
+     * @return this point cloud.
+     * @throws IllegalStateException if the point cloud is closed already.
+     */
+    public PointCloud retain() {
+        if (references.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+            throw new IllegalStateException("Point cloud is closed.");
+        }
+
+        return this;
+    }
+
+    /**
+     * Gives up a reference, the last one releases the storage of a memory-mapped point cloud. Closing a closed point
+     * cloud does nothing.
+     */
+    @Override
+    public final void close() {
+        if (references.getAndUpdate(n -> Math.max(n - 1, 0)) == 1) {
+            release();
+        }
+    }
+
+    // there is nothing to release on the heap
+    protected void release() {
+    }
+
+    // depth << 8 | id
+    protected abstract int tag(int i);
+
+    // stores point i, the points before are stored already
+    protected abstract void set(int i, double re, double im, int tag);
+
+    private abstract static class HeapPoints extends PointCloud {
+        protected int[] tags;
+
+        HeapPoints(int capacity) {
+            tags = new int[Math.max(capacity, 16)];
+        }
+
+        @Override
+        protected int tag(int i) {
+            return tags[i];
+        }
+
+        @Override
+        protected void set(int i, double re, double im, int tag) {
+            if (i == tags.length) {
+                grow(i + (i >> 1));
+            }
+
+            coordinates(i, re, im);
+            tags[i] = tag;
+        }
+
+        protected void grow(int capacity) {
+            tags = Arrays.copyOf(tags, capacity);
+        }
+
+        protected abstract void coordinates(int i, double re, double im);
+    }
+
+    private static final class FloatPoints extends HeapPoints {
+        private float[] re;
+        private float[] im;
+
+        FloatPoints(int capacity) {
+            super(capacity);
+            re = new float[tags.length];
+            im = new float[tags.length];
+        }
+
+        @Override
+        public Precision precision() {
+            return Precision.FLOAT;
+        }
+
+        @Override
+        public double re(int i) {
+            return re[i];
+        }
+
+        @Override
+        public double im(int i) {
+            return im[i];
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            super.grow(capacity);
+            re = Arrays.copyOf(re, capacity);
+            im = Arrays.copyOf(im, capacity);
+        }
+
+        @Override
+        protected void coordinates(int i, double re, double im) {
+            this.re[i] = (float) re;
+            this.im[i] = (float) im;
+        }
+    }
+
+    private static final class DoublePoints extends HeapPoints {
+        private double[] re;
+        private double[] im;
+
+        DoublePoints(int capacity) {
+            super(capacity);
+            re = new double[tags.length];
+            im = new double[tags.length];
+        }
+
+        @Override
+        public Precision precision() {
+            return Precision.DOUBLE;
+        }
+
+        @Override
+        public double re(int i) {
+            return re[i];
+        }
+
+        @Override
+        public double im(int i) {
+            return im[i];
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            super.grow(capacity);
+            re = Arrays.copyOf(re, capacity);
+            im = Arrays.copyOf(im, capacity);
+        }
+
+        @Override
+        protected void coordinates(int i, double re, double im) {
+            this.re[i] = re;
+            this.im[i] = im;
+        }
+    }
+
+    /**
+     * Records of re, im and tag in pages of 2^20 points, each page is mapped on its first write. Sequential access
+     * touches the file sequentially, so the operating system can page in ahead and page out behind.
+     */
+    private static final class MappedPoints extends PointCloud {
+        private static final int PAGE_SHIFT = 20;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+        // closes the files of unreachable point clouds
+        private static final Cleaner CLEANER = Cleaner.create();
+
+        private final Precision precision;
+        // bytes of a coordinate and of a record
+        private final int width;
+        private final int record;
+        private final FileChannel channel;
+        private final List<MappedByteBuffer> pages = new ArrayList<>();
+        private final Cleaner.Cleanable cleanable;
+
+        MappedPoints(Precision precision, Path directory) throws IOException {
+            this.precision = precision;
+            this.width = precision == Precision.FLOAT ? 4 : 8;
+            this.record = 2 * width + 4;
+
+            Path file = Files.createTempFile(directory, "points", ".bin");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                       StandardOpenOption.DELETE_ON_CLOSE);
+            cleanable = CLEANER.register(this, new Closer(channel));
+        }
+
+        @Override
+        public Precision precision() {
+            return precision;
+        }
+
+        @Override
+        public double re(int i) {
+            int offset = (i & PAGE_MASK) * record;
+            MappedByteBuffer page = page(i);
+
+            return precision == Precision.FLOAT ? page.getFloat(offset) : page.getDouble(offset);
+        }
+
+        @Override
+        public double im(int i) {
+            int offset = (i & PAGE_MASK) * record + width;
+            MappedByteBuffer page = page(i);
+
+            return precision == Precision.FLOAT ? page.getFloat(offset) : page.getDouble(offset);
+        }
+
+        @Override
+        protected int tag(int i) {
+            return page(i).getInt((i & PAGE_MASK) * record + record - 4);
+        }
+
+        @Override
+        protected void set(int i, double re, double im, int tag) {
+            if (!channel.isOpen()) {
+                throw new IllegalStateException("Point cloud is closed.");
+            }
+
+            if (i >>> PAGE_SHIFT == pages.size()) {
+                map();
+            }
+
+            // i is the next index, it isn't part of the cloud yet
+            MappedByteBuffer page = pages.get(i >>> PAGE_SHIFT);
+            int offset = (i & PAGE_MASK) * record;
+
+            if (precision == Precision.FLOAT) {
+                page.putFloat(offset, (float) re).putFloat(offset + width, (float) im);
+            }
+            else {
+                page.putDouble(offset, re).putDouble(offset + width, im);
+            }
+
+            page.putInt(offset + record - 4, tag);
+        }
+
+        /**
+         * Closes and deletes the file. Java can't unmap a buffer explicitly, so the pages stay mapped until they are
+         * garbage collected, dropping them here makes them collectable. The space of the file is released with the
+         * last page, accesses after closing fail before they reach one.
+         */
+        @Override
+        protected void release() {
+            try {
+                pages.clear();
+                size = 0;
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finally {
+                cleanable.clean();
+            }
+        }
+
+        private MappedByteBuffer page(int i) {
+            if (!channel.isOpen()) {
+                throw new IllegalStateException("Point cloud is closed.");
+            }
+
+            return pages.get(Objects.checkIndex(i, size) >>> PAGE_SHIFT);
+        }
+
+        private void map() {
+            long length = (long) record << PAGE_SHIFT;
+
+            try {
+                MappedByteBuffer page = channel.map(FileChannel.MapMode.READ_WRITE, pages.size() * length, length);
+                page.order(ByteOrder.nativeOrder());
+                pages.add(page);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // must not refer to the point cloud, otherwise it never becomes unreachable
+        private record Closer(FileChannel channel) implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    // nothing left to release
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+
+/**
+ * A fractal whose preimages are those of a polynomial map, so it can be iterated forward as well, e.g. for escape
+ * time rendering of its Julia set.
+ */
+public interface PolynomialMap {
+
+    /**
+     * Returns the polynomial {@code f} with {@code f(w) = z} for every preimage {@code w} of {@code z}.
+     *
+     * @return the forward map.
+     */
+    ComplexPolynomial forwardMap();
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+/**
+ * Floating point precision of calculated points.
+ */
+public enum Precision {
+    FLOAT,
+    DOUBLE;
+
+    // a float resolves 2^-24 of a coordinate, at this width that is still below 1/4000 pixel
+    private static final int MAX_FLOAT_WIDTH = 2048;
+
+    /**
+     * Returns the cheapest precision which places points exactly enough on an image of the given width.
+     *
+     * @param width The width of the image in pixels.
+     * @return {@link #FLOAT} for preview sizes, {@link #DOUBLE} otherwise.
+     */
+    public static Precision forWidth(int width) {
+        return width <= MAX_FLOAT_WIDTH ? FLOAT : DOUBLE;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+/**
+ * The rotations around 0 by the multiples of {@code 2π / order}, quarter turns are exact.
+ */
+final class Rotations {
+    final int order;
+    final double[] cos;
+    final double[] sin;
+
+    Rotations(int order) {
+        if (order < 1) {
+            throw new IllegalArgumentException("Order of symmetry must be positive.");
+        }
+
+        this.order = order;
+        cos = new double[order];
+        sin = new double[order];
+
+        for (int r = 0; r < order; r++) {
+            if (4 * r % order == 0) {
+                int quarter = 4 * r / order;
+                cos[r] = new double[] {1.0, 0.0, -1.0, 0.0}[quarter];
+                sin[r] = new double[] {0.0, 1.0, 0.0, -1.0}[quarter];
+            }
+            else {
+                cos[r] = Math.cos(2.0 * Math.PI * r / order);
+                sin[r] = Math.sin(2.0 * Math.PI * r / order);
+            }
+        }
+    }
+
+    double re(int r, double re, double im) {
+        return re * cos[r] - im * sin[r];
+    }
+
+    double im(int r, double re, double im) {
+        return re * sin[r] + im * cos[r];
+    }
+}
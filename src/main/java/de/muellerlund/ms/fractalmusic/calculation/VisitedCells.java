@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+/**
+ * Cells of a square grid visited by a preimage tree, with the largest remaining depth of a subtree rooted in each.
+ *
+ * <p>Open addressing with linear probing on primitive arrays, a cell is given by the longs of its column and row.</p>
+ */
+final class VisitedCells {
+    private final double scale;
+
+    private long[] columns = new long[1 << 10];
+    private long[] rows = new long[1 << 10];
+    // remaining depth per slot, 0 for an empty slot
+    private int[] depths = new int[1 << 10];
+    private int size;
+
+    /**
+     * @param grid The edge length of a cell.
+     */
+    VisitedCells(double grid) {
+        if (!(grid > 0.0) || Double.isInfinite(grid)) {
+            throw new IllegalArgumentException("Grid size must be positive.");
+        }
+
+        scale = 1.0 / grid;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Marks the cell of the point as visited by a subtree of the given depth.
+     *
+     * @return {@code false} if a subtree at least as deep was rooted in the cell before.
+     */
+    boolean visit(double re, double im, int depth) {
+        long column = (long) Math.floor(re * scale);
+        long row = (long) Math.floor(im * scale);
+        int mask = depths.length - 1;
+        int i = hash(column, row) & mask;
+
+        while (depths[i] != 0) {
+            if (columns[i] == column && rows[i] == row) {
+                if (depths[i] >= depth) {
+                    return false;
+                }
+
+                depths[i] = depth;
+                return true;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        columns[i] = column;
+        rows[i] = row;
+        depths[i] = depth;
+
+        if (++size > depths.length >> 1) {
+            rehash();
+        }
+
+        return true;
+    }
+
+    private void rehash() {
+        long[] oldColumns = columns;
+        long[] oldRows = rows;
+        int[] oldDepths = depths;
+        columns = new long[2 * oldDepths.length];
+        rows = new long[2 * oldDepths.length];
+        depths = new int[2 * oldDepths.length];
+        int mask = depths.length - 1;
+
+        for (int k = 0; k < oldDepths.length; k++) {
+            if (oldDepths[k] != 0) {
+                int i = hash(oldColumns[k], oldRows[k]) & mask;
+                while (depths[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+
+                columns[i] = oldColumns[k];
+                rows[i] = oldRows[k];
+                depths[i] = oldDepths[k];
+            }
+        }
+    }
+
+    // finalizer of MurmurHash3 applied to both coordinates
+    private static int hash(long column, long row) {
+        long h = column * 0x9e3779b97f4a7c15L + row;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e6bc5d1fbL;
+        h ^= h >>> 33;
+
+        return (int) h;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The preimages of each level of the last tree calculated by
+ * {@link Calculator#calculateLevels(ComplexFractal, org.apache.commons.math3.complex.Complex, int, Precision,
+ * WarmStart)}, they are the approximations of the preimages of the next one, e.g. the next frame of an animation.
+ *
+ * <p>A level is only used as approximation if it had no gaps and the corresponding level of the next tree has the
+ * same size, so the slots match. The arrays are reused from tree to tree. Not thread-safe.</p>
+ */
+public final class WarmStart {
+
+    private final List<double[]> re = new ArrayList<>();
+    private final List<double[]> im = new ArrayList<>();
+
+    /**
+     * Returns the real parts of the preimages of the given level if it has the given number of slots.
+     */
+    double[] re(int level, int slots) {
+        return level < re.size() && re.get(level) != null && re.get(level).length == slots ? re.get(level) : null;
+    }
+
+    double[] im(int level) {
+        return im.get(level);
+    }
+
+    /**
+     * Keeps a copy of the preimages of a level, {@code null} if it has gaps.
+     */
+    void set(int level, double[] re, double[] im, int slots, boolean complete) {
+        while (this.re.size() <= level) {
+            this.re.add(null);
+            this.im.add(null);
+        }
+
+        if (!complete) {
+            this.re.set(level, null);
+            this.im.set(level, null);
+            return;
+        }
+
+        double[] r = this.re.get(level);
+        double[] i = this.im.get(level);
+
+        if (r == null || r.length != slots) {
+            r = new double[slots];
+            i = new double[slots];
+            this.re.set(level, r);
+            this.im.set(level, i);
+        }
+
+        System.arraycopy(re, 0, r, 0, slots);
+        System.arraycopy(im, 0, i, 0, slots);
+    }
+}
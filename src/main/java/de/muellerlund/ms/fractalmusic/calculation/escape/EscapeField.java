@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+/**
+ * Result of an escape time rendering: the continuous iteration count of each pixel in row-major order.
+ *
+ * @param width The width in pixels.
+ * @param height The height in pixels.
+ * @param values The continuous iteration count of each pixel or {@link #INTERIOR} if the orbit didn't escape.
+ * @param references The number of reference orbits used.
+ * @param glitches The number of pixels rendered without glitch detection as no further reference orbit was allowed.
+ */
+public record EscapeField(int width, int height, float[] values, int references, int glitches) {
+
+    public static final float INTERIOR = -1.0f;
+
+    /**
+     * Maximal number of iterations per pixel.
+     */
+    public static final int MAX_ITERATIONS = 50000;
+
+    public float get(int x, int y) {
+        return values[y * width + x];
+    }
+}
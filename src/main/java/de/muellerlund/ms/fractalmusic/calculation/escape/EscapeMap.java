@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.MutableComplex;
+
+/**
+ * Primitive view of a polynomial map for escape time iteration.
+ */
+final class EscapeMap {
+    // coefficients in ascending order and their absolute values
+    final double[] re;
+    final double[] im;
+    final double[] abs;
+    final int degree;
+
+    // square of the bailout radius
+    final double bailout2;
+
+    // radius of a disc around 0 containing the filled Julia set
+    final double radius;
+
+    private final double logBailout;
+    private final double logDegree;
+
+    EscapeMap(ComplexPolynomial f) {
+        degree = f.degree();
+
+        if (degree < 2) {
+            throw new IllegalArgumentException("Degree of polynomial must be at least 2.");
+        }
+
+        re = new double[degree + 1];
+        im = new double[degree + 1];
+        abs = new double[degree + 1];
+
+        for (int k = 0; k <= degree; k++) {
+            MutableComplex a = f.get(k);
+            re[k] = a.real();
+            im[k] = a.imag();
+            abs[k] = a.abs();
+
+            if (!Double.isFinite(abs[k])) {
+                throw new IllegalArgumentException("Coefficients must be finite.");
+            }
+        }
+
+        if (abs[degree] == 0.0) {
+            throw new IllegalArgumentException("Leading coefficient must not be zero.");
+        }
+
+        double bailout = bailout(abs);
+        bailout2 = bailout * bailout;
+        logBailout = Math.log(bailout);
+        logDegree = Math.log(degree);
+
+        radius = bound(abs, 1.0);
+    }
+
+    /**
+     * Checks the arguments common to all escape time renderers.
+     */
+    static void check(double radius, int width, int height, int maxIterations) {
+        if (!(radius > 0.0) || Double.isInfinite(radius)) {
+            throw new IllegalArgumentException("Radius must be positive.");
+        }
+
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Image size must be positive.");
+        }
+
+        if (maxIterations < 1 || maxIterations > EscapeField.MAX_ITERATIONS) {
+            throw new IllegalArgumentException("Iterations must be in [1, " + EscapeField.MAX_ITERATIONS + "].");
+        }
+    }
+
+    /**
+     * Returns a bailout radius for a polynomial with the given absolute values of its coefficients: every orbit
+     * reaching it escapes, since beyond it {@code |f(z)| >= 2 |z|} holds.
+     */
+    static double bailout(double[] abs) {
+        // a large bailout keeps the smooth iteration count continuous
+        return Math.max(bound(abs, 2.0), 1e3);
+    }
+
+    /**
+     * Returns the positive zero of {@code g(r) = |a_n| r^n - |a_(n-1)| r^(n-1) - … - |a_0| - factor r}, beyond it
+     * {@code |f(z)| > factor |z|} holds. By Descartes' rule of signs there is exactly one.
+     */
+    static double bound(double[] abs, double factor) {
+        int n = abs.length - 1;
+        double sum = factor;
+        for (int k = 0; k < n; k++) {
+            sum += abs[k];
+        }
+
+        // g(r) >= r^(n-1) (|a_n| r - sum) for r >= 1
+        double lo = 0.0;
+        double hi = Math.max(1.0, sum / abs[n]);
+
+        for (int i = 0; i < 64; i++) {
+            double r = 0.5 * (lo + hi);
+            double g = abs[n];
+            for (int k = n - 1; k >= 0; k--) {
+                g = g * r - abs[k];
+            }
+
+            if (g - factor * r > 0.0) {
+                hi = r;
+            }
+            else {
+                lo = r;
+            }
+        }
+
+        return hi;
+    }
+
+    /**
+     * Returns the continuous iteration count of an orbit escaping after {@code i} steps at {@code |z|² = norm}.
+     */
+    float smooth(int i, double norm) {
+        return smooth(i, norm, logBailout);
+    }
+
+    /**
+     * Returns the continuous iteration count for a bailout radius other than the one of this map.
+     */
+    float smooth(int i, double norm, double logBailout) {
+        double nu = i + 1 - Math.log(0.5 * Math.log(norm) / logBailout) / logDegree;
+        return (float) Math.max(0.0, nu);
+    }
+}
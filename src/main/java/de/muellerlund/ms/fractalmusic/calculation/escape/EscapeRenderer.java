@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.ms.fractalmusic.calculation.ParallelLoop;
+
+/**
+ * Escape time rendering of the Julia set of a polynomial map in double precision.
+ *
+ * <p>Each pixel is iterated forward until it leaves the bailout circle, its continuous iteration count is then
+ * derived from the final modulus. Interior points are recognized early by Brent's cycle detection: the orbit is
+ * compared with a point saved at steps 2, 4, 8, …, so attracting cycles of any period are found after a few
+ * multiples of their period instead of running into the iteration limit. The rows of the image are handed to the
+ * {@link ParallelLoop} one by one.</p>
+ */
+public final class EscapeRenderer {
+
+    // squared distance to the saved point which counts as a closed cycle
+    private static final double CYCLE_EPS2 = 1e-24;
+
+    private EscapeRenderer() {
+    }
+
+    /**
+     * Returns the radius of a disc around 0 which contains the filled Julia set of {@code f}.
+     *
+     * @param f The polynomial map, its degree must be at least 2.
+     * @return the radius of a disc around 0 containing all bounded orbits.
+     */
+    public static double radius(ComplexPolynomial f) {
+        return new EscapeMap(f).radius;
+    }
+
+    /**
+     * Renders the continuous iteration count of the Julia set of {@code f}.
+     *
+     * @param f The polynomial map, its degree must be at least 2.
+     * @param cx The real part of the center of the image.
+     * @param cy The imaginary part of the center of the image.
+     * @param radius The distance between the center and the left/right border.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param maxIterations The maximal number of iterations per pixel.
+     * @param loop Runs the rows of the image.
+     * @return the continuous iteration count of each pixel.
+     */
+    public static EscapeField render(ComplexPolynomial f, double cx, double cy, double radius, int width, int height,
+                                     int maxIterations, ParallelLoop loop) {
+        EscapeMap.check(radius, width, height, maxIterations);
+
+        EscapeMap map = new EscapeMap(f);
+        double scale = 2.0 * radius / width;
+        float[] values = new float[width * height];
+
+        loop.forEach(height, y -> {
+            double zi = cy - (y + 0.5 - 0.5 * height) * scale;
+            int row = y * width;
+
+            for (int x = 0; x < width; x++) {
+                double zr = cx + (x + 0.5 - 0.5 * width) * scale;
+                values[row + x] = iterate(map, zr, zi, maxIterations);
+            }
+        });
+
+        return new EscapeField(width, height, values, 0, 0);
+    }
+
+    private static float iterate(EscapeMap f, double zr, double zi, int maxIterations) {
+        int n = f.degree;
+        double[] re = f.re;
+        double[] im = f.im;
+
+        double sr = zr;
+        double si = zi;
+        int step = 0;
+        int limit = 2;
+
+        for (int i = 0; i < maxIterations; i++) {
+            double norm = zr * zr + zi * zi;
+
+            if (norm > f.bailout2) {
+                return f.smooth(i, norm);
+            }
+
+            // Horner scheme
+            double wr = re[n];
+            double wi = im[n];
+            for (int j = n - 1; j >= 0; j--) {
+                double t = wr * zr - wi * zi + re[j];
+                wi = wr * zi + wi * zr + im[j];
+                wr = t;
+            }
+
+            zr = wr;
+            zi = wi;
+
+            double dr = zr - sr;
+            double di = zi - si;
+
+            if (dr * dr + di * di < CYCLE_EPS2) {
+                return EscapeField.INTERIOR;
+            }
+
+            if (++step == limit) {
+                step = 0;
+                limit <<= 1;
+                sr = zr;
+                si = zi;
+            }
+        }
+
+        return EscapeField.INTERIOR;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.NewtonSolver;
+import de.muellerlund.math.complex.Zero;
+import de.muellerlund.ms.fractalmusic.calculation.ParallelLoop;
+
+import java.util.List;
+
+/**
+ * Escape time rendering of the parameter plane of the family {@code f(z) + c}, where the constant coefficient of
+ * {@code f} is replaced by the parameter {@code c}. For {@code z² + c} this is the Mandelbrot set.
+ *
+ * <p>The Julia set of a polynomial is connected iff the orbits of all its critical points are bounded. As the critical
+ * points (zeros of {@code f'}) don't depend on {@code c}, they are determined once. A pixel is interior if no critical
+ * orbit escapes, otherwise it gets the continuous iteration count of the fastest escaping one. Interior parameters
+ * therefore yield connected Julia sets which look good and are cheap in preimage mode, dust-like ones are far away
+ * from the interior.</p>
+ */
+public final class ParameterRenderer {
+
+    // squared distance to the saved point which counts as a closed cycle
+    private static final double CYCLE_EPS2 = 1e-24;
+
+    private ParameterRenderer() {
+    }
+
+    /**
+     * Returns the radius of a disc around 0 containing all parameters with bounded critical orbits.
+     *
+     * @param f The polynomial map, its degree must be at least 2, its constant coefficient is ignored.
+     * @return the radius of the disc.
+     */
+    public static double radius(ComplexPolynomial f) {
+        return radius(new EscapeMap(f), criticalPoints(f));
+    }
+
+    private static double radius(EscapeMap map, double[][] critical) {
+        // largest |f(ω) - a_0| of all critical points ω
+        double m = 0.0;
+        for (double[] w : critical) {
+            double[] v = evaluate(map, w[0], w[1], 0.0, 0.0);
+            m = Math.max(m, Math.hypot(v[0], v[1]));
+        }
+
+        // beyond c the first critical value has left the bailout radius of f(z) + c
+        double[] abs = map.abs.clone();
+        double c = 1.0;
+
+        while (Double.isFinite(c)) {
+            abs[0] = c;
+            if (c - m > EscapeMap.bound(abs, 2.0)) {
+                return c;
+            }
+
+            c *= 1.25;
+        }
+
+        // only reached if m or the bound overflow
+        throw new IllegalArgumentException("Coefficients are too large.");
+    }
+
+    /**
+     * Renders the continuous iteration count of the fastest escaping critical orbit of {@code f(z) + c} for every
+     * parameter {@code c} of the image.
+     *
+     * @param f The polynomial map, its degree must be at least 2, its constant coefficient is ignored.
+     * @param cx The real part of the center of the image.
+     * @param cy The imaginary part of the center of the image.
+     * @param radius The distance between the center and the left/right border.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param maxIterations The maximal number of iterations per critical point.
+     * @param loop Runs the rows of the image.
+     * @return the continuous iteration count of each pixel.
+     */
+    public static EscapeField render(ComplexPolynomial f, double cx, double cy, double radius, int width, int height,
+                                     int maxIterations, ParallelLoop loop) {
+        EscapeMap.check(radius, width, height, maxIterations);
+
+        EscapeMap map = new EscapeMap(f);
+        double[][] critical = criticalPoints(f);
+        double scale = 2.0 * radius / width;
+
+        // one bailout valid for all parameters of the image, the same for all images inside the square around the
+        // disc of radius(f), so tiles fit together seamlessly
+        double[] abs = map.abs.clone();
+        double reach = Math.hypot(Math.abs(cx) + radius, Math.abs(cy) + 0.5 * height * scale);
+        abs[0] = Math.max(Math.sqrt(2.0) * radius(map, critical), reach);
+        double bailout = EscapeMap.bailout(abs);
+        double bailout2 = bailout * bailout;
+        double logBailout = Math.log(bailout);
+
+        float[] values = new float[width * height];
+
+        loop.forEach(height, y -> {
+            double ci = cy - (y + 0.5 - 0.5 * height) * scale;
+            int row = y * width;
+
+            for (int x = 0; x < width; x++) {
+                double cr = cx + (x + 0.5 - 0.5 * width) * scale;
+                float value = EscapeField.INTERIOR;
+
+                for (double[] w : critical) {
+                    float nu = iterate(map, w[0], w[1], cr, ci, maxIterations, bailout2, logBailout);
+
+                    if (nu != EscapeField.INTERIOR && (value == EscapeField.INTERIOR || nu < value)) {
+                        value = nu;
+                    }
+                }
+
+                values[row + x] = value;
+            }
+        });
+
+        return new EscapeField(width, height, values, 0, 0);
+    }
+
+    // the distinct zeros of f' as {re, im}
+    private static double[][] criticalPoints(ComplexPolynomial f) {
+        List<Zero> zeros = NewtonSolver.solveAll(f.derivative(), null, 1e-24);
+
+        return zeros.stream()
+                    .map(zero -> new double[] {zero.value().real(), zero.value().imag()})
+                    .toArray(double[][]::new);
+    }
+
+    // f(z) with the constant coefficient replaced by c
+    private static double[] evaluate(EscapeMap f, double zr, double zi, double cr, double ci) {
+        int n = f.degree;
+        double wr = f.re[n];
+        double wi = f.im[n];
+
+        for (int j = n - 1; j >= 1; j--) {
+            double t = wr * zr - wi * zi + f.re[j];
+            wi = wr * zi + wi * zr + f.im[j];
+            wr = t;
+        }
+
+        return new double[] {wr * zr - wi * zi + cr, wr * zi + wi * zr + ci};
+    }
+
+    private static float iterate(EscapeMap f, double zr, double zi, double cr, double ci, int maxIterations,
+                                 double bailout2, double logBailout) {
+        int n = f.degree;
+        double[] re = f.re;
+        double[] im = f.im;
+
+        double sr = zr;
+        double si = zi;
+        int step = 0;
+        int limit = 2;
+
+        for (int i = 0; i < maxIterations; i++) {
+            double norm = zr * zr + zi * zi;
+
+            if (norm > bailout2) {
+                return f.smooth(i, norm, logBailout);
+            }
+
+            // Horner scheme, the parameter replaces a_0
+            double wr = re[n];
+            double wi = im[n];
+            for (int j = n - 1; j >= 1; j--) {
+                double t = wr * zr - wi * zi + re[j];
+                wi = wr * zi + wi * zr + im[j];
+                wr = t;
+            }
+
+            double t = wr * zr - wi * zi + cr;
+            zi = wr * zi + wi * zr + ci;
+            zr = t;
+
+            double dr = zr - sr;
+            double di = zi - si;
+
+            if (dr * dr + di * di < CYCLE_EPS2) {
+                return EscapeField.INTERIOR;
+            }
+
+            if (++step == limit) {
+                step = 0;
+                limit <<= 1;
+                sr = zr;
+                si = zi;
+            }
+        }
+
+        return EscapeField.INTERIOR;
+    }
+}
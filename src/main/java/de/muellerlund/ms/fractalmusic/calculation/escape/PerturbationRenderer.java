@@ -0,0 +1,200 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.DoubleDoubleComplex;
+import de.muellerlund.ms.fractalmusic.calculation.ParallelLoop;
+
+/**
+ * Escape time rendering of the Julia set of a polynomial map at zoom levels beyond double precision.
+ *
+ * <p>Only the orbit of a reference point is computed in double-double precision. Every pixel iterates its difference
+ * {@code δ} to the reference orbit {@code Z} in plain double precision:</p>
+ *
+ * <pre>
+ *     δ' = f(Z + δ) - f(Z)
+ * </pre>
+ *
+ * <p>evaluated by a Horner scheme of differences, so no cancellation happens. If a pixel's orbit comes closer to the
+ * start of the reference orbit than to the reference orbit itself, it is rebased to the start. Pixels still losing
+ * precision (|Z + δ| ≪ |Z|, the criterion of Pauldelbrot) are rendered again with a new reference orbit inside the
+ * glitched area.</p>
+ */
+public final class PerturbationRenderer {
+
+    // maximal number of reference orbits per image
+    private static final int MAX_REFERENCES = 32;
+
+    // |Z + δ|² < GLITCH |Z|² marks a glitch
+    private static final double GLITCH = 1e-6;
+
+    private PerturbationRenderer() {
+    }
+
+    /**
+     * Renders the continuous iteration count of the Julia set of {@code f} around the given center on the calling
+     * thread.
+     *
+     * @see #render(ComplexPolynomial, DoubleDoubleComplex, double, int, int, int, ParallelLoop)
+     */
+    public static EscapeField render(ComplexPolynomial f, DoubleDoubleComplex center, double radius, int width,
+                                     int height, int maxIterations) {
+        return render(f, center, radius, width, height, maxIterations, ParallelLoop.SEQUENTIAL);
+    }
+
+    /**
+     * Renders the continuous iteration count of the Julia set of {@code f} around the given center.
+     *
+     * @param f The polynomial map, its degree must be at least 2.
+     * @param center The center of the image.
+     * @param radius The distance between the center and the left/right border.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param maxIterations The maximal number of iterations per pixel.
+     * @param loop Runs the pixels of each pass in chunks of one row length.
+     * @return the continuous iteration count of each pixel.
+     */
+    public static EscapeField render(ComplexPolynomial f, DoubleDoubleComplex center, double radius, int width,
+                                     int height, int maxIterations, ParallelLoop loop) {
+        EscapeMap.check(radius, width, height, maxIterations);
+
+        EscapeMap map = new EscapeMap(f);
+        double scale = 2.0 * radius / width;
+        float[] values = new float[width * height];
+
+        // pixels to render with the current reference, all in the first pass
+        int[] pending = new int[width * height];
+        for (int i = 0; i < pending.length; i++) {
+            pending[i] = i;
+        }
+
+        int count = pending.length;
+        int references = 0;
+        int glitches = 0;
+        double refX = 0.0;
+        double refY = 0.0;
+
+        while (count > 0 && references < MAX_REFERENCES) {
+            ReferenceOrbit orbit = new ReferenceOrbit(map, center.clone().add(refX, refY), maxIterations);
+            boolean last = ++references == MAX_REFERENCES;
+
+            if (last) {
+                // out of references, accept the glitches
+                glitches = count;
+            }
+
+            int n = count;
+            double rx = refX;
+            double ry = refY;
+
+            loop.forEach((n + width - 1) / width, chunk -> {
+                for (int k = chunk * width, end = Math.min(n, k + width); k < end; k++) {
+                    int p = pending[k];
+                    double dx = offset(p % width, width, scale) - rx;
+                    double dy = -offset(p / width, height, scale) - ry;
+                    values[p] = iterate(map, orbit, dx, dy, maxIterations, !last);
+                }
+            });
+
+            // glitched pixels are marked by NaN
+            int glitched = 0;
+            for (int k = 0; k < count; k++) {
+                if (Float.isNaN(values[pending[k]])) {
+                    pending[glitched++] = pending[k];
+                }
+            }
+
+            count = glitched;
+
+            if (count > 0) {
+                // next reference in the middle of the glitched pixels
+                int p = pending[count / 2];
+                refX = offset(p % width, width, scale);
+                refY = -offset(p / width, height, scale);
+            }
+        }
+
+        return new EscapeField(width, height, values, references, glitches);
+    }
+
+    // offset of the pixel center from the image center
+    private static double offset(int i, int size, double scale) {
+        return (i + 0.5 - 0.5 * size) * scale;
+    }
+
+    /**
+     * Iterates one pixel starting at {@code Z_0 + δ}.
+     *
+     * @return the continuous iteration count, {@link EscapeField#INTERIOR} or {@code NaN} for a glitch.
+     */
+    private static float iterate(EscapeMap f, ReferenceOrbit orbit, double dr, double di, int maxIterations,
+                                 boolean detectGlitches) {
+        int n = f.degree;
+        double[] pr = orbit.pr;
+        double[] pi = orbit.pi;
+        int m = 0;
+
+        for (int i = 0; i < maxIterations; i++) {
+            double zr = orbit.zr[m];
+            double zi = orbit.zi[m];
+            double xr = zr + dr;
+            double xi = zi + di;
+            double norm = xr * xr + xi * xi;
+
+            if (norm > f.bailout2) {
+                return f.smooth(i, norm);
+            }
+
+            // closer to the start of the reference orbit than to the reference orbit itself
+            double er = orbit.dr[m] + dr;
+            double ei = orbit.di[m] + di;
+
+            if (m == orbit.length || er * er + ei * ei < dr * dr + di * di) {
+                dr = er;
+                di = ei;
+                m = 0;
+                zr = orbit.zr[0];
+                zi = orbit.zi[0];
+                xr = zr + dr;
+                xi = zi + di;
+            }
+            else if (detectGlitches && norm < GLITCH * (zr * zr + zi * zi)) {
+                return Float.NaN;
+            }
+
+            // δ' = f(Z + δ) - f(Z): D_j = D_(j+1) (Z + δ) + P_(j+1) δ
+            double sr = 0.0;
+            double si = 0.0;
+            int base = m * n;
+            for (int j = n - 1; j >= 0; j--) {
+                double qr = pr[base + j];
+                double qi = pi[base + j];
+                double t = sr * xr - si * xi + qr * dr - qi * di;
+                si = sr * xi + si * xr + qr * di + qi * dr;
+                sr = t;
+            }
+
+            dr = sr;
+            di = si;
+            m++;
+        }
+
+        return EscapeField.INTERIOR;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.DoubleDoubleComplex;
+
+/**
+ * Orbit of a reference point computed in double-double precision and stored rounded to double together with
+ * everything the perturbed pixels need per step.
+ */
+final class ReferenceOrbit {
+    // Z_m rounded to double
+    final double[] zr;
+    final double[] zi;
+
+    // Z_m - Z_0 rounded to double, needed to rebase a pixel precisely
+    final double[] dr;
+    final double[] di;
+
+    // partial Horner sums P_n … P_1 of f(Z_m), degree values per step
+    final double[] pr;
+    final double[] pi;
+
+    // index of the last stored step, the orbit escaped there if less than the iteration limit
+    final int length;
+
+    ReferenceOrbit(EscapeMap f, DoubleDoubleComplex z0, int maxIterations) {
+        int n = f.degree;
+
+        zr = new double[maxIterations + 1];
+        zi = new double[maxIterations + 1];
+        dr = new double[maxIterations + 1];
+        di = new double[maxIterations + 1];
+        pr = new double[maxIterations * n];
+        pi = new double[maxIterations * n];
+
+        DoubleDoubleComplex z = z0.clone();
+        DoubleDoubleComplex w = new DoubleDoubleComplex();
+        DoubleDoubleComplex d = new DoubleDoubleComplex();
+        int m = 0;
+
+        while (true) {
+            double x = z.real();
+            double y = z.imag();
+            zr[m] = x;
+            zi[m] = y;
+
+            d.assign(z).sub(z0);
+            dr[m] = d.real();
+            di[m] = d.imag();
+
+            if (m == maxIterations || x * x + y * y > f.bailout2) {
+                break;
+            }
+
+            // P_n = a_n, P_j = P_(j+1) Z + a_j
+            double qr = f.re[n];
+            double qi = f.im[n];
+            for (int j = n - 1; j >= 0; j--) {
+                pr[m * n + j] = qr;
+                pi[m * n + j] = qi;
+
+                double t = qr * x - qi * y + f.re[j];
+                qi = qr * y + qi * x + f.im[j];
+                qr = t;
+            }
+
+            // the same Horner scheme in full precision
+            w.assign(f.re[n], f.im[n]);
+            for (int j = n - 1; j >= 0; j--) {
+                w.mult(z).add(f.re[j], f.im[j]);
+            }
+
+            z.assign(w);
+            m++;
+        }
+
+        length = m;
+    }
+}
@@ -18,19 +18,97 @@
 package de.muellerlund.ms.fractalmusic.calculation.fractals;
 
 import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.DeflationWorkspace;
 import de.muellerlund.math.complex.MutableComplex;
 import de.muellerlund.math.complex.NewtonSolver;
-import de.muellerlund.math.complex.Zero;
+import de.muellerlund.math.complex.RootMethod;
 import de.muellerlund.ms.fractalmusic.calculation.ComplexFractal;
+import de.muellerlund.ms.fractalmusic.calculation.PolynomialMap;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class PolynomialFractal implements ComplexFractal {
+public class PolynomialFractal implements ComplexFractal, PolynomialMap {
+    private static final ThreadLocal<DeflationWorkspace> WORKSPACE = ThreadLocal.withInitial(DeflationWorkspace::new);
+
     private final ComplexPolynomial p;
 
+    // coefficients in ascending order for the workspace
+    private final double[] re;
+    private final double[] im;
+
+    // p(z) = q(z^symmetry), coefficients of q in ascending order
+    private final int symmetry;
+    private final double[] qre;
+    private final double[] qim;
+
+    // the n-th roots of unity if the polynomial is a z^n + c, else null
+    private final double[] unitRe;
+    private final double[] unitIm;
+
+    private NewtonSolver.Listener solverListener;
+    private int maxIterations = NewtonSolver.DEFAULT_MAX_ITERATIONS;
+    private RootMethod rootMethod = RootMethod.NEWTON;
+
     public PolynomialFractal(MutableComplex ... c) {
         p = new ComplexPolynomial(c);
+
+        int n = Math.max(0, p.degree());
+        re = new double[n + 1];
+        im = new double[n + 1];
+
+        for (int k = 0; k <= p.degree(); k++) {
+            MutableComplex a = p.get(k);
+            re[k] = a.real();
+            im[k] = a.imag();
+        }
+
+        // the greatest common divisor of the exponents of all non-constant terms
+        int m = 0;
+        for (int k = 1; k <= p.degree(); k++) {
+            if (re[k] != 0.0 || im[k] != 0.0) {
+                m = gcd(m, k);
+            }
+        }
+
+        symmetry = Math.max(1, m);
+        qre = new double[n / symmetry + 1];
+        qim = new double[n / symmetry + 1];
+
+        for (int k = 0; k < qre.length; k++) {
+            qre[k] = re[k * symmetry];
+            qim[k] = im[k * symmetry];
+        }
+
+        if (n >= 1 && symmetry == n) {
+            unitRe = new double[n];
+            unitIm = new double[n];
+
+            for (int j = 0; j < n; j++) {
+                unitRe[j] = Math.cos(2.0 * Math.PI * j / n);
+                unitIm[j] = Math.sin(2.0 * Math.PI * j / n);
+            }
+        }
+        else {
+            unitRe = null;
+            unitIm = null;
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    public void setSolverListener(NewtonSolver.Listener solverListener) {
+        this.solverListener = solverListener;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public void setRootMethod(RootMethod rootMethod) {
+        this.rootMethod = rootMethod;
     }
 
     @Override
@@ -38,18 +116,160 @@ public class PolynomialFractal implements ComplexFractal {
         return p.degree();
     }
 
+    /**
+     * Returns whether the polynomial is {@code a z^n + c}, its preimages are calculated in closed form then.
+     */
+    public boolean isMonomial() {
+        return unitRe != null;
+    }
+
+    @Override
+    public double preImageCost() {
+        int n = p.degree();
+
+        if (isMonomial()) {
+            // one polar conversion and one power, a complex multiplication per root
+            return 4.0 + 0.25 * n;
+        }
+
+        // Newton iterations for every zero, each evaluation is a Horner scheme of the degree
+        return 8.0 * n * n;
+    }
+
+    /**
+     * Returns {@code m} if the polynomial is {@code q(z^m)} for a polynomial {@code q}, e.g. {@code n} for
+     * {@code a z^n + c}.
+     */
+    @Override
+    public int symmetry() {
+        return symmetry;
+    }
+
+    @Override
+    public ComplexPolynomial forwardMap() {
+        return p.clone();
+    }
+
     @Override
     public List<MutableComplex> preImages(MutableComplex z) {
-        ComplexPolynomial q = p.clone();
-        q.move(z.clone().neg());
+        if (p.degree() < 1) {
+            return new ArrayList<>();
+        }
+
+        if (isMonomial()) {
+            int n = p.degree();
+            double[] wr = new double[n];
+            double[] wi = new double[n];
+            roots(z.real(), z.imag(), wr, wi, 0, n);
+            List<MutableComplex> solutions = new ArrayList<>(n);
+
+            for (int j = 0; j < n; j++) {
+                solutions.add(new MutableComplex(wr[j], wi[j]));
+            }
+
+            return solutions;
+        }
+
+        DeflationWorkspace workspace = WORKSPACE.get();
+        int n = workspace.solveAll(re, im, p.degree(), z.real(), z.imag(), 1e-15, maxIterations, rootMethod,
+                                   solverListener);
+        List<MutableComplex> solutions = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++) {
+            solutions.add(new MutableComplex(workspace.re(i), workspace.im(i)));
+        }
+
+        return solutions;
+    }
+
+    @Override
+    public int preImages(double[] zre, double[] zim, int count, double[] outRe, double[] outIm) {
+        return preImages(zre, zim, count, outRe, outIm, null, null);
+    }
+
+    @Override
+    public int preImages(double[] zre, double[] zim, int count, double[] outRe, double[] outIm, double[] seedRe,
+                         double[] seedIm) {
+        int n = p.degree();
+        if (n < 1) {
+            return 0;
+        }
+
+        if (isMonomial()) {
+            for (int k = 0; k < count; k++) {
+                roots(zre[k], zim[k], outRe, outIm, k * n, n);
+            }
 
-        List<Zero> zeros = NewtonSolver.solveAll(q, null, 1e-15);
-        List<MutableComplex> solutions = new ArrayList<>();
+            return count * n;
+        }
+
+        DeflationWorkspace workspace = WORKSPACE.get();
+
+        for (int k = 0; k < count; k++) {
+            int found = workspace.solveAll(re, im, n, zre[k], zim[k], 1e-15, maxIterations, rootMethod,
+                                           solverListener, seedRe, seedIm, k * n);
+
+            for (int j = 0; j < n; j++) {
+                outRe[k * n + j] = j < found ? workspace.re(j) : Double.NaN;
+                outIm[k * n + j] = j < found ? workspace.im(j) : Double.NaN;
+            }
+        }
 
-        for (Zero zero : zeros) {
-            solutions.add(zero.value());
+        return count * n;
+    }
+
+    /**
+     * Solves {@code q(y) = z} and takes the principal {@code m}-th root of each solution, so only a polynomial of
+     * degree {@code n / m} is solved.
+     */
+    @Override
+    public List<MutableComplex> fundamentalPreImages(MutableComplex z) {
+        if (symmetry == 1) {
+            return preImages(z);
+        }
+
+        if (isMonomial()) {
+            double[] wr = new double[1];
+            double[] wi = new double[1];
+            roots(z.real(), z.imag(), wr, wi, 0, 1);
+
+            return List.of(new MutableComplex(wr[0], wi[0]));
+        }
+
+        DeflationWorkspace workspace = WORKSPACE.get();
+        int n = workspace.solveAll(qre, qim, qre.length - 1, z.real(), z.imag(), 1e-15, maxIterations, rootMethod,
+                                   solverListener);
+        List<MutableComplex> solutions = new ArrayList<>(n);
+
+        for (int i = 0; i < n; i++) {
+            double r = Math.hypot(workspace.re(i), workspace.im(i));
+            double phi = Math.atan2(workspace.im(i), workspace.re(i));
+            solutions.add(MutableComplex.polar(Math.pow(r, 1.0 / symmetry), phi / symmetry));
         }
 
         return solutions;
     }
+
+    /**
+     * Stores the first {@code count} n-th roots of {@code (z - c) / a}: the principal root times the n-th roots of
+     * unity in ascending order.
+     */
+    private void roots(double zr, double zi, double[] outRe, double[] outIm, int offset, int count) {
+        int n = unitRe.length;
+        double xr = zr - re[0];
+        double xi = zi - im[0];
+        double an = re[n] * re[n] + im[n] * im[n];
+        double wr = (xr * re[n] + xi * im[n]) / an;
+        double wi = (xi * re[n] - xr * im[n]) / an;
+
+        double rho = Math.pow(wr * wr + wi * wi, 0.5 / n);
+        double phi = Math.atan2(wi, wr) / n;
+        double br = rho * Math.cos(phi);
+        double bi = rho * Math.sin(phi);
+
+        for (int j = 0; j < count; j++) {
+            outRe[offset + j] = br * unitRe[j] - bi * unitIm[j];
+            outIm[offset + j] = br * unitIm[j] + bi * unitRe[j];
+        }
+    }
 }
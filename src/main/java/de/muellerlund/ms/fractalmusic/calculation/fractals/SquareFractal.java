@@ -17,13 +17,16 @@
 
 package de.muellerlund.ms.fractalmusic.calculation.fractals;
 
+import de.muellerlund.math.complex.ComplexPolynomial;
 import de.muellerlund.math.complex.MutableComplex;
 import de.muellerlund.ms.fractalmusic.calculation.ComplexFractal;
+import de.muellerlund.ms.fractalmusic.calculation.FloatKernel;
+import de.muellerlund.ms.fractalmusic.calculation.PolynomialMap;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class SquareFractal implements ComplexFractal {
+public class SquareFractal implements ComplexFractal, PolynomialMap, FloatKernel {
     // Remember: final but mutable!
     private final MutableComplex c;
 
@@ -40,6 +43,21 @@ public class SquareFractal implements ComplexFractal {
         return 2;
     }
 
+    @Override
+    public double preImageCost() {
+        return 1.0;
+    }
+
+    @Override
+    public int symmetry() {
+        return 2;
+    }
+
+    @Override
+    public ComplexPolynomial forwardMap() {
+        return new ComplexPolynomial(MutableComplex.one(), MutableComplex.zero(), c);
+    }
+
     @Override
     public List<MutableComplex> preImages(MutableComplex z) {
         List<MutableComplex> numbers = new ArrayList<>();
@@ -50,4 +68,65 @@ public class SquareFractal implements ComplexFractal {
 
         return numbers;
     }
+
+    @Override
+    public List<MutableComplex> fundamentalPreImages(MutableComplex z) {
+        return List.of(z.clone().sub(c).sqrt());
+    }
+
+    /**
+     * Same square roots as {@link MutableComplex#sqrt()}, in a loop over primitive arrays.
+     */
+    @Override
+    public int preImages(double[] re, double[] im, int count, double[] outRe, double[] outIm) {
+        double cr = c.real();
+        double ci = c.imag();
+
+        for (int k = 0; k < count; k++) {
+            double x = re[k] - cr;
+            double y = im[k] - ci;
+            double a = Math.sqrt(x * x + y * y);
+            double wi = (y >= 0 ? 1 : -1) * Math.sqrt((a - x) / 2);
+            double wr = Math.sqrt((a + x) / 2);
+
+            outRe[2 * k] = wr;
+            outIm[2 * k] = wi;
+            outRe[2 * k + 1] = -wr;
+            outIm[2 * k + 1] = -wi;
+        }
+
+        return 2 * count;
+    }
+
+    @Override
+    public int preImages(float re, float im, float[] out) {
+        float x = re - (float) c.real();
+        float y = im - (float) c.imag();
+
+        // principal square root as MutableComplex.sqrt, but without cancellation
+        float r = (float) Math.sqrt(x * x + y * y);
+        float t = (float) Math.sqrt(0.5f * (r + Math.abs(x)));
+        float wr;
+        float wi;
+
+        if (t == 0.0f) {
+            wr = 0.0f;
+            wi = 0.0f;
+        }
+        else if (x >= 0.0f) {
+            wr = t;
+            wi = y / (2.0f * t);
+        }
+        else {
+            wr = Math.abs(y) / (2.0f * t);
+            wi = y >= 0.0f ? t : -t;
+        }
+
+        out[0] = wr;
+        out[1] = wi;
+        out[2] = -wr;
+        out[3] = -wi;
+
+        return 2;
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control by an in-flight cost budget.
+ *
+ * <p>Each request acquires a {@link Permit} for its estimated cost (see {@link CostEstimator}) before it is queued
+ * and gives it back when it is done. If the sum of all in-flight costs would exceed the budget the request is refused
+ * with a {@link TooBusyException}. A single request which exceeds the budget on its own is admitted if nothing else is
+ * running, the hard limits of the calculation still apply.</p>
+ *
+ * <p>The retry hint is derived from the observed throughput (cost units per second).</p>
+ */
+@Component
+public class AdmissionControl {
+
+    private static final long MAX_RETRY_AFTER = 60;
+
+    // weight of the latest sample of the throughput average
+    private static final double ALPHA = 0.2;
+
+    private final long budget;
+
+    private long inFlight;
+
+    private double throughput;
+
+    public AdmissionControl(@Value("${mls.admission.budget:50000000}") long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget must be positive.");
+        }
+
+        this.budget = budget;
+        // initial guess: the whole budget is done within ten seconds
+        this.throughput = budget / 10.0;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Acquires a permit for the given cost.
+     *
+     * @param cost The estimated cost of the request.
+     *
+     * @return a permit which has to be closed when the request is done.
+     * @throws TooBusyException if the budget is exhausted.
+     * @throws IllegalArgumentException if the cost is saturated, i.e. the request can never be done.
+     */
+    public synchronized Permit acquire(long cost) {
+        if (cost == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Estimated cost of the request is out of range.");
+        }
+
+        // inFlight may exceed the budget after an oversized request
+        long room = budget - inFlight;
+
+        if (inFlight > 0 && cost > room) {
+            long excess = room < 0 ? inFlight : Math.min(inFlight, cost - room);
+            long retryAfter = (long) Math.ceil(excess / throughput);
+            retryAfter = Math.max(1, Math.min(MAX_RETRY_AFTER, retryAfter));
+
+            throw new TooBusyException("In-flight cost budget of " + budget + " exhausted.", retryAfter);
+        }
+
+        inFlight += cost;
+
+        return new Permit(cost);
+    }
+
+    private synchronized void release(long cost, long nanos) {
+        inFlight -= cost;
+
+        if (nanos > 0) {
+            double sample = cost * 1e9 / nanos;
+            throughput += ALPHA * (sample - throughput);
+        }
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final long cost;
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        private Permit(long cost) {
+            this.cost = cost;
+        }
+
+        public long getCost() {
+            return cost;
+        }
+
+        @Override
+        public void close() {
+            release(System.nanoTime() - start);
+        }
+
+        /**
+         * Gives the permit back without accounting the time for the throughput, e.g. if the request wasn't run at all.
+         */
+        public void cancel() {
+            release(0L);
+        }
+
+        private void release(long nanos) {
+            synchronized (AdmissionControl.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+
+            AdmissionControl.this.release(cost, nanos);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import de.muellerlund.ms.fractalmusic.calculation.ParallelLoop;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size executor for the CPU-bound part of a request (calculation, rendering and encoding).
+ *
+ * <p>The pool never grows beyond the configured number of threads (default: number of available processors), so
+ * concurrent deep requests can't oversubscribe the CPU. Every task passes the {@link AdmissionControl} with its
+ * estimated cost first. Waiting tasks are kept in a bounded priority queue ordered by a virtual deadline (arrival time
+ * plus a cost dependent delay), so cheap requests overtake heavy ones without starving them. If the queue is full the
+ * request is rejected with {@code 503 Service Unavailable} instead of piling up.</p>
+ *
+ * <p>Controllers hand their work over and return the resulting {@link CompletableFuture}, so the servlet thread is
+ * released immediately and stays available for cheap requests.</p>
+ */
+@Component
+public class ComputeExecutor implements ParallelLoop {
+
+    // delay of the virtual deadline per cost unit and its upper limit
+    private static final long NANOS_PER_COST = 20L;
+    private static final long MAX_DELAY = TimeUnit.MINUTES.toNanos(10);
+
+    private final ThreadPoolExecutor executor;
+    private final AdmissionControl admissionControl;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ComputeExecutor(AdmissionControl admissionControl,
+                           @Value("${mls.compute.threads:0}") int threads,
+                           @Value("${mls.compute.queue-capacity:64}") int queueCapacity) {
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive.");
+        }
+
+        this.admissionControl = admissionControl;
+        executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                                          new BoundedPriorityQueue(queueCapacity),
+                                          new ComputeThreadFactory());
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Returns the number of compute threads.
+     *
+     * @return the number of compute threads.
+     */
+    public int threads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Schedules the given task.
+     *
+     * @param cost The estimated cost of the task, see {@link CostEstimator}.
+     * @param task The CPU-bound task.
+     * @param <T> The type of the result.
+     *
+     * @return a future completed by a compute thread.
+     * @throws TooBusyException if the cost budget is exhausted.
+     * @throws ResponseStatusException with status 503 if the queue is full.
+     */
+    public <T> CompletableFuture<T> submit(long cost, Supplier<T> task) {
+        AdmissionControl.Permit permit = admissionControl.acquire(cost);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long deadline = deadline(cost);
+
+        try {
+            executor.execute(new PrioritizedTask(deadline, sequence.incrementAndGet(), () -> {
+                try (permit) {
+                    future.complete(task.get());
+                }
+                catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }));
+        }
+        catch (RejectedExecutionException e) {
+            permit.cancel();
+            String reason = executor.isShutdown() ? "Compute executor is shut down." : "Compute queue is full.";
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, reason, e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Schedules the tasks of one request, e.g. the runs of an animation. They pass the admission control once with
+     * their total cost, which is given back when the last one is done, and share one virtual deadline. If the queue
+     * can't take all of them, the ones already queued are removed again.
+     *
+     * @param cost The estimated cost of all tasks, see {@link CostEstimator}.
+     * @param tasks The CPU-bound tasks.
+     * @param <T> The type of the results.
+     *
+     * @return the futures in the order of the tasks, completed by compute threads.
+     * @throws TooBusyException if the cost budget is exhausted.
+     * @throws ResponseStatusException with status 503 if the queue is full.
+     */
+    public <T> List<CompletableFuture<T>> submitAll(long cost, List<? extends Supplier<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+
+        AdmissionControl.Permit permit = admissionControl.acquire(cost);
+        AtomicInteger pending = new AtomicInteger(tasks.size());
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        List<PrioritizedTask> queued = new ArrayList<>(tasks.size());
+        long deadline = deadline(cost);
+
+        try {
+            for (Supplier<T> task : tasks) {
+                CompletableFuture<T> future = new CompletableFuture<>();
+                PrioritizedTask prioritized = new PrioritizedTask(deadline, sequence.incrementAndGet(), () -> {
+                    try {
+                        future.complete(task.get());
+                    }
+                    catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                    finally {
+                        if (pending.decrementAndGet() == 0) {
+                            permit.close();
+                        }
+                    }
+                });
+
+                futures.add(future);
+                executor.execute(prioritized);
+                queued.add(prioritized);
+            }
+        }
+        catch (RejectedExecutionException e) {
+            // the tasks not queued and the ones removed again are never run, the running ones finish
+            int dropped = tasks.size() - queued.size();
+            for (PrioritizedTask prioritized : queued) {
+                dropped += executor.remove(prioritized) ? 1 : 0;
+            }
+
+            futures.forEach(future -> future.cancel(false));
+
+            if (pending.addAndGet(-dropped) == 0) {
+                permit.cancel();
+            }
+
+            String reason = executor.isShutdown() ? "Compute executor is shut down." : "Compute queue is full.";
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, reason, e);
+        }
+
+        return futures;
+    }
+
+    /**
+     * Runs the iterations of a loop on the calling thread, helped by idle compute threads.
+     *
+     * <p>The indices are handed out one by one, so e.g. neighbouring rows of an image go to different threads and an
+     * expensive region is shared by all of them. The helpers are queued ahead of all waiting requests, as the cost of
+     * the loop is already admitted with its request. The calling thread works on the loop as well, so it never waits
+     * for a free thread and nested use from a compute thread can't deadlock.</p>
+     *
+     * @param count The number of iterations.
+     * @param action The body of the loop.
+     */
+    @Override
+    public void forEach(int count, IntConsumer action) {
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                try {
+                    if (failure.get() == null) {
+                        action.accept(i);
+                    }
+                }
+                catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+                finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        long now = System.nanoTime();
+        int helpers = Math.min(threads(), count) - 1;
+
+        for (int k = 0; k < helpers; k++) {
+            try {
+                executor.execute(new PrioritizedTask(now, sequence.incrementAndGet(), worker));
+            }
+            catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+
+        worker.run();
+
+        try {
+            // only waits for iterations which are running on helpers
+            done.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for helpers.", e);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException re) {
+            throw re;
+        }
+        else if (t instanceof Error error) {
+            throw error;
+        }
+        else if (t != null) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    // arrival time plus a cost dependent delay
+    private static long deadline(long cost) {
+        return System.nanoTime() + Math.min(cost, MAX_DELAY / NANOS_PER_COST) * NANOS_PER_COST;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record PrioritizedTask(long deadline, long sequence, Runnable runnable)
+            implements Runnable, Comparable<PrioritizedTask> {
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask o) {
+            int c = Long.compare(deadline - o.deadline, 0L);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Priority queue which refuses tasks beyond its capacity, so the executor rejects them. The size check and the
+     * insertion are atomic, as all insertions go through {@link #offer(Runnable)}.
+     */
+    private static final class BoundedPriorityQueue extends PriorityBlockingQueue<Runnable> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        BoundedPriorityQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable r) {
+            return size() < capacity && super.offer(r);
+        }
+    }
+
+    private static final class ComputeThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "compute-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import de.muellerlund.ms.fractalmusic.calculation.ComplexFractal;
+
+/**
+ * Rough a-priori cost estimation of a request.
+ *
+ * <p>The unit is the time needed for one complex square root including the bookkeeping of the resulting point. The
+ * numbers don't have to be exact, they only have to be comparable between requests, so admission control and
+ * scheduling can treat a deep polynomial fractal differently from a shallow square one.</p>
+ */
+public final class CostEstimator {
+
+    // per pixel: clearing and scanning the raster
+    private static final double RENDER_COST = 0.05;
+
+    // per pixel, iteration and degree: one complex multiply-add
+    private static final double ESCAPE_COST = 0.02;
+
+    private CostEstimator() {
+    }
+
+    /**
+     * Returns the number of points of a complete preimage tree.
+     *
+     * @param dimensions The number of preimages of each point.
+     * @param depth The depth of the tree.
+     *
+     * @return {@code 1 + d + d² + … + d^(depth-1)}, saturated at {@link Long#MAX_VALUE}.
+     */
+    public static long points(int dimensions, int depth) {
+        long sum = 0;
+        long level = 1;
+
+        for (int k = 0; k < depth; k++) {
+            sum += level;
+
+            if (sum < 0) {
+                return Long.MAX_VALUE;
+            }
+
+            if (k + 1 < depth) {
+                if (level > Long.MAX_VALUE / Math.max(1, dimensions)) {
+                    return Long.MAX_VALUE;
+                }
+
+                level *= dimensions;
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Estimates the cost of calculating, rendering and encoding a fractal.
+     *
+     * @param fractal The fractal to calculate.
+     * @param depth The depth of the preimage tree.
+     * @param width The width of the image.
+     * @param format The image format.
+     *
+     * @return the estimated cost.
+     */
+    public static long estimate(ComplexFractal fractal, int depth, int width, String format) {
+        return estimateTree(fractal, points(fractal.dimensions(), depth), width, format);
+    }
+
+    /**
+     * Estimates the cost of calculating, rendering and encoding a fractal with the given number of points, e.g. the
+     * size limit of a deduplicated tree.
+     *
+     * @param fractal The fractal to calculate.
+     * @param points The number of points.
+     * @param width The width of the image.
+     * @param format The image format.
+     *
+     * @return the estimated cost.
+     */
+    public static long estimateTree(ComplexFractal fractal, long points, int width, String format) {
+        return saturate((double) points * fractal.preImageCost() + points + image(width, format));
+    }
+
+    /**
+     * Estimates the cost of a tree with the given number of points which are cheap to calculate.
+     *
+     * @param points The number of points.
+     * @param width The width of the image.
+     * @param format The image format.
+     *
+     * @return the estimated cost.
+     */
+    public static long estimate(long points, int width, String format) {
+        return saturate(2.0 * points + image(width, format));
+    }
+
+    /**
+     * Estimates the cost of an escape time image, assuming that no pixel escapes.
+     *
+     * @param pixels The number of pixels.
+     * @param iterations The maximal number of iterations per pixel.
+     * @param degree The degree of the iterated polynomial.
+     * @param format The image format.
+     *
+     * @return the estimated cost.
+     */
+    public static long estimateEscape(long pixels, int iterations, int degree, String format) {
+        return saturate((double) pixels * (ESCAPE_COST * iterations * degree + RENDER_COST + encoderCost(format)));
+    }
+
+    private static double image(int width, String format) {
+        // the height depends on the bounds, assume a square image
+        double pixels = (double) width * width;
+        return pixels * (RENDER_COST + encoderCost(format));
+    }
+
+    private static double encoderCost(String format) {
+        return switch (format) {
+            case "png" -> 0.5; // filtering and deflate
+            case "qoi" -> 0.15; // hashing and run detection
+            case "bmp" -> 0.05; // a plain copy
+            default -> 0.1;
+        };
+    }
+
+    private static long saturate(double cost) {
+        return cost >= Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1L, (long) cost);
+    }
+}
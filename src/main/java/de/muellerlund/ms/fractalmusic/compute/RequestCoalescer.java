@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical concurrent requests.
+ *
+ * <p>The first request for a key starts the computation, every request for the same key arriving before it is done
+ * attaches to the same in-flight future and gets the same result (or the same failure). The key is removed as soon as
+ * the computation completes, so this is not a cache.</p>
+ *
+ * <p>A result which is closed by each of its users, e.g. a reference counted one, is shared once for every request
+ * beyond the first before any of them gets it, see {@link #RequestCoalescer(Consumer, Consumer)}.</p>
+ *
+ * @param <K> The type of the canonical request key.
+ * @param <V> The type of the result.
+ */
+public final class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final Consumer<Boolean> accessListener;
+    private final Consumer<V> share;
+
+    public RequestCoalescer() {
+        this(hit -> {});
+    }
+
+    /**
+     * Creates a coalescer reporting each request.
+     *
+     * @param accessListener Gets {@code true} if a request attached to an in-flight computation.
+     */
+    public RequestCoalescer(Consumer<Boolean> accessListener) {
+        this(accessListener, value -> {});
+    }
+
+    /**
+     * Creates a coalescer reporting each request and sharing each result.
+     *
+     * @param accessListener Gets {@code true} if a request attached to an in-flight computation.
+     * @param share Gets the result once for each request which attached to its computation, e.g. to retain a
+     * reference for it.
+     */
+    public RequestCoalescer(Consumer<Boolean> accessListener, Consumer<V> share) {
+        this.accessListener = accessListener;
+        this.share = share;
+    }
+
+    /**
+     * Returns the result of an in-flight computation for the given key or starts a new one.
+     *
+     * @param key The canonical request key.
+     * @param computation Starts the computation, only invoked if there is no computation for the key in flight.
+     *
+     * @return a future of the (shared) result, cancelling it doesn't affect other requests.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> computation) {
+        Flight<V> flight = new Flight<>();
+        Flight<V> existing = inFlight.compute(key, (k, f) -> {
+            if (f == null) {
+                return flight;
+            }
+
+            f.requests++;
+            return f;
+        });
+
+        accessListener.accept(existing != flight);
+
+        if (existing != flight) {
+            return existing.result.copy();
+        }
+
+        CompletableFuture<V> shared = flight.result;
+
+        try {
+            computation.get().whenComplete((v, t) -> {
+                // nobody can attach any more, so the number of requests is final
+                int[] requests = new int[1];
+                inFlight.computeIfPresent(key, (k, f) -> {
+                    if (f != flight) {
+                        return f;
+                    }
+
+                    requests[0] = f.requests;
+                    return null;
+                });
+
+                if (t != null) {
+                    shared.completeExceptionally(t);
+                }
+                else {
+                    for (int i = 1; i < requests[0]; i++) {
+                        share.accept(v);
+                    }
+
+                    shared.complete(v);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            // e.g. refused by admission control, latecomers get the same answer
+            inFlight.remove(key, flight);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+
+        return shared.copy();
+    }
+
+    /**
+     * Returns the number of computations in flight.
+     *
+     * @return the number of computations in flight.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    // the requests field is only accessed while the map entry is locked
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private int requests = 1;
+    }
+}
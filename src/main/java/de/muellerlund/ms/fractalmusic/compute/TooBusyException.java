@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import java.io.Serial;
+
+/**
+ * Thrown if a request is refused by admission control because the node is busy.
+ */
+public class TooBusyException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = -4236791034482395711L;
+
+    private final long retryAfter;
+
+    public TooBusyException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the number of seconds after which a retry is likely to be admitted.
+     *
+     * @return the number of seconds to wait.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -18,21 +18,29 @@
 package de.muellerlund.ms.fractalmusic.controller;
 
 import de.muellerlund.ms.fractalmusic.calculation.ExtendedComplex;
-import de.muellerlund.ms.fractalmusic.util.ImageHelper;
+import de.muellerlund.ms.fractalmusic.compute.ComputeExecutor;
+import de.muellerlund.ms.fractalmusic.compute.CostEstimator;
+import de.muellerlund.ms.fractalmusic.compute.RequestCoalescer;
+import de.muellerlund.ms.fractalmusic.fractal.FractalHelper;
+import de.muellerlund.ms.fractalmusic.fractal.FractalRenderer;
+import de.muellerlund.ms.fractalmusic.metrics.FractalMetrics;
+import de.muellerlund.ms.fractalmusic.util.ImageFormat;
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import io.micrometer.core.instrument.Tags;
 import org.apache.commons.math3.complex.Complex;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-
-import static de.muellerlund.ms.fractalmusic.fractal.FractalHelper.createImage;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class BackTraceController {
@@ -42,10 +50,26 @@ public class BackTraceController {
     @Value("${mls.locale}")
     private Locale locale;
 
-    @GetMapping(value = "/btm/png", produces = MediaType.IMAGE_PNG_VALUE)
-    public @ResponseBody byte[] retrieveAsPng(
+    private final ComputeExecutor computeExecutor;
+    private final FractalRenderer renderer;
+    private final FractalMetrics metrics;
+    private final RequestCoalescer<RequestKey, byte[]> coalescer;
+
+    public BackTraceController(ComputeExecutor computeExecutor, FractalRenderer renderer, FractalMetrics metrics) {
+        this.computeExecutor = computeExecutor;
+        this.renderer = renderer;
+        this.metrics = metrics;
+        this.coalescer = new RequestCoalescer<>(hit -> metrics.cacheAccess("coalescer", hit));
+    }
+
+    @GetMapping(value = "/btm/png", produces = {MediaType.IMAGE_PNG_VALUE, ImageFormat.QOI_MEDIA_TYPE,
+            ImageFormat.BMP_MEDIA_TYPE})
+    public CompletableFuture<ResponseEntity<byte[]>> retrieveAsPng(
             @RequestParam(required = false) Integer imax,
-            @RequestParam(required = false) Integer spread) {
+            @RequestParam(required = false) Integer spread,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         imax = imax == null ? 10 : imax;
         imax = Math.max(2, imax);
@@ -60,10 +84,25 @@ public class BackTraceController {
             throw new IllegalArgumentException("To much values to calculate.");
         }
 
-        List<ExtendedComplex> numbers = calculateBackTrace(imax, spread);
-        BufferedImage image = createImage(numbers);
+        ImageFormat imageFormat = ImageNegotiation.negotiate(format, accept);
+        int depth = imax;
+        int n = spread;
+        long cost = CostEstimator.estimate(CostEstimator.points(n, depth), FractalHelper.DEFAULT_WIDTH,
+                                           imageFormat.extension());
+        RequestKey key = RequestKey.builder("backtrace").add(depth).add(n).add(imageFormat).build();
+        String etag = ImageNegotiation.etag(key);
+        Tags tags = FractalMetrics.tags("backtrace", n);
+
+        if (ImageNegotiation.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ImageNegotiation.notModified(etag));
+        }
+
+        return coalescer.execute(key, () -> computeExecutor.submit(cost, () -> {
+            List<ExtendedComplex> numbers = metrics.time("calculate", tags, () -> calculateBackTrace(depth, n));
+            metrics.points(tags, numbers.size());
 
-        return ImageHelper.asBytes(image, "png");
+            return renderer.render(numbers, imageFormat, tags);
+        })).thenApply(bytes -> ImageNegotiation.response(bytes, imageFormat, etag));
     }
 
     private static List<ExtendedComplex> calculateBackTrace(int imax, int spread) {
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.controller;
+
+import de.muellerlund.ms.fractalmusic.fractal.FractalRenderer;
+import de.muellerlund.ms.fractalmusic.util.ImageFormat;
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects the format of an image response by the request parameter {@code format} or else by the {@code Accept}
+ * header, PNG unless the client prefers another one.
+ *
+ * <p>The images are pure functions of their parameters, so each response carries a strong {@code ETag} of its
+ * canonical cache key and the {@link FractalRenderer#VERSION} and may be cached for a year.</p>
+ *
+ * <p>An image whose bytes depend on how it was derived, e.g. a parameter tile from the mipmap of its children, is only
+ * equivalent to another rendering of its key. It gets a weak {@code ETag}, see {@link #weakEtag(RequestKey)}, and is
+ * revalidated after a day instead of being immutable.</p>
+ */
+final class ImageNegotiation {
+
+    // half of a SHA-256 hash
+    private static final int ETAG_BYTES = 16;
+
+    private static final String CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic()
+                                                        .getHeaderValue() + ", immutable";
+
+    private static final String WEAK_CACHE_CONTROL = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic()
+                                                             .getHeaderValue();
+
+    private ImageNegotiation() {
+    }
+
+    /**
+     * Returns the format of the response.
+     *
+     * @param format The requested format name, {@code null} to negotiate it.
+     * @param accept The {@code Accept} header, may be {@code null}.
+     * @return the format.
+     * @throws IllegalArgumentException if the format name is unknown.
+     */
+    static ImageFormat negotiate(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            return ImageFormat.parse(format);
+        }
+
+        if (accept == null || accept.isBlank()) {
+            return ImageFormat.PNG;
+        }
+
+        List<MediaType> types = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(types);
+
+        // wildcards match PNG first
+        for (MediaType mt : types) {
+            for (ImageFormat f : ImageFormat.values()) {
+                if (mt.getQualityValue() > 0.0 && mt.includes(MediaType.parseMediaType(f.mediaType()))) {
+                    return f;
+                }
+            }
+        }
+
+        return ImageFormat.PNG;
+    }
+
+    /**
+     * Returns the strong entity tag of an image.
+     *
+     * @param key The canonical key of the image including its format.
+     * @return the quoted entity tag.
+     */
+    static String etag(RequestKey key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(FractalRenderer.VERSION).array());
+            digest.update(key.toBytes());
+
+            return '"' + HexFormat.of().formatHex(digest.digest(), 0, ETAG_BYTES) + '"';
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the weak entity tag of an image which may differ byte by byte from other renderings of its key.
+     *
+     * @param key The canonical key of the image including its format.
+     * @return the weak entity tag.
+     */
+    static String weakEtag(RequestKey key) {
+        return "W/" + etag(key);
+    }
+
+    /**
+     * Checks whether the client has the image already.
+     *
+     * @param ifNoneMatch The {@code If-None-Match} header, may be {@code null}.
+     * @param etag The strong or weak entity tag of the image.
+     * @return {@code true} if one of the tags matches by weak comparison.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        String opaque = opaque(etag);
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = opaque(tag.trim());
+
+            if (tag.equals("*") || tag.equals(opaque)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static ResponseEntity<byte[]> response(byte[] bytes, ImageFormat format, String etag) {
+        return validators(ResponseEntity.ok(), etag).contentType(MediaType.parseMediaType(format.mediaType()))
+                .body(bytes);
+    }
+
+    static ResponseEntity<byte[]> notModified(String etag) {
+        return validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag).build();
+    }
+
+    // the format may depend on the Accept header
+    private static ResponseEntity.BodyBuilder validators(ResponseEntity.BodyBuilder builder, String etag) {
+        return builder.eTag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, etag.startsWith("W/") ? WEAK_CACHE_CONTROL : CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT);
+    }
+
+    // without the weakness indicator
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -17,32 +17,132 @@
 
 package de.muellerlund.ms.fractalmusic.controller;
 
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.DoubleDoubleComplex;
 import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.math.complex.RootMethod;
 import de.muellerlund.ms.fractalmusic.calculation.Calculator;
 import de.muellerlund.ms.fractalmusic.calculation.ComplexFractal;
-import de.muellerlund.ms.fractalmusic.calculation.ExtendedComplex;
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.PolynomialMap;
+import de.muellerlund.ms.fractalmusic.calculation.Precision;
+import de.muellerlund.ms.fractalmusic.calculation.WarmStart;
+import de.muellerlund.ms.fractalmusic.calculation.escape.EscapeField;
+import de.muellerlund.ms.fractalmusic.calculation.escape.EscapeRenderer;
+import de.muellerlund.ms.fractalmusic.calculation.escape.ParameterRenderer;
+import de.muellerlund.ms.fractalmusic.calculation.escape.PerturbationRenderer;
+import de.muellerlund.ms.fractalmusic.calculation.fractals.PolynomialFractal;
+import de.muellerlund.ms.fractalmusic.calculation.fractals.SquareFractal;
+import de.muellerlund.ms.fractalmusic.compute.ComputeExecutor;
+import de.muellerlund.ms.fractalmusic.compute.CostEstimator;
+import de.muellerlund.ms.fractalmusic.compute.RequestCoalescer;
 import de.muellerlund.ms.fractalmusic.fractal.FractalHelper;
-import de.muellerlund.ms.fractalmusic.util.ImageHelper;
+import de.muellerlund.ms.fractalmusic.fractal.FractalRenderer;
+import de.muellerlund.ms.fractalmusic.fractal.GeometryCache;
+import de.muellerlund.ms.fractalmusic.fractal.ImageCache;
+import de.muellerlund.ms.fractalmusic.fractal.Palette;
+import de.muellerlund.ms.fractalmusic.fractal.TileCache;
+import de.muellerlund.ms.fractalmusic.metrics.FractalMetrics;
+import de.muellerlund.ms.fractalmusic.util.ApngWriter;
+import de.muellerlund.ms.fractalmusic.util.ImageFormat;
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import de.muellerlund.ms.fractalmusic.util.PointCloudFormat;
 
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.math3.complex.Complex;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
-import static de.muellerlund.ms.fractalmusic.fractal.FractalHelper.createImage;
 import static de.muellerlund.ms.fractalmusic.util.NumberHelper.parseComplex;
 
 @RestController
 public class MainController {
 
+    private static final int MAX_SIZE = 4096;
+
+    // size limit of trees calculated by Calculator on the heap
+    private static final long MAX_DEDUPLICATED_POINTS = 1 << 20;
+
+    // deeper tiles of the parameter plane would exceed double precision
+    private static final int MAX_LEVEL = 40;
+
+    // maximal number of images of a batch
+    private static final int MAX_BATCH = 256;
+
+    private static final String BATCH_MEDIA_TYPE = "application/zip";
+
+    // maximal number of frames of an animation
+    private static final int MAX_FRAMES = 500;
+
+    // the request parameters of retrieveAsPng
+    private static final Set<String> BATCH_PARAMETERS = Set.of(
+            "type", "imax", "z0", "a5", "a4", "a3", "a2", "a1", "a0", "solver", "mode", "width", "precision", "grid",
+            "palette", "xmin", "xmax", "ymin", "ymax", "trim", "format");
+
     @Value("${mls.locale}")
     private Locale locale;
 
+    @Value("${mls.solver.max-iterations:100}")
+    private int maxIterations;
+
+    @Value("${mls.solver.method:laguerre}")
+    private String defaultSolver;
+
+    // directory of the memory-mapped files of large trees, blank to keep all trees on the heap
+    @Value("${mls.spill.directory:}")
+    private String spillDirectory;
+
+    private final ComputeExecutor computeExecutor;
+    private final FractalRenderer renderer;
+    private final FractalMetrics metrics;
+    private final TileCache tileCache;
+    private final GeometryCache geometryCache;
+    private final ImageCache imageCache;
+    private final RequestCoalescer<RequestKey, byte[]> coalescer;
+    private final RequestCoalescer<RequestKey, PointCloud> pointCoalescer;
+
+    public MainController(ComputeExecutor computeExecutor, FractalRenderer renderer, FractalMetrics metrics,
+                          TileCache tileCache, GeometryCache geometryCache, ImageCache imageCache) {
+        this.computeExecutor = computeExecutor;
+        this.renderer = renderer;
+        this.metrics = metrics;
+        this.tileCache = tileCache;
+        this.geometryCache = geometryCache;
+        this.imageCache = imageCache;
+        this.coalescer = new RequestCoalescer<>(hit -> metrics.cacheAccess("coalescer", hit));
+        this.pointCoalescer = new RequestCoalescer<>(hit -> metrics.cacheAccess("coalescer", hit), PointCloud::retain);
+    }
+
     @GetMapping(value = "/fractal-music/sample/png/", produces = MediaType.IMAGE_PNG_VALUE)
     public @ResponseBody byte[] retrieveSamplePng() throws IOException {
         String resourceKey = "/de/muellerlund/samples/heic0602inv.png";
@@ -55,8 +155,16 @@ public class MainController {
         }
     }
 
-    @GetMapping(value = "/fractal-music/png", produces = MediaType.IMAGE_PNG_VALUE)
-    public @ResponseBody byte[] retrieveAsPng(
+    /**
+     * Renders the preimage tree of a point or, in mode {@code escape}, the Julia set by escape time. The image format
+     * is PNG unless another one is requested by the parameter {@code format} or preferred by the {@code Accept}
+     * header, see {@link ImageFormat}. The mode {@code escape} takes the width and the viewport, the parameters of
+     * the preimage tree ({@code z0}, {@code solver}, {@code precision}, {@code grid}, {@code palette} and
+     * {@code trim}) are rejected with status 400.
+     */
+    @GetMapping(value = "/fractal-music/png", produces = {MediaType.IMAGE_PNG_VALUE, ImageFormat.QOI_MEDIA_TYPE,
+            ImageFormat.BMP_MEDIA_TYPE})
+    public CompletableFuture<ResponseEntity<byte[]>> retrieveAsPng(
             @RequestParam(required = false) String type,
             @RequestParam(required = false) Integer imax,
             @RequestParam(required = false) String z0,
@@ -65,22 +173,819 @@ public class MainController {
             @RequestParam(required = false) String a3,
             @RequestParam(required = false) String a2,
             @RequestParam(required = false) String a1,
-            @RequestParam(required = false) String a0
+            @RequestParam(required = false) String a0,
+            @RequestParam(required = false) String solver,
+            @RequestParam(defaultValue = "preimages") String mode,
+            @RequestParam(defaultValue = "800") int width,
+            @RequestParam(required = false) String precision,
+            @RequestParam(required = false) Double grid,
+            @RequestParam(required = false) String palette,
+            @RequestParam(required = false) Double xmin,
+            @RequestParam(required = false) Double xmax,
+            @RequestParam(required = false) Double ymin,
+            @RequestParam(required = false) Double ymax,
+            @RequestParam(required = false) Double trim,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        List<ExtendedComplex> numbers = apply(type, imax, z0, a5, a4, a3, a2, a1, a0);
-        BufferedImage image = createImage(numbers);
+        ImageFormat imageFormat = ImageNegotiation.negotiate(format, accept);
+
+        return retrieveImage(type, imax, z0, a5, a4, a3, a2, a1, a0, solver, mode, width, precision, grid, palette,
+                             xmin, xmax, ymin, ymax, trim, imageFormat, ifNoneMatch);
+    }
+
+    private CompletableFuture<ResponseEntity<byte[]>> retrieveImage(String type, Integer imax, String z0, String a5,
+                                                                    String a4, String a3, String a2, String a1,
+                                                                    String a0, String solver, String mode, int width,
+                                                                    String precision, Double grid, String palette,
+                                                                    Double xmin, Double xmax, Double ymin,
+                                                                    Double ymax, Double trim, ImageFormat format,
+                                                                    String ifNoneMatch) {
+        Timer.Sample sample = metrics.start();
+        MutableComplex[] coefficients = parseCoefficients(a5, a4, a3, a2, a1, a0);
+        ComplexFractal fractal = FractalHelper.find(type, coefficients);
+
+        if (fractal == null) {
+            throw new IllegalArgumentException("Unknown fractal type: " + type);
+        }
+
+        if ("escape".equalsIgnoreCase(mode)) {
+            // the parameters of the preimage tree, dropping them would answer another request
+            String unused = z0 != null ? "z0" : solver != null ? "solver" : precision != null ? "precision"
+                    : grid != null ? "grid" : palette != null ? "palette" : trim != null ? "trim" : null;
+
+            if (unused != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                                  "Parameter doesn't apply to mode escape: " + unused);
+            }
+
+            return retrieveEscape(type, fractal, coefficients, imax == null ? 1000 : imax, width,
+                                  parseViewport(xmin, xmax, ymin, ymax), format, ifNoneMatch, sample);
+        }
+        else if (!"preimages".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+
+        return retrievePreimages(type, fractal, coefficients, imax, z0, solver, width,
+                                 precision == null ? "auto" : precision, grid == null ? 0.0 : grid,
+                                 palette == null ? "classic" : palette, xmin, xmax, ymin, ymax,
+                                 trim == null ? 0.0 : trim, format, ifNoneMatch, sample);
+    }
+
+    private CompletableFuture<ResponseEntity<byte[]>> retrievePreimages(String type, ComplexFractal fractal,
+                                                                        MutableComplex[] coefficients, Integer imax,
+                                                                        String z0, String solver, int width,
+                                                                        String precision, double grid, String palette,
+                                                                        Double xmin, Double xmax, Double ymin,
+                                                                        Double ymax, double trim, ImageFormat format,
+                                                                        String ifNoneMatch, Timer.Sample sample) {
+        MutableComplex start = parseComplex(z0, MutableComplex.one(), locale);
+        if (width < 1 || width > MAX_SIZE) {
+            throw new IllegalArgumentException("Image width must be in [1, " + MAX_SIZE + "].");
+        }
+
+        int depth = imax == null ? 10 : imax;
+        RootMethod method = parseRootMethod(solver == null ? defaultSolver : solver);
+        Precision pointPrecision = parsePrecision(precision, width);
+        Palette colors = Palette.parse(palette);
+        Rectangle2D.Double viewport = parseViewport(xmin, xmax, ymin, ymax);
+
+        if (!(trim >= 0.0 && trim < 50.0)) {
+            throw new IllegalArgumentException("Trim must be in [0, 50).");
+        }
+
+        RequestKey geometryKey = geometryKey(type, depth, start, coefficients, method, pointPrecision, grid);
+        RequestKey.Builder image = geometryKey.extend().add(width).add(colors).add(format);
+        RequestKey key = viewport == null
+                         ? image.add(0).add(trim).build()
+                         : image.add(1).add(xmin).add(xmax).add(ymin).add(ymax).build();
+
+        String etag = ImageNegotiation.etag(key);
+
+        Tags tags = FractalMetrics.tags(FractalHelper.canonicalType(type), fractal.dimensions());
+        metrics.stop(sample, "parse", tags);
+
+        if (ImageNegotiation.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ImageNegotiation.notModified(etag));
+        }
+
+        byte[] cached = imageCache.get(key);
+        metrics.cacheAccess("images", cached != null);
+
+        if (cached != null) {
+            return CompletableFuture.completedFuture(ImageNegotiation.response(cached, format, etag));
+        }
+
+        if (fractal instanceof PolynomialFractal pf) {
+            pf.setMaxIterations(maxIterations);
+            pf.setRootMethod(method);
+            pf.setSolverListener(metrics.newtonListener(tags));
+        }
+
+        // a cached geometry only costs the rendering
+        return coalescer.execute(key, () -> geometry(geometryKey, fractal, start, depth, pointPrecision, grid, tags)
+                .thenCompose(cloud -> using(cloud, points -> computeExecutor.submit(
+                        CostEstimator.estimate(points.count(), width, format.extension()), () -> {
+                            // the quantile box of the points frames their dense region
+                            Rectangle2D.Double frame = viewport == null && trim > 0.0
+                                                       ? FractalHelper.getBounds(points, trim / 100.0)
+                                                       : viewport;
+                            byte[] bytes = renderer.render(points, frame, width, colors, format, tags);
+                            imageCache.put(key, bytes);
+
+                            return bytes;
+                        })))).thenApply(bytes -> ImageNegotiation.response(bytes, format, etag));
+    }
+
+    /**
+     * Returns the cached preimage tree or calculates it on the compute pool, the calculation is shared with concurrent
+     * requests of the same geometry. Each request gets its own reference to the point cloud and closes it when done,
+     * so a spilled one which isn't cached is deleted right after its rendering or export.
+     */
+    private CompletableFuture<PointCloud> geometry(RequestKey key, ComplexFractal fractal, MutableComplex start, int depth,
+                                                   Precision precision, double grid, Tags tags) {
+        PointCloud cached = geometryCache.retain(key);
+        metrics.cacheAccess("geometry", cached != null);
+
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        long cost = CostEstimator.estimateTree(fractal, treeSize(fractal, depth, grid), 0, "points");
+
+        return pointCoalescer.execute(key, () -> computeExecutor.submit(cost, () -> {
+            PointCloud points = metrics.time("calculate", tags, () -> calculate(
+                    fractal, start.complex(), depth, precision, grid));
+            // once per calculated tree, renderings of cached ones don't count
+            metrics.points(tags, points.count());
+            // the cache gets its own reference, the one of the calculation goes to the first request
+            geometryCache.put(key, points.retain());
+
+            return points;
+        }));
+    }
+
+    // closes the point cloud once the stage using it is done, or if it can't be started at all
+    private static <T> CompletableFuture<T> using(PointCloud points,
+                                                  Function<PointCloud, CompletableFuture<T>> stage) {
+        try {
+            return stage.apply(points).whenComplete((result, t) -> points.close());
+        }
+        catch (RuntimeException e) {
+            points.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Renders a list of parameter sets, e.g. the variants of a gallery, and streams the images as a ZIP archive in the
+     * order of the list, named {@code 000.png}, {@code 001.png} and so on, or with the extension of the requested
+     * {@code format}.
+     *
+     * <p>Each parameter set holds the request parameters of {@link #retrieveAsPng} by name. The images are rendered on
+     * the compute pool with a window of one more set than compute threads, so the pool stays busy while the archive is
+     * written without flooding its queue. They share the caches and coalescing of single requests. A set which fails
+     * is replaced by a text entry with the error, e.g. {@code 007.txt}, the others are delivered anyway.</p>
+     */
+    @PostMapping(value = "/fractal-music/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = BATCH_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> retrieveBatch(@RequestBody List<Map<String, String>> parameterSets) {
+        if (parameterSets.isEmpty() || parameterSets.size() > MAX_BATCH) {
+            throw new IllegalArgumentException("Batch size must be in [1, " + MAX_BATCH + "].");
+        }
+
+        int n = parameterSets.size();
+        ImageFormat[] formats = new ImageFormat[n];
+
+        for (int i = 0; i < n; i++) {
+            for (String name : parameterSets.get(i).keySet()) {
+                if (!BATCH_PARAMETERS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown parameter: " + name);
+                }
+            }
+
+            formats[i] = ImageFormat.parse(parameterSets.get(i).getOrDefault("format", "png"));
+        }
+
+        int window = computeExecutor.threads() + 1;
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(BATCH_MEDIA_TYPE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"fractals.zip\"")
+                .body(out -> {
+                    List<CompletableFuture<byte[]>> images = new ArrayList<>(n);
 
-        return ImageHelper.asBytes(image, "png");
+                    try (ZipOutputStream zip = new ZipOutputStream(out)) {
+                        for (int i = 0; i < n; i++) {
+                            while (images.size() < Math.min(n, i + window)) {
+                                int k = images.size();
+                                images.add(retrieveImage(parameterSets.get(k), formats[k]));
+                            }
+
+                            writeEntry(zip, i, formats[i], images.get(i));
+                            images.set(i, null);
+                        }
+                    }
+                });
+    }
+
+    // a failure of the parameter set is delivered with the future
+    private CompletableFuture<byte[]> retrieveImage(Map<String, String> p, ImageFormat format) {
+        try {
+            return retrieveImage(p.get("type"), integer(p.get("imax")), p.get("z0"), p.get("a5"), p.get("a4"),
+                                 p.get("a3"), p.get("a2"), p.get("a1"), p.get("a0"), p.get("solver"),
+                                 p.getOrDefault("mode", "preimages"),
+                                 Integer.parseInt(p.getOrDefault("width", "800")), p.get("precision"),
+                                 real(p.get("grid")), p.get("palette"),
+                                 real(p.get("xmin")), real(p.get("xmax")), real(p.get("ymin")), real(p.get("ymax")),
+                                 real(p.get("trim")), format, null)
+                    .thenApply(HttpEntity::getBody);
+        }
+        catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // PNG and QOI images are compressed already, so they are stored as they are
+    private static void writeEntry(ZipOutputStream zip, int i, ImageFormat format, CompletableFuture<byte[]> image)
+            throws IOException {
+        String name = String.format(Locale.ROOT, "%03d", i);
+        byte[] bytes;
+        ZipEntry entry;
+
+        try {
+            bytes = image.join();
+            entry = new ZipEntry(name + '.' + format.extension());
+
+            if (format != ImageFormat.BMP) {
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(bytes.length);
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                entry.setCrc(crc.getValue());
+            }
+        }
+        catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            bytes = String.valueOf(cause.getMessage()).getBytes(StandardCharsets.UTF_8);
+            entry = new ZipEntry(name + ".txt");
+        }
+
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    private static Integer integer(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private static Double real(String value) {
+        return value == null ? null : Double.valueOf(value);
     }
 
-    private List<ExtendedComplex> apply(
-            String type,
-            Integer imax,
-            String sz0,
-            String ... sc
+    /**
+     * Renders an animation of the preimage trees along a sweep of one coefficient from its given value to {@code to}
+     * in equal steps, by default the constant of a polynomial or the {@code c} of a square fractal. The other
+     * parameters are the ones of the preimage mode of {@link #retrieveAsPng}, the viewport defaults to a square
+     * containing all trees.
+     *
+     * <p>The frames are split into one run of consecutive frames per compute thread. Within a run the solver starts
+     * at the preimages of the previous frame, see {@link WarmStart}, and each frame is encoded against its
+     * predecessor. The animation is streamed in frame order while later frames are still calculated.</p>
+     */
+    @GetMapping(value = "/fractal-music/sweep/png", produces = {ApngWriter.MEDIA_TYPE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<StreamingResponseBody> retrieveSweepAsPng(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Integer imax,
+            @RequestParam(required = false) String z0,
+            @RequestParam(required = false) String a5,
+            @RequestParam(required = false) String a4,
+            @RequestParam(required = false) String a3,
+            @RequestParam(required = false) String a2,
+            @RequestParam(required = false) String a1,
+            @RequestParam(required = false) String a0,
+            @RequestParam(required = false) String solver,
+            @RequestParam(required = false) String sweep,
+            @RequestParam String to,
+            @RequestParam(defaultValue = "50") int frames,
+            @RequestParam(defaultValue = "40") int delay,
+            @RequestParam(defaultValue = "400") int width,
+            @RequestParam(defaultValue = "classic") String palette,
+            @RequestParam(required = false) Double xmin,
+            @RequestParam(required = false) Double xmax,
+            @RequestParam(required = false) Double ymin,
+            @RequestParam(required = false) Double ymax
     ) {
-        MutableComplex z0 = parseComplex(sz0, MutableComplex.one(), locale);
+        Timer.Sample sample = metrics.start();
+        MutableComplex[] coefficients = parseCoefficients(a5, a4, a3, a2, a1, a0);
+        ComplexFractal first = FractalHelper.find(type, coefficients);
+
+        if (!(first instanceof PolynomialMap)) {
+            throw new IllegalArgumentException("Unknown fractal type: " + type);
+        }
+
+        if (frames < 1 || frames > MAX_FRAMES) {
+            throw new IllegalArgumentException("Frames must be in [1, " + MAX_FRAMES + "].");
+        }
+
+        // a square fractal only takes the leading coefficient into account, which is 0 if none is given
+        int swept;
+        if (sweep == null) {
+            swept = first instanceof SquareFractal ? 0 : coefficients.length - 1;
+        }
+        else {
+            swept = sweep.matches("a[0-5]") ? coefficients.length - 1 - (sweep.charAt(1) - '0') : -1;
+        }
+
+        if (swept < 0 || first instanceof SquareFractal && swept != 0) {
+            throw new IllegalArgumentException("Coefficient can't be swept: " + sweep);
+        }
+
+        if (coefficients[swept] == null) {
+            coefficients[swept] = MutableComplex.zero();
+        }
+
+        if (width < 1 || width > MAX_SIZE || delay < 0) {
+            throw new IllegalArgumentException("Image width must be in [1, " + MAX_SIZE + "], delay not negative.");
+        }
+
+        MutableComplex start = parseComplex(z0, MutableComplex.one(), locale);
+        MutableComplex from = coefficients[swept].clone();
+        MutableComplex step = parseComplex(to, from, locale).sub(from).rmult(frames > 1 ? 1.0 / (frames - 1) : 0.0);
+        int depth = imax == null ? 10 : imax;
+        RootMethod method = parseRootMethod(solver == null ? defaultSolver : solver);
+        Precision pointPrecision = Precision.forWidth(width);
+        Palette colors = Palette.parse(palette);
+
+        Tags tags = FractalMetrics.tags(FractalHelper.canonicalType(type), first.dimensions(), "sweep");
+
+        // the fractal of each frame
+        List<ComplexFractal> fractals = new ArrayList<>(frames);
+        double radius = start.abs();
+        long cost = 0;
+
+        for (int k = 0; k < frames; k++) {
+            coefficients[swept] = from.clone().add(step.clone().rmult(k));
+            ComplexFractal fractal = FractalHelper.find(type, coefficients);
+
+            if (fractal instanceof PolynomialFractal pf) {
+                pf.setMaxIterations(maxIterations);
+                pf.setRootMethod(method);
+                pf.setSolverListener(metrics.newtonListener(tags));
+            }
+
+            Calculator.checkDepth(fractal, depth);
+
+            // all preimages of points outside the disc of the filled Julia set are closer to it
+            radius = Math.max(radius, EscapeRenderer.radius(((PolynomialMap) fractal).forwardMap()));
+            long frameCost = CostEstimator.estimate(fractal, depth, width, "png");
+            cost = frameCost > Long.MAX_VALUE - cost ? Long.MAX_VALUE : cost + frameCost;
+            fractals.add(fractal);
+        }
+
+        double r = 1.05 * radius;
+        Rectangle2D.Double parsed = parseViewport(xmin, xmax, ymin, ymax);
+        Rectangle2D.Double viewport = parsed != null ? parsed : new Rectangle2D.Double(-r, -r, 2.0 * r, 2.0 * r);
+        metrics.stop(sample, "parse", tags);
+
+        // one run of consecutive frames per thread, each run starts cold
+        List<CompletableFuture<ApngWriter.Frame>> encoded = new ArrayList<>(frames);
+        for (int k = 0; k < frames; k++) {
+            encoded.add(new CompletableFuture<>());
+        }
 
+        // the runs are admitted together, so none is left computing if the others are refused
+        int runs = Math.min(computeExecutor.threads(), frames);
+        List<Supplier<Void>> tasks = new ArrayList<>(runs);
+        Complex root = start.complex();
+
+        for (int run = 0; run < runs; run++) {
+            int begin = (int) ((long) run * frames / runs);
+            int end = (int) ((long) (run + 1) * frames / runs);
+
+            tasks.add(() -> {
+                WarmStart warmStart = new WarmStart();
+                int[] previous = null;
+
+                for (int k = begin; k < end; k++) {
+                    ComplexFractal fractal = fractals.get(k);
+                    PointCloud points = metrics.time("calculate", tags, () -> Calculator.calculateLevels(
+                            fractal, root, depth, pointPrecision, warmStart));
+                    metrics.points(tags, points.count());
+
+                    BufferedImage image = metrics.time("render", tags, () -> FractalHelper.createImage(
+                            points, viewport, width, colors));
+                    int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                    int[] predecessor = previous;
+                    encoded.get(k).complete(metrics.time("encode", tags, () -> ApngWriter.encode(
+                            rgb, predecessor, image.getWidth(), image.getHeight())));
+                    previous = rgb;
+                }
+
+                return null;
+            });
+        }
+
+        List<CompletableFuture<Void>> results = computeExecutor.submitAll(cost, tasks);
+        for (int run = 0; run < runs; run++) {
+            int begin = (int) ((long) run * frames / runs);
+            int end = (int) ((long) (run + 1) * frames / runs);
+
+            results.get(run).whenComplete((result, failure) -> {
+                for (int k = begin; k < end && failure != null; k++) {
+                    encoded.get(k).completeExceptionally(failure);
+                }
+            });
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ApngWriter.MEDIA_TYPE))
+                .body(out -> {
+                    ApngWriter.Frame frame = encoded.get(0).join();
+                    ApngWriter writer = new ApngWriter(out, frame.width(), frame.height(), frames, 0);
+                    long bytes = 0;
+
+                    for (int k = 0; k < frames; k++) {
+                        frame = encoded.get(k).join();
+                        encoded.set(k, null);
+                        writer.write(frame, delay);
+                        bytes += frame.data().length;
+                    }
+
+                    writer.finish();
+                    metrics.imageBytes(tags, bytes);
+                });
+    }
+
+    /**
+     * Streams the preimage points in the binary {@link PointCloudFormat}, the delta encoding if the client prefers
+     * {@value PointCloudFormat#DELTA_MEDIA_TYPE}. The parameters are the ones of the preimage mode of
+     * {@link #retrieveAsPng}, the precision defaults to double.
+     */
+    @GetMapping(value = "/fractal-music/points", produces = {PointCloudFormat.RAW_MEDIA_TYPE,
+            PointCloudFormat.DELTA_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> retrievePoints(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Integer imax,
+            @RequestParam(required = false) String z0,
+            @RequestParam(required = false) String a5,
+            @RequestParam(required = false) String a4,
+            @RequestParam(required = false) String a3,
+            @RequestParam(required = false) String a2,
+            @RequestParam(required = false) String a1,
+            @RequestParam(required = false) String a0,
+            @RequestParam(required = false) String solver,
+            @RequestParam(defaultValue = "double") String precision,
+            @RequestParam(defaultValue = "0") double grid,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        Timer.Sample sample = metrics.start();
+        MutableComplex[] coefficients = parseCoefficients(a5, a4, a3, a2, a1, a0);
+        ComplexFractal fractal = FractalHelper.find(type, coefficients);
+
+        if (fractal == null) {
+            throw new IllegalArgumentException("Unknown fractal type: " + type);
+        }
+
+        MutableComplex start = parseComplex(z0, MutableComplex.one(), locale);
+        int depth = imax == null ? 10 : imax;
+        RootMethod method = parseRootMethod(solver == null ? defaultSolver : solver);
+        // without an image the width doesn't limit the precision
+        Precision pointPrecision = parsePrecision(precision, Integer.MAX_VALUE);
+        boolean delta = prefersDelta(accept);
+        RequestKey key = geometryKey(type, depth, start, coefficients, method, pointPrecision, grid);
+
+        Tags tags = FractalMetrics.tags(FractalHelper.canonicalType(type), fractal.dimensions(), "points");
+        metrics.stop(sample, "parse", tags);
+
+        if (fractal instanceof PolynomialFractal pf) {
+            pf.setMaxIterations(maxIterations);
+            pf.setRootMethod(method);
+            pf.setSolverListener(metrics.newtonListener(tags));
+        }
+
+        CompletableFuture<PointCloud> cloud = geometry(key, fractal, start, depth, pointPrecision, grid, tags);
+
+        return cloud.thenApply(points -> ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(delta ? PointCloudFormat.DELTA_MEDIA_TYPE
+                                                            : PointCloudFormat.RAW_MEDIA_TYPE))
+                .body(out -> {
+                    // written after the request returned, so the reference is closed here
+                    try {
+                        Timer.Sample encode = metrics.start();
+                        long bytes = PointCloudFormat.write(points, delta, out);
+                        metrics.stop(encode, "encode", tags);
+                        metrics.imageBytes(tags, bytes);
+                    }
+                    finally {
+                        points.close();
+                    }
+                }));
+    }
+
+    // the delta encoding only if the client prefers it to the raw one
+    private static boolean prefersDelta(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+
+        MediaType raw = MediaType.parseMediaType(PointCloudFormat.RAW_MEDIA_TYPE);
+        MediaType delta = MediaType.parseMediaType(PointCloudFormat.DELTA_MEDIA_TYPE);
+        List<MediaType> types = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(types);
+
+        for (MediaType mt : types) {
+            if (mt.getQualityValue() > 0.0 && delta.equals(mt.removeQualityValue())) {
+                return true;
+            }
+
+            if (mt.getQualityValue() > 0.0 && (mt.includes(raw) || mt.includes(MediaType.APPLICATION_OCTET_STREAM))) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Renders the Julia set of the forward map by escape time framed by the viewport or else by a disc containing it,
+     * {@code imax} is the maximal number of iterations per pixel. The height of the image follows from the aspect
+     * ratio of the viewport.
+     */
+    private CompletableFuture<ResponseEntity<byte[]>> retrieveEscape(String type, ComplexFractal fractal,
+                                                                     MutableComplex[] coefficients, int iterations,
+                                                                     int width, Rectangle2D.Double viewport,
+                                                                     ImageFormat format, String ifNoneMatch,
+                                                                     Timer.Sample sample) {
+        if (!(fractal instanceof PolynomialMap map)) {
+            throw new IllegalArgumentException("Fractal type doesn't support escape time: " + type);
+        }
+
+        int height = viewport == null ? width : (int) (width * viewport.height / viewport.width);
+        if (width < 1 || width > MAX_SIZE || height < 1 || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Image size must be in [1, " + MAX_SIZE + "].");
+        }
+
+        long cost = CostEstimator.estimateEscape((long) width * height, iterations, fractal.dimensions(),
+                                                 format.extension());
+        RequestKey.Builder image = canonical("escape", type, iterations, MutableComplex.zero(), coefficients, null)
+                .add(format).add(width);
+        RequestKey key = viewport == null
+                         ? image.add(0).build()
+                         : image.add(1).add(viewport.x).add(viewport.y).add(viewport.width).add(viewport.height)
+                                 .build();
+
+        String etag = ImageNegotiation.etag(key);
+
+        Tags tags = FractalMetrics.tags(FractalHelper.canonicalType(type), fractal.dimensions(), "escape");
+        metrics.stop(sample, "parse", tags);
+
+        if (ImageNegotiation.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ImageNegotiation.notModified(etag));
+        }
+
+        return coalescer.execute(key, () -> computeExecutor.submit(cost, () -> {
+            ComplexPolynomial f = map.forwardMap();
+            Rectangle2D.Double frame = viewport != null ? viewport : disc(1.05 * EscapeRenderer.radius(f));
+            EscapeField field = metrics.time("calculate", tags, () -> EscapeRenderer.render(
+                    f, frame.getCenterX(), frame.getCenterY(), 0.5 * frame.width, width, height, iterations,
+                    computeExecutor));
+
+            return renderer.render(field, format, tags);
+        })).thenApply(bytes -> ImageNegotiation.response(bytes, format, etag));
+    }
+
+    /**
+     * Renders the Julia set of the forward map by escape time, the center is given in decimal notation with up to 32
+     * significant digits, so deep zooms are possible.
+     */
+    @GetMapping(value = "/fractal-music/zoom/png", produces = {MediaType.IMAGE_PNG_VALUE, ImageFormat.QOI_MEDIA_TYPE,
+            ImageFormat.BMP_MEDIA_TYPE})
+    public CompletableFuture<ResponseEntity<byte[]>> retrieveZoomAsPng(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String a5,
+            @RequestParam(required = false) String a4,
+            @RequestParam(required = false) String a3,
+            @RequestParam(required = false) String a2,
+            @RequestParam(required = false) String a1,
+            @RequestParam(required = false) String a0,
+            @RequestParam(defaultValue = "0") String re,
+            @RequestParam(defaultValue = "0") String im,
+            @RequestParam(defaultValue = "2") double radius,
+            @RequestParam(defaultValue = "1000") int iterations,
+            @RequestParam(defaultValue = "800") int width,
+            @RequestParam(defaultValue = "600") int height,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        Timer.Sample sample = metrics.start();
+        ImageFormat imageFormat = ImageNegotiation.negotiate(format, accept);
+        MutableComplex[] coefficients = parseCoefficients(a5, a4, a3, a2, a1, a0);
+        ComplexFractal fractal = FractalHelper.find(type, coefficients);
+
+        if (!(fractal instanceof PolynomialMap map)) {
+            throw new IllegalArgumentException("Unknown fractal type: " + type);
+        }
+
+        if (width < 1 || width > MAX_SIZE || height < 1 || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Image size must be in [1, " + MAX_SIZE + "].");
+        }
+
+        DoubleDoubleComplex center = DoubleDoubleComplex.parse(re, im);
+        long cost = CostEstimator.estimateEscape((long) width * height, iterations, fractal.dimensions(),
+                                                 imageFormat.extension());
+        RequestKey key = canonical("zoom", type, iterations, MutableComplex.zero(), coefficients, null)
+                .add(imageFormat).add(center.realHi()).add(center.realLo()).add(center.imagHi()).add(center.imagLo())
+                .add(radius).add(width).add(height).build();
+
+        String etag = ImageNegotiation.etag(key);
+
+        Tags tags = FractalMetrics.tags(FractalHelper.canonicalType(type), fractal.dimensions(), "zoom");
+        metrics.stop(sample, "parse", tags);
+
+        if (ImageNegotiation.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ImageNegotiation.notModified(etag));
+        }
+
+        return coalescer.execute(key, () -> computeExecutor.submit(cost, () -> {
+            EscapeField field = metrics.time("calculate", tags, () -> PerturbationRenderer.render(
+                    map.forwardMap(), center, radius, width, height, iterations, computeExecutor));
+
+            return renderer.render(field, imageFormat, tags);
+        })).thenApply(bytes -> ImageNegotiation.response(bytes, imageFormat, etag));
+    }
+
+    /**
+     * Renders a tile of the parameter plane of the fractal's forward map with the constant coefficient as parameter,
+     * e.g. the Mandelbrot set for square fractals. Level 0 is a single tile containing all parameters with connected
+     * Julia sets, each level doubles the resolution. {@code imax} is the maximal number of iterations per critical
+     * point, the given constant coefficient is ignored.
+     */
+    @GetMapping(value = "/fractal-music/parameter/png", produces = {MediaType.IMAGE_PNG_VALUE,
+            ImageFormat.QOI_MEDIA_TYPE, ImageFormat.BMP_MEDIA_TYPE})
+    public CompletableFuture<ResponseEntity<byte[]>> retrieveParameterTileAsPng(
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String a5,
+            @RequestParam(required = false) String a4,
+            @RequestParam(required = false) String a3,
+            @RequestParam(required = false) String a2,
+            @RequestParam(required = false) String a1,
+            @RequestParam(required = false) String a0,
+            @RequestParam(defaultValue = "0") int level,
+            @RequestParam(defaultValue = "0") long x,
+            @RequestParam(defaultValue = "0") long y,
+            @RequestParam(defaultValue = "500") int imax,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        Timer.Sample sample = metrics.start();
+        ImageFormat imageFormat = ImageNegotiation.negotiate(format, accept);
+        MutableComplex[] coefficients = parseCoefficients(a5, a4, a3, a2, a1, a0);
+        ComplexFractal fractal = FractalHelper.find(type, coefficients);
+
+        if (!(fractal instanceof PolynomialMap map)) {
+            throw new IllegalArgumentException("Unknown fractal type: " + type);
+        }
+
+        if (level < 0 || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("Level must be in [0, " + MAX_LEVEL + "].");
+        }
+
+        long tiles = 1L << level;
+        if (x < 0 || x >= tiles || y < 0 || y >= tiles) {
+            throw new IllegalArgumentException("Tile must be in [0, " + tiles + ") on level " + level + ".");
+        }
+
+        // the constant coefficient is the parameter
+        RequestKey family = canonical("parameter", type, imax, MutableComplex.zero(),
+                                      Arrays.copyOf(coefficients, coefficients.length - 1), null).build();
+        TileCache.TileKey tileKey = new TileCache.TileKey(family, level, x, y);
+        int n = fractal.dimensions();
+        long cost = CostEstimator.estimateEscape((long) TileCache.TILE_SIZE * TileCache.TILE_SIZE, imax, n * (n - 1),
+                                                 imageFormat.extension());
+
+        RequestKey key = family.extend().add(imageFormat).add(level).add(x).add(y).build();
+        // a tile from the mipmap of its children differs from a direct rendering
+        String etag = ImageNegotiation.weakEtag(key);
+
+        Tags tags = FractalMetrics.tags(FractalHelper.canonicalType(type), n, "parameter");
+        metrics.stop(sample, "parse", tags);
+
+        if (ImageNegotiation.matches(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ImageNegotiation.notModified(etag));
+        }
+
+        TileCache.Tile cached = tileCache.get(tileKey);
+        metrics.cacheAccess("tiles", cached != null);
+
+        if (cached != null && imageFormat == ImageFormat.PNG && cached.bytes() != null) {
+            return CompletableFuture.completedFuture(ImageNegotiation.response(cached.bytes(), imageFormat, etag));
+        }
+
+        if (cached != null) {
+            // only the encoding is missing
+            long encoding = CostEstimator.estimate(0, TileCache.TILE_SIZE, imageFormat.extension());
+
+            return coalescer.execute(key, () -> computeExecutor.submit(encoding, () -> {
+                byte[] bytes = renderer.encode(TileCache.image(cached.rgb()), imageFormat, tags);
+
+                if (imageFormat == ImageFormat.PNG) {
+                    tileCache.put(tileKey, new TileCache.Tile(cached.rgb(), bytes));
+                }
+
+                return bytes;
+            })).thenApply(bytes -> ImageNegotiation.response(bytes, imageFormat, etag));
+        }
+
+        return coalescer.execute(key, () -> computeExecutor.submit(cost, () -> {
+            int[] mipmap = tileCache.mipmap(tileKey);
+            BufferedImage image;
+
+            if (mipmap != null) {
+                image = metrics.time("render", tags, () -> TileCache.image(mipmap));
+            }
+            else {
+                ComplexPolynomial f = map.forwardMap();
+                double size = 2.0 * ParameterRenderer.radius(f) / tiles;
+                double cx = -0.5 * tiles * size + (x + 0.5) * size;
+                double cy = 0.5 * tiles * size - (y + 0.5) * size;
+
+                EscapeField field = metrics.time("calculate", tags, () -> ParameterRenderer.render(
+                        f, cx, cy, 0.5 * size, TileCache.TILE_SIZE, TileCache.TILE_SIZE, imax, computeExecutor));
+                image = metrics.time("render", tags, () -> FractalHelper.createImage(field));
+            }
+
+            byte[] bytes = renderer.encode(image, imageFormat, tags);
+            int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            tileCache.put(tileKey, new TileCache.Tile(rgb, imageFormat == ImageFormat.PNG ? bytes : null));
+
+            return bytes;
+        })).thenApply(bytes -> ImageNegotiation.response(bytes, imageFormat, etag));
+    }
+
+    // the order of the points doesn't matter, only symmetric, deduplicated or spilled trees are calculated depth-first
+    private PointCloud calculate(ComplexFractal fractal, Complex z0, int depth, Precision precision, double grid) {
+        Path spill = spillDirectory.isBlank() ? null : Path.of(spillDirectory);
+
+        if (fractal.symmetry() == 1 && grid == 0.0 && (spill == null || !Calculator.spills(fractal, depth))) {
+            return Calculator.calculateLevels(fractal, z0, depth, precision);
+        }
+
+        return Calculator.calculate(fractal, z0, depth, precision, spill, grid, true);
+    }
+
+    // a deduplicated tree is only limited by the points calculated
+    private static long treeSize(ComplexFractal fractal, int depth, double grid) {
+        long points = CostEstimator.points(fractal.dimensions(), depth);
+        return grid == 0.0 ? points : Math.min(points, MAX_DEDUPLICATED_POINTS);
+    }
+
+    // the square around a disc centered at 0
+    private static Rectangle2D.Double disc(double radius) {
+        return new Rectangle2D.Double(-radius, -radius, 2.0 * radius, 2.0 * radius);
+    }
+
+    // all four bounds or none for the bounds of the points
+    private static Rectangle2D.Double parseViewport(Double xmin, Double xmax, Double ymin, Double ymax) {
+        if (xmin == null && xmax == null && ymin == null && ymax == null) {
+            return null;
+        }
+
+        if (xmin == null || xmax == null || ymin == null || ymax == null || !(xmin < xmax) || !(ymin < ymax)) {
+            throw new IllegalArgumentException("Viewport needs xmin < xmax and ymin < ymax.");
+        }
+
+        return new Rectangle2D.Double(xmin, ymin, xmax - xmin, ymax - ymin);
+    }
+
+    // "auto" selects the precision by the image width
+    private static Precision parsePrecision(String precision, int width) {
+        if ("auto".equalsIgnoreCase(precision)) {
+            return Precision.forWidth(width);
+        }
+
+        try {
+            return Precision.valueOf(precision.toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown precision: " + precision, e);
+        }
+    }
+
+    private static RootMethod parseRootMethod(String solver) {
+        try {
+            return RootMethod.valueOf(solver.toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown solver: " + solver, e);
+        }
+    }
+
+    private MutableComplex[] parseCoefficients(String ... sc) {
         int n = sc.length; // as invoked it must be 6
         int deg = n;
         int k = n;
@@ -100,9 +1005,34 @@ public class MainController {
             coefficients[i - k] = z;
         }
 
-        ComplexFractal fractal = FractalHelper.find(type, coefficients);
-        imax = imax == null ? 10 : imax;
+        return coefficients;
+    }
+
+    // shared by the images and the points of a preimage tree
+    private static RequestKey geometryKey(String type, int depth, MutableComplex start, MutableComplex[] coefficients,
+                                          RootMethod method, Precision precision, double grid) {
+        return canonical("preimages", type, depth, start, coefficients, method).add(precision).add(grid).build();
+    }
+
+    /**
+     * Starts a key identifying the request by its parsed values, so differently spelled but equal requests share one
+     * computation. The method is {@code null} if no solver is involved.
+     */
+    private static RequestKey.Builder canonical(String kind, String type, int depth, MutableComplex z0,
+                                                MutableComplex[] coefficients, RootMethod method) {
+        type = FractalHelper.canonicalType(type);
+        RequestKey.Builder key = RequestKey.builder(kind).add(type).add(depth).add(z0);
+
+        // a square fractal only takes the first coefficient into account and doesn't need a solver
+        boolean square = "square".equals(type);
+        key.add(!square && method != null ? method.name() : "");
+
+        int n = square ? Math.min(1, coefficients.length) : coefficients.length;
+        key.add(n);
+        for (int i = 0; i < n; i++) {
+            key.add(coefficients[i] == null ? MutableComplex.zero() : coefficients[i]);
+        }
 
-        return Calculator.calculate(fractal, z0.complex(), imax);
+        return key;
     }
 }
@@ -20,93 +20,355 @@ package de.muellerlund.ms.fractalmusic.fractal;
 import de.muellerlund.math.complex.MutableComplex;
 import de.muellerlund.ms.fractalmusic.calculation.ComplexFractal;
 import de.muellerlund.ms.fractalmusic.calculation.ExtendedComplex;
+import de.muellerlund.ms.fractalmusic.calculation.Extent;
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.escape.EscapeField;
 import de.muellerlund.ms.fractalmusic.calculation.fractals.PolynomialFractal;
 import de.muellerlund.ms.fractalmusic.calculation.fractals.SquareFractal;
-import org.apache.commons.math3.complex.Complex;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 import java.util.List;
 
 public final class FractalHelper {
 
+    public static final int DEFAULT_WIDTH = 800;
+
     private FractalHelper() {
     }
 
     public static BufferedImage createImage(List<ExtendedComplex> numbers) {
-        Rectangle2D.Double r = getBounds(numbers);
-        double ratio = r.width / r.height;
-
-        double x1 = r.x;
-        double x2 = x1 + r.width;
-        double y1 = r.y;
-        double y2 = y1 + r.height;
+        return createImage(numbers, getBounds(numbers));
+    }
 
-        int width = 800;
-        int height = (int) (width / ratio);
+    public static BufferedImage createImage(List<ExtendedComplex> numbers, Rectangle2D.Double r) {
+        return createImage(PointCloud.of(numbers), r, DEFAULT_WIDTH);
+    }
 
-        if (height <= 0) {
-            height = 100;
-        }
+    public static BufferedImage createImage(PointCloud points, Rectangle2D.Double r, int width) {
+        return createImage(points, r, width, Palette.CLASSIC);
+    }
 
-        double mx = width / (x2 - x1);
-        double bx = -mx * x1;
-        double my = height / (y1 - y2);
-        double by = -my * y2;
+    /**
+     * Draws the points inside the given viewport.
+     *
+     * @param points The points.
+     * @param r The viewport, the height of the image follows from its aspect ratio.
+     * @param width The width of the image.
+     * @param palette Colors the points by depth and id.
+     * @return the image.
+     */
+    public static BufferedImage createImage(PointCloud points, Rectangle2D.Double r, int width, Palette palette) {
+        Projection f = Projection.of(r, width);
 
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage image = new BufferedImage(width, f.height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = image.createGraphics();
         g.setColor(Color.WHITE);
-        g.fillRect(0, 0, width, height);
-
-        for (ExtendedComplex ez : numbers) {
-            Complex z = ez.number();
-            Color color = new Color(-ez.depth() * 17 & 255, -ez.depth() * 9 - ez.id() * 23 & 255, -ez.id() * 47 & 255);
-            g.setColor(color);
-            int x = (int) (mx * z.getReal() + bx);
-            int y = (int) (my * z.getImaginary() + by);
+        g.fillRect(0, 0, width, f.height);
+
+        points.forEach((re, im, depth, id) -> {
+            g.setColor(new Color(palette.rgb(depth, id)));
+            int x = (int) (f.mx * re + f.bx);
+            int y = (int) (f.my * im + f.by);
             g.drawRect(x, y, 1, 1);
+        });
+
+        return image;
+    }
+
+    /**
+     * Draws the points as {@link #createImage(PointCloud, Rectangle2D.Double, int, Palette)} does, but with one byte
+     * per pixel: the palette yields only a few distinct colors, so the image gets a color table of those actually
+     * drawn, white first. PNG encodes such an image with 8 bits per pixel.
+     *
+     * @param points The points.
+     * @param r The viewport, the height of the image follows from its aspect ratio.
+     * @param width The width of the image.
+     * @param palette Colors the points by depth and id.
+     * @return the image, a {@code TYPE_INT_RGB} one if more than 256 colors are needed.
+     */
+    public static BufferedImage createIndexedImage(PointCloud points, Rectangle2D.Double r, int width,
+                                                   Palette palette) {
+        Projection f = Projection.of(r, width);
+        IndexedCanvas canvas = new IndexedCanvas(width, f.height);
+
+        points.forEach((re, im, depth, id) -> {
+            int x = (int) (f.mx * re + f.bx);
+            int y = (int) (f.my * im + f.by);
+            canvas.draw(x, y, palette.rgb(depth, id));
+        });
+
+        return canvas.image();
+    }
+
+    // maps the viewport to pixel coordinates
+    private record Projection(int height, double mx, double bx, double my, double by) {
+        static Projection of(Rectangle2D.Double r, int width) {
+            double ratio = r.width / r.height;
+
+            double x1 = r.x;
+            double x2 = x1 + r.width;
+            double y1 = r.y;
+            double y2 = y1 + r.height;
+
+            int height = (int) (width / ratio);
+
+            if (height <= 0) {
+                height = 100;
+            }
+
+            double mx = width / (x2 - x1);
+            double bx = -mx * x1;
+            double my = height / (y1 - y2);
+            double by = -my * y2;
+
+            return new Projection(height, mx, bx, my, by);
+        }
+    }
+
+    /**
+     * The pixels of an indexed image, switching to RGB pixels in place once the color table overflows, so the points
+     * are drawn only once.
+     */
+    private static final class IndexedCanvas {
+        private final int width;
+        private final int height;
+        private final byte[] pixels;
+        private final ColorTable colors = new ColorTable();
+
+        // the RGB image after an overflow of the color table, null before
+        private BufferedImage rgbImage;
+        private int[] rgb;
+
+        IndexedCanvas(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.pixels = new byte[width * height];
+        }
+
+        // the outline of a 1 × 1 rectangle covers 2 × 2 pixels
+        void draw(int x, int y, int color) {
+            // opaque like the pixels Graphics2D writes
+            color |= 0xff000000;
+
+            int index = rgb == null ? colors.index(color) : -1;
+
+            if (index < 0 && rgb == null) {
+                expand();
+            }
+
+            for (int py = y; py <= y + 1; py++) {
+                if (py >= 0 && py < height) {
+                    for (int px = x; px <= x + 1; px++) {
+                        if (px >= 0 && px < width) {
+                            if (rgb == null) {
+                                pixels[py * width + px] = (byte) index;
+                            }
+                            else {
+                                rgb[py * width + px] = color;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // copies the pixels drawn so far into an RGB image
+        private void expand() {
+            rgbImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            rgb = ((DataBufferInt) rgbImage.getRaster().getDataBuffer()).getData();
+
+            for (int i = 0; i < pixels.length; i++) {
+                rgb[i] = 0xff000000 | colors.rgb(pixels[i] & 0xff);
+            }
+        }
+
+        BufferedImage image() {
+            if (rgbImage != null) {
+                return rgbImage;
+            }
+
+            DataBufferByte buffer = new DataBufferByte(pixels, pixels.length);
+            WritableRaster raster = Raster.createInterleavedRaster(buffer, width, height, width, 1, new int[]{0}, null);
+
+            return new BufferedImage(colors.model(), raster, false, null);
+        }
+    }
+
+    /**
+     * The colors of an indexed image in the order of their first use, index 0 is the white background.
+     */
+    private static final class ColorTable {
+        private static final int MAX_COLORS = 256;
+
+        // open addressing, twice as many slots as colors at most, -1 marks a free slot
+        private final int[] keys = new int[2 * MAX_COLORS];
+        private final byte[] values = new byte[2 * MAX_COLORS];
+        private final int[] rgb = new int[MAX_COLORS];
+        private int size;
+
+        ColorTable() {
+            Arrays.fill(keys, -1);
+            index(0xffffff);
+        }
+
+        // returns -1 if the table is full
+        int index(int color) {
+            int slot = (color * 0x9e3779b1) >>> 23;
+
+            while (keys[slot] != -1) {
+                if (keys[slot] == color) {
+                    return values[slot] & 0xff;
+                }
+
+                slot = (slot + 1) & keys.length - 1;
+            }
+
+            if (size == MAX_COLORS) {
+                return -1;
+            }
+
+            keys[slot] = color;
+            values[slot] = (byte) size;
+            rgb[size] = color;
+
+            return size++;
+        }
+
+        int rgb(int index) {
+            return rgb[index];
+        }
+
+        IndexColorModel model() {
+            // PNG stores a color table of just this size
+            return new IndexColorModel(8, size, rgb, 0, false, -1, DataBuffer.TYPE_BYTE);
+        }
+    }
+
+    /**
+     * Colors an escape time field, interior pixels are black, the others cycle through a smooth palette.
+     *
+     * @param field The continuous iteration counts.
+     * @return the image.
+     */
+    public static BufferedImage createImage(EscapeField field) {
+        BufferedImage image = new BufferedImage(field.width(), field.height(), BufferedImage.TYPE_INT_RGB);
+        int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        float[] values = field.values();
+
+        for (int i = 0; i < values.length; i++) {
+            rgb[i] = escapeColor(values[i]);
         }
 
         return image;
     }
 
-    private static Rectangle2D.Double getBounds(List<ExtendedComplex> numbers) {
-        double rMin = 0.0;
-        double rMax = 0.0;
-        double iMin = 0.0;
-        double iMax = 0.0;
+    private static int escapeColor(float nu) {
+        if (nu < 0.0f) {
+            return 0;
+        }
+
+        // the colors cycle logarithmically, the first cycle ends after 32 iterations
+        double t = 2.0 * Math.PI * Math.log1p(nu) / Math.log(33.0);
+        int r = (int) (127.5 + 127.5 * Math.cos(t));
+        int g = (int) (127.5 + 127.5 * Math.cos(t + 2.1));
+        int b = (int) (127.5 + 127.5 * Math.cos(t + 4.2));
+
+        return r << 16 | g << 8 | b;
+    }
+
+    public static Rectangle2D.Double getBounds(List<ExtendedComplex> numbers) {
+        return getBounds(PointCloud.of(numbers));
+    }
+
+    /**
+     * Returns the bounds of the points and the origin, maintained by the point cloud while it was calculated.
+     *
+     * @param points The points.
+     * @return the smallest rectangle containing the points and 0.
+     */
+    public static Rectangle2D.Double getBounds(PointCloud points) {
+        Extent extent = points.extent();
+        double rMin = Math.min(0.0, extent.minRe());
+        double rMax = Math.max(0.0, extent.maxRe());
+        double iMin = Math.min(0.0, extent.minIm());
+        double iMax = Math.max(0.0, extent.maxIm());
+
+        return new Rectangle2D.Double(rMin, iMin, rMax - rMin, iMax - iMin);
+    }
 
-        for (ExtendedComplex ez : numbers) {
-            Complex z = ez.number();
-            rMin = Math.min(rMin, z.getReal());
-            rMax = Math.max(rMax, z.getReal());
-            iMin = Math.min(iMin, z.getImaginary());
-            iMax = Math.max(iMax, z.getImaginary());
+    /**
+     * Returns the bounds of the dense region of the points: a fraction of the points is cut off at each side, so a
+     * few outliers don't shrink the rest to a small part of the image.
+     *
+     * @param points The points.
+     * @param trim The fraction of the points outside each side, e.g. 0.01 for the box of the 1st to 99th percentile.
+     * @return the box of the quantiles or {@link #getBounds(PointCloud)} if it is degenerated.
+     */
+    public static Rectangle2D.Double getBounds(PointCloud points, double trim) {
+        if (!(trim >= 0.0 && trim < 0.5)) {
+            throw new IllegalArgumentException("Trim must be in [0, 0.5).");
+        }
+
+        Extent extent = points.quantiles();
+        double rMin = extent.quantileRe(trim);
+        double rMax = extent.quantileRe(1.0 - trim);
+        double iMin = extent.quantileIm(trim);
+        double iMax = extent.quantileIm(1.0 - trim);
+
+        if (!(rMax > rMin && iMax > iMin)) {
+            return getBounds(points);
         }
 
         return new Rectangle2D.Double(rMin, iMin, rMax - rMin, iMax - iMin);
     }
 
+    /**
+     * Returns the canonical name of the given fractal type.
+     *
+     * @param type The fractal type as requested, {@code null} or blank for the default.
+     *
+     * @return {@code "square"}, {@code "polynomial"} or {@code null} if the type is unknown.
+     */
+    public static String canonicalType(String type) {
+        if (type == null || type.isBlank()) {
+            return "square";
+        }
+
+        return switch (type.toLowerCase()) {
+            case "sq", "square" -> "square";
+            case "pol", "polynomial" -> "polynomial";
+            default -> null;
+        };
+    }
+
     public static ComplexFractal find(String type, MutableComplex[] coefficients) {
         // No reflection bullshit!
-        if (type == null || type.isBlank()) {
-            type = "square";
+        type = canonicalType(type);
+
+        if (type == null) {
+            return null;
         }
 
         ComplexFractal fractal = null;
-        type = type.toLowerCase();
 
         switch (type) {
-            case "sq", "square" -> {
+            case "square" -> {
                 SquareFractal sf = new SquareFractal();
                 MutableComplex z = coefficients[0];
                 z = z == null ? MutableComplex.zero() : z;
                 sf.getC().assign(z);
                 fractal = sf;
             }
-            case "pol", "polynomial" -> fractal = new PolynomialFractal(coefficients);
+            case "polynomial" -> fractal = new PolynomialFractal(coefficients);
         }
 
         return fractal;
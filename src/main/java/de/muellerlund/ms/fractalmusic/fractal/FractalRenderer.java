@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import de.muellerlund.ms.fractalmusic.calculation.ExtendedComplex;
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.escape.EscapeField;
+import de.muellerlund.ms.fractalmusic.metrics.FractalMetrics;
+import de.muellerlund.ms.fractalmusic.util.ImageFormat;
+import de.muellerlund.ms.fractalmusic.util.ImageHelper;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Renders calculated points into an encoded image, measuring each phase.
+ */
+@Component
+public class FractalRenderer {
+
+    /**
+     * Version of the rendered images, part of their entity tags. Increment it whenever a change alters the image for
+     * the same parameters.
+     */
+    public static final int VERSION = 1;
+
+    private final FractalMetrics metrics;
+
+    public FractalRenderer(FractalMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public byte[] render(List<ExtendedComplex> numbers, ImageFormat format, Tags tags) {
+        return render(PointCloud.of(numbers), null, FractalHelper.DEFAULT_WIDTH, Palette.CLASSIC, format, tags);
+    }
+
+    /**
+     * Renders already calculated points, so no calculation is involved.
+     *
+     * @param points The points.
+     * @param viewport The rectangle to show, {@code null} for the bounds of the points.
+     * @param width The width of the image.
+     * @param palette The colors of the points.
+     * @param format The format of the image.
+     * @param tags The metrics tags.
+     * @return the encoded image.
+     */
+    public byte[] render(PointCloud points, Rectangle2D.Double viewport, int width, Palette palette,
+                         ImageFormat format, Tags tags) {
+        Rectangle2D.Double bounds = viewport != null
+                                    ? viewport
+                                    : metrics.time("bounds", tags, () -> FractalHelper.getBounds(points));
+        BufferedImage image = metrics.time("render", tags, () -> FractalHelper.createIndexedImage(points, bounds,
+                                                                                                  width, palette));
+
+        return encode(image, format, tags);
+    }
+
+    public byte[] render(EscapeField field, ImageFormat format, Tags tags) {
+        BufferedImage image = metrics.time("render", tags, () -> FractalHelper.createImage(field));
+
+        return encode(image, format, tags);
+    }
+
+    public byte[] encode(BufferedImage image, ImageFormat format, Tags tags) {
+        byte[] bytes = metrics.time("encode", tags, () -> ImageHelper.asBytes(image, format));
+
+        metrics.imageBytes(tags, bytes.length);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.Precision;
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Calculated preimage trees keyed by the canonical parameters of their geometry (fractal, z0, depth, precision), so
+ * changing only the image size, viewport or palette doesn't calculate the tree again.
+ *
+ * <p>The cache holds a reference to each point cloud, see {@link PointCloud#retain()}, which {@link #put} takes over
+ * and which is closed once the point cloud leaves the cache. Clouds in use by a request stay open until it closes its
+ * own reference.</p>
+ */
+@Component
+public class GeometryCache extends WeightedCache<RequestKey, PointCloud> {
+
+    public GeometryCache(@Value("${mls.geometry.capacity:256MB}") DataSize capacity) {
+        super(capacity.toBytes(), GeometryCache::bytes, PointCloud::close);
+    }
+
+    /**
+     * Returns a cached point cloud with a new reference, the caller closes it when done.
+     *
+     * @param key The canonical geometry key.
+     * @return the retained point cloud or {@code null} if it isn't cached.
+     */
+    public synchronized PointCloud retain(RequestKey key) {
+        // locked, so it can't be evicted and closed in between
+        PointCloud points = get(key);
+
+        return points == null ? null : points.retain();
+    }
+
+    private static long bytes(PointCloud points) {
+        return (long) points.size() * (points.precision() == Precision.FLOAT ? 12 : 20);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Encoded images keyed by the canonical parameters of their geometry and of their rendering.
+ */
+@Component
+public class ImageCache extends WeightedCache<RequestKey, byte[]> {
+
+    public ImageCache(@Value("${mls.images.capacity:64MB}") DataSize capacity) {
+        super(capacity.toBytes(), bytes -> bytes.length);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import java.util.Locale;
+
+/**
+ * Colors of the points of a preimage tree by their depth and id.
+ */
+public enum Palette {
+    /**
+     * Depth and id mixed into all channels.
+     */
+    CLASSIC {
+        @Override
+        public int rgb(int depth, int id) {
+            return (-depth * 17 & 255) << 16 | (-depth * 9 - id * 23 & 255) << 8 | -id * 47 & 255;
+        }
+    },
+
+    /**
+     * Gray levels by depth, the deepest points are the darkest.
+     */
+    DEPTH {
+        @Override
+        public int rgb(int depth, int id) {
+            int v = Math.min(224, 16 * (depth - 1));
+            return v << 16 | v << 8 | v;
+        }
+    },
+
+    /**
+     * All points black.
+     */
+    MONO {
+        @Override
+        public int rgb(int depth, int id) {
+            return 0;
+        }
+    };
+
+    /**
+     * Returns the RGB color of a point.
+     *
+     * @param depth The remaining depth of the point, 1 for the leaves.
+     * @param id The index of the point among the preimages of its parent.
+     * @return the color as {@code 0xRRGGBB}.
+     */
+    public abstract int rgb(int depth, int id);
+
+    /**
+     * Returns the palette of the given name, ignoring the case.
+     *
+     * @throws IllegalArgumentException if there is no such palette.
+     */
+    public static Palette parse(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown palette: " + name, e);
+        }
+    }
+}
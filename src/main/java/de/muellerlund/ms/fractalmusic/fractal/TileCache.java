@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of square image tiles organized as a quadtree: tile {@code (x, y)} of level {@code l} is covered by the
+ * tiles {@code (2x, 2y)} … {@code (2x + 1, 2y + 1)} of level {@code l + 1}.
+ *
+ * <p>Besides plain lookups the cache acts as a mipmap: a tile whose four children are cached can be downscaled from
+ * them, which is much cheaper than rendering it and anti-aliased for free. So zooming out of an explored region costs
+ * next to nothing.</p>
+ */
+@Component
+public class TileCache {
+
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * A cached tile: its raster ({@link #TILE_SIZE}² RGB values, row by row) and its PNG image, {@code null} if it
+     * was only requested in other formats so far.
+     */
+    public record Tile(int[] rgb, byte[] bytes) {
+    }
+
+    /**
+     * Position of a tile in the quadtree of a family of images.
+     *
+     * @param family Identifies the image family, e.g. the canonical parameters of a fractal.
+     * @param level The level, it has {@code 2^level × 2^level} tiles.
+     * @param x The column.
+     * @param y The row.
+     */
+    public record TileKey(RequestKey family, int level, long x, long y) {
+
+        TileKey child(int dx, int dy) {
+            return new TileKey(family, level + 1, 2 * x + dx, 2 * y + dy);
+        }
+    }
+
+    private final Map<TileKey, Tile> tiles;
+
+    public TileCache(@Value("${mls.tiles.capacity:128}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, Tile> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized Tile get(TileKey key) {
+        return tiles.get(key);
+    }
+
+    public synchronized void put(TileKey key, Tile tile) {
+        tiles.put(key, tile);
+    }
+
+    /**
+     * Returns the raster of the given tile downscaled from its four children.
+     *
+     * @param key The tile.
+     * @return the averaged raster or {@code null} if a child isn't cached.
+     */
+    public int[] mipmap(TileKey key) {
+        Tile[] children = new Tile[4];
+
+        synchronized (this) {
+            for (int i = 0; i < 4; i++) {
+                children[i] = tiles.get(key.child(i & 1, i >> 1));
+
+                if (children[i] == null) {
+                    return null;
+                }
+            }
+        }
+
+        int half = TILE_SIZE / 2;
+        int[] rgb = new int[TILE_SIZE * TILE_SIZE];
+
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                int[] child = children[(x / half) + 2 * (y / half)].rgb();
+                int i = 2 * (y % half) * TILE_SIZE + 2 * (x % half);
+                rgb[y * TILE_SIZE + x] = average(child[i], child[i + 1], child[i + TILE_SIZE],
+                                                 child[i + TILE_SIZE + 1]);
+            }
+        }
+
+        return rgb;
+    }
+
+    /**
+     * Wraps a raster of {@link #TILE_SIZE}² RGB values into an image.
+     *
+     * @param rgb The raster, it is copied.
+     * @return the image.
+     */
+    public static BufferedImage image(int[] rgb) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(rgb, 0, data, 0, data.length);
+
+        return image;
+    }
+
+    private static int average(int c1, int c2, int c3, int c4) {
+        int r = ((c1 >> 16 & 255) + (c2 >> 16 & 255) + (c3 >> 16 & 255) + (c4 >> 16 & 255) + 2) >> 2;
+        int g = ((c1 >> 8 & 255) + (c2 >> 8 & 255) + (c3 >> 8 & 255) + (c4 >> 8 & 255) + 2) >> 2;
+        int b = ((c1 & 255) + (c2 & 255) + (c3 & 255) + (c4 & 255) + 2) >> 2;
+
+        return r << 16 | g << 8 | b;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * LRU cache bounded by the total weight of its values, e.g. their size in bytes, instead of their number.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public class WeightedCache<K, V> {
+
+    private final long capacity;
+    private final ToLongFunction<V> weigher;
+    private final Consumer<V> removalListener;
+    private final Map<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    /**
+     * @param capacity The maximal total weight.
+     * @param weigher Returns the weight of a value.
+     */
+    public WeightedCache(long capacity, ToLongFunction<V> weigher) {
+        this(capacity, weigher, value -> {});
+    }
+
+    /**
+     * @param capacity The maximal total weight.
+     * @param weigher Returns the weight of a value.
+     * @param removalListener Gets each value leaving the cache: evicted, replaced or too heavy to be cached at all, e.g.
+     * to close it. It is called while the cache is locked.
+     */
+    public WeightedCache(long capacity, ToLongFunction<V> weigher, Consumer<V> removalListener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        this.capacity = capacity;
+        this.weigher = weigher;
+        this.removalListener = removalListener;
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds a value and evicts the least recently used ones until the capacity is kept. A value heavier than the whole
+     * capacity isn't cached at all. The removal listener gets the values which aren't kept.
+     */
+    public synchronized void put(K key, V value) {
+        long w = weigher.applyAsLong(value);
+
+        if (w > capacity) {
+            removalListener.accept(value);
+            return;
+        }
+
+        V old = entries.put(key, value);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+
+            if (old != value) {
+                removalListener.accept(old);
+            }
+        }
+
+        weight += w;
+
+        Iterator<V> eldest = entries.values().iterator();
+        while (weight > capacity) {
+            V evicted = eldest.next();
+            weight -= weigher.applyAsLong(evicted);
+            eldest.remove();
+            removalListener.accept(evicted);
+        }
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
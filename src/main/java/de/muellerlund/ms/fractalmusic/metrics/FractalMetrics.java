@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.metrics;
+
+import de.muellerlund.math.complex.NewtonSolver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the fractal pipeline.
+ *
+ * <ul>
+ *     <li>{@code fractal.phase}: duration of each phase (parse, calculate, bounds, render, encode)</li>
+ *     <li>{@code fractal.points}: number of points per calculated tree, renderings of cached trees don't count</li>
+ *     <li>{@code fractal.newton.iterations}: Newton steps per zero</li>
+ *     <li>{@code fractal.newton.evaluations}: polynomial evaluations per zero</li>
+ *     <li>{@code fractal.newton.escalations}: zeros found by the fallback after the iteration budget was exhausted</li>
+ *     <li>{@code fractal.image.bytes}: size of the encoded image</li>
+ *     <li>{@code fractal.cache.requests}: cache lookups by cache and result (hit/miss)</li>
+ * </ul>
+ *
+ * <p>All but the cache metrics are tagged by fractal type, degree and render mode (preimages, escape or zoom).</p>
+ */
+@Component
+public class FractalMetrics {
+
+    private final MeterRegistry registry;
+
+    public FractalMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static Tags tags(String type, int degree) {
+        return tags(type, degree, "preimages");
+    }
+
+    public static Tags tags(String type, int degree, String mode) {
+        return Tags.of("type", type, "degree", Integer.toString(degree), "mode", mode);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String phase, Tags tags) {
+        sample.stop(timer(phase, tags));
+    }
+
+    public <T> T time(String phase, Tags tags, Supplier<T> supplier) {
+        return timer(phase, tags).record(supplier);
+    }
+
+    public void points(Tags tags, long points) {
+        DistributionSummary.builder("fractal.points")
+                           .baseUnit("points")
+                           .tags(tags)
+                           .register(registry)
+                           .record(points);
+    }
+
+    public void imageBytes(Tags tags, long bytes) {
+        DistributionSummary.builder("fractal.image.bytes")
+                           .baseUnit("bytes")
+                           .tags(tags)
+                           .register(registry)
+                           .record(bytes);
+    }
+
+    public NewtonSolver.Listener newtonListener(Tags tags) {
+        DistributionSummary iterations = DistributionSummary.builder("fractal.newton.iterations")
+                                                            .baseUnit("iterations")
+                                                            .tags(tags)
+                                                            .register(registry);
+        DistributionSummary evaluations = DistributionSummary.builder("fractal.newton.evaluations")
+                                                             .baseUnit("evaluations")
+                                                             .tags(tags)
+                                                             .register(registry);
+        Counter escalations = registry.counter("fractal.newton.escalations", tags);
+
+        return (n, m, residual, escalated) -> {
+            iterations.record(n);
+            evaluations.record(m);
+
+            if (escalated) {
+                escalations.increment();
+            }
+        };
+    }
+
+    public void cacheAccess(String cache, boolean hit) {
+        registry.counter("fractal.cache.requests", "cache", cache, "result", hit ? "hit" : "miss").increment();
+    }
+
+    private Timer timer(String phase, Tags tags) {
+        return Timer.builder("fractal.phase")
+                    .tags(tags)
+                    .tag("phase", phase)
+                    .register(registry);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an animated PNG frame by frame, so an animation can be streamed while its later frames are still calculated.
+ *
+ * <p>The frames are RGBA images. A frame may be encoded against its predecessor by {@link #encode(int[], int[], int,
+ * int)}: only the bounding box of the changed pixels is stored and unchanged pixels inside it are transparent, the
+ * frame is composed over its predecessor. Encoding is independent of writing, so frames can be encoded in parallel
+ * and written in their order.</p>
+ *
+ * @see <a href="https://wiki.mozilla.org/APNG_Specification">APNG Specification</a>
+ */
+public final class ApngWriter {
+
+    public static final String MEDIA_TYPE = "image/apng";
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    // filter type of every row: the difference to the row above
+    private static final int FILTER_UP = 2;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int frames;
+    private int written;
+
+    // sequence number of the next fcTL or fdAT chunk
+    private int sequence;
+
+    /**
+     * An encoded frame, a rectangle of the image with its compressed rows.
+     *
+     * @param x The left border of the rectangle.
+     * @param y The top border of the rectangle.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param blend {@code true} to compose the rectangle over the predecessor, {@code false} to replace it.
+     * @param data The compressed rows.
+     */
+    public record Frame(int x, int y, int width, int height, boolean blend, byte[] data) {
+    }
+
+    /**
+     * Writes the header of an animation.
+     *
+     * @param out The stream to write to, it isn't closed.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param frames The number of frames.
+     * @param loops The number of loops, 0 for infinite.
+     * @throws IOException if writing fails.
+     */
+    public ApngWriter(OutputStream out, int width, int height, int frames, int loops) throws IOException {
+        if (width < 1 || height < 1 || frames < 1 || loops < 0) {
+            throw new IllegalArgumentException("Size, frames and loops must be positive.");
+        }
+
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.frames = frames;
+
+        out.write(SIGNATURE);
+
+        // 8 bits per channel, RGBA, deflate, no interlace
+        chunk("IHDR", ByteBuffer.allocate(13).putInt(width).putInt(height).put((byte) 8).put((byte) 6)
+                .put((byte) 0).put((byte) 0).put((byte) 0).array());
+        chunk("acTL", ByteBuffer.allocate(8).putInt(frames).putInt(loops).array());
+    }
+
+    /**
+     * Encodes a frame, the rows are compressed.
+     *
+     * @param rgb The pixels of the frame as {@code 0xRRGGBB}, row by row.
+     * @param previous The pixels of the predecessor, {@code null} to encode the whole frame.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return the frame.
+     */
+    public static Frame encode(int[] rgb, int[] previous, int width, int height) {
+        if (previous == null) {
+            return new Frame(0, 0, width, height, false, compress(rgb, null, width, 0, 0, width, height));
+        }
+
+        // bounding box of the changed pixels
+        int x1 = width;
+        int x2 = -1;
+        int y1 = height;
+        int y2 = -1;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                if (rgb[i] != previous[i]) {
+                    x1 = Math.min(x1, x);
+                    x2 = Math.max(x2, x);
+                    y1 = Math.min(y1, y);
+                    y2 = y;
+                }
+            }
+        }
+
+        if (x2 < 0) {
+            // nothing changed, a single transparent pixel
+            return new Frame(0, 0, 1, 1, true, compress(rgb, rgb, width, 0, 0, 1, 1));
+        }
+
+        return new Frame(x1, y1, x2 - x1 + 1, y2 - y1 + 1, true,
+                         compress(rgb, previous, width, x1, y1, x2 - x1 + 1, y2 - y1 + 1));
+    }
+
+    /**
+     * Writes the next frame.
+     *
+     * @param frame The encoded frame, the first one must cover the whole image.
+     * @param delay The time to show the frame in milliseconds.
+     * @throws IOException if writing fails.
+     */
+    public void write(Frame frame, int delay) throws IOException {
+        if (written == frames) {
+            throw new IllegalStateException("All frames are written.");
+        }
+
+        if (written == 0 && (frame.x() != 0 || frame.y() != 0 || frame.width() != width
+                             || frame.height() != height)) {
+            throw new IllegalArgumentException("First frame must cover the whole image.");
+        }
+
+        // dispose: none, blend: source or over
+        chunk("fcTL", ByteBuffer.allocate(26).putInt(sequence++).putInt(frame.width()).putInt(frame.height())
+                .putInt(frame.x()).putInt(frame.y()).putShort((short) Math.min(delay, 0xffff))
+                .putShort((short) 1000).put((byte) 0).put((byte) (frame.blend() ? 1 : 0)).array());
+
+        if (written == 0) {
+            // the default image is the first frame
+            chunk("IDAT", frame.data());
+        }
+        else {
+            chunk("fdAT", ByteBuffer.allocate(4 + frame.data().length).putInt(sequence++).put(frame.data()).array());
+        }
+
+        written++;
+    }
+
+    /**
+     * Writes the end of the image.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void finish() throws IOException {
+        if (written != frames) {
+            throw new IllegalStateException("Only " + written + " of " + frames + " frames are written.");
+        }
+
+        chunk("IEND", new byte[0]);
+    }
+
+    // filtered and deflated rows of a rectangle, pixels equal to the previous ones are transparent
+    private static byte[] compress(int[] rgb, int[] previous, int stride, int x0, int y0, int w, int h) {
+        int row = 1 + 4 * w;
+        byte[] raw = new byte[h * row];
+
+        for (int y = 0; y < h; y++) {
+            int o = y * row;
+            raw[o++] = (byte) FILTER_UP;
+
+            for (int x = 0, i = (y0 + y) * stride + x0; x < w; x++, i++) {
+                int c = rgb[i];
+
+                if (previous == null || c != previous[i]) {
+                    raw[o] = (byte) (c >>> 16);
+                    raw[o + 1] = (byte) (c >>> 8);
+                    raw[o + 2] = (byte) c;
+                    raw[o + 3] = (byte) 0xff;
+                }
+
+                o += 4;
+            }
+        }
+
+        // backwards, so the row above is still unfiltered
+        for (int y = h - 1; y > 0; y--) {
+            for (int o = y * row + 1, p = o - row, end = o + 4 * w; o < end; o++, p++) {
+                raw[o] -= raw[p];
+            }
+        }
+
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[1 << 16];
+
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+
+            return compressed.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private void chunk(String type, byte[] data) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data);
+
+        out.write(ByteBuffer.allocate(4).putInt(data.length).array());
+        out.write(name);
+        out.write(data);
+        out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import de.muellerlund.math.complex.MutableComplex;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses complex literals in the syntax of the {@link org.apache.commons.math3.complex.ComplexFormat} of a locale,
+ * e.g. {@code -0.12+0.75i}, {@code 1.5E-3 - 2i} or {@code 1,234.5} for en_US, without creating any objects.
+ *
+ * <p>A literal is a real number, optionally followed by {@code +} or {@code -}, a number and {@code i}, or a pure
+ * imaginary number like {@code 0.75i}. The numbers take the minus sign, decimal and grouping separator and exponent
+ * of the locale. Whitespace may surround the real part and the sign, but not separate the imaginary part from
+ * {@code i}. Unlike {@code ComplexFormat} trailing characters are never ignored.</p>
+ *
+ * <p>If the significant digits fit into 53 bits and the exponent is small, a number is converted by a single exact
+ * multiplication or division, which is correctly rounded. Other numbers fall back to
+ * {@link Double#parseDouble(String)}.</p>
+ */
+public final class ComplexParser {
+
+    // 10^k is exact in double for k <= 22
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+            1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT = 1L << 53;
+
+    // digits accumulated without overflow
+    private static final int MAX_DIGITS = 18;
+
+    // beyond the range of double, keeps the exponent from overflowing
+    private static final int MAX_EXPONENT = 100_000;
+
+    private static final ConcurrentMap<Locale, ComplexParser> PARSERS = new ConcurrentHashMap<>();
+
+    private final String minus;
+    private final char decimal;
+    private final char grouping;
+    private final String exponent;
+
+    private ComplexParser(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+
+        minus = NumberFormat.getInstance(locale) instanceof DecimalFormat format
+                ? format.getNegativePrefix()
+                : String.valueOf(symbols.getMinusSign());
+        decimal = symbols.getDecimalSeparator();
+        grouping = symbols.getGroupingSeparator();
+        exponent = symbols.getExponentSeparator();
+    }
+
+    /**
+     * Returns the parser of a locale, the parsers are thread-safe and shared.
+     */
+    public static ComplexParser of(Locale locale) {
+        return PARSERS.computeIfAbsent(locale, ComplexParser::new);
+    }
+
+    /**
+     * Parses a complex literal.
+     *
+     * @param s The literal.
+     * @param z Receives the value, undefined if the literal is invalid.
+     * @return {@code true} if the whole literal is valid.
+     */
+    public boolean parse(CharSequence s, MutableComplex z) {
+        int n = s.length();
+        int i = number(s, skipWhitespace(s, 0), z, false);
+
+        if (i < 0) {
+            return false;
+        }
+
+        if (i < n && s.charAt(i) == 'i') {
+            z.assign(0.0, z.real());
+            return skipWhitespace(s, i + 1) == n;
+        }
+
+        i = skipWhitespace(s, i);
+        if (i == n) {
+            return true;
+        }
+
+        char sign = s.charAt(i);
+        if (sign != '+' && sign != '-') {
+            return false;
+        }
+
+        i = number(s, skipWhitespace(s, i + 1), z, true);
+        if (i < 0 || i == n || s.charAt(i) != 'i') {
+            return false;
+        }
+
+        if (sign == '-') {
+            z.assign(z.real(), -z.imag());
+        }
+
+        return skipWhitespace(s, i + 1) == n;
+    }
+
+    /**
+     * Parses a real number and stores it as real or imaginary part.
+     *
+     * @return the index after the number or -1 if there is none.
+     */
+    private int number(CharSequence s, int start, MutableComplex z, boolean imaginary) {
+        int n = s.length();
+        int i = start;
+        boolean negative = regionMatches(s, i, minus);
+
+        if (negative) {
+            i += minus.length();
+        }
+
+        int mantissa = i;
+        long m = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean any = false;
+
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            int d = Character.digit(c, 10);
+
+            if (d >= 0) {
+                any = true;
+
+                if (m == 0 && d == 0) {
+                    // leading zeros aren't significant
+                    scale -= point ? 1 : 0;
+                }
+                else if (digits < MAX_DIGITS) {
+                    m = 10 * m + d;
+                    digits++;
+                    scale -= point ? 1 : 0;
+                }
+                else {
+                    digits++;
+                }
+            }
+            else if (c == decimal && !point) {
+                point = true;
+            }
+            else if (c != grouping || point || !any || i + 1 == n || Character.digit(s.charAt(i + 1), 10) < 0) {
+                // grouping separators are skipped between the digits of the integer part
+                break;
+            }
+        }
+
+        if (!any) {
+            return -1;
+        }
+
+        int end = i;
+        int e = 0;
+
+        if (regionMatches(s, i, exponent)) {
+            int j = i + exponent.length();
+            boolean negativeExponent = regionMatches(s, j, minus);
+
+            if (negativeExponent) {
+                j += minus.length();
+            }
+
+            int k = j;
+            for (int d; k < n && (d = Character.digit(s.charAt(k), 10)) >= 0; k++) {
+                e = Math.min(MAX_EXPONENT, 10 * e + d);
+            }
+
+            // an exponent without digits isn't part of the number
+            if (k > j) {
+                e = negativeExponent ? -e : e;
+                i = k;
+            }
+            else {
+                e = 0;
+            }
+        }
+
+        int p = scale + e;
+        double value;
+
+        if (digits <= MAX_DIGITS && m <= MAX_EXACT && p >= -22 && p <= 22) {
+            value = p >= 0 ? m * POWERS[p] : m / POWERS[-p];
+        }
+        else {
+            value = parseDouble(s, mantissa, end, e);
+        }
+
+        // an overflow isn't a value
+        if (Double.isInfinite(value)) {
+            return -1;
+        }
+
+        value = negative ? -value : value;
+        z.assign(imaginary ? z.real() : value, imaginary ? value : 0.0);
+
+        return i;
+    }
+
+    // the digits of the mantissa with an adjusted exponent, e.g. 1234E-3 for 1.234
+    private double parseDouble(CharSequence s, int start, int end, int e) {
+        StringBuilder sb = new StringBuilder(end - start + 8);
+        int fraction = 0;
+        boolean point = false;
+
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            int d = Character.digit(c, 10);
+
+            if (d >= 0) {
+                sb.append((char) ('0' + d));
+                fraction += point ? 1 : 0;
+            }
+            else if (c == decimal) {
+                point = true;
+            }
+        }
+
+        return Double.parseDouble(sb.append('E').append(e - fraction).toString());
+    }
+
+    private static int skipWhitespace(CharSequence s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static boolean regionMatches(CharSequence s, int i, String part) {
+        if (part.isEmpty() || i + part.length() > s.length()) {
+            return false;
+        }
+
+        for (int k = 0; k < part.length(); k++) {
+            if (s.charAt(i + k) != part.charAt(k)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
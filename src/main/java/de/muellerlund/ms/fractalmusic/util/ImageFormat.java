@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import java.util.Locale;
+
+/**
+ * The formats of encoded images, see {@link ImageHelper#asBytes(java.awt.image.BufferedImage, ImageFormat)}.
+ *
+ * <p>PNG is the smallest, QOI encodes many times faster at a similar size for our images and BMP is the raw raster
+ * for consumers caring only about latency.</p>
+ */
+public enum ImageFormat {
+    PNG("png", ImageFormat.PNG_MEDIA_TYPE),
+    QOI("qoi", ImageFormat.QOI_MEDIA_TYPE),
+    BMP("bmp", ImageFormat.BMP_MEDIA_TYPE);
+
+    public static final String PNG_MEDIA_TYPE = "image/png";
+    public static final String QOI_MEDIA_TYPE = "image/qoi";
+    public static final String BMP_MEDIA_TYPE = "image/bmp";
+
+    private final String extension;
+    private final String mediaType;
+
+    ImageFormat(String extension, String mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Returns the file extension, it is the format name of {@link #parse(String)} as well.
+     */
+    public String extension() {
+        return extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Returns the format of the given name.
+     *
+     * @param name The file extension, e.g. {@code "qoi"}, case is ignored.
+     * @return the format.
+     * @throws IllegalArgumentException if the format is unknown.
+     */
+    public static ImageFormat parse(String name) {
+        for (ImageFormat format : values()) {
+            if (format.extension.equals(name.toLowerCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown image format: " + name);
+    }
+}
@@ -18,14 +18,184 @@
 package de.muellerlund.ms.fractalmusic.util;
 
 import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
 public final class ImageHelper {
+
+    // QOI chunk tags
+    private static final int QOI_OP_INDEX = 0x00;
+    private static final int QOI_OP_DIFF = 0x40;
+    private static final int QOI_OP_LUMA = 0x80;
+    private static final int QOI_OP_RUN = 0xc0;
+    private static final int QOI_OP_RGB = 0xfe;
+
+    // longest run of a QOI_OP_RUN chunk
+    private static final int QOI_MAX_RUN = 62;
+
+    private static final int BMP_HEADER_SIZE = 14 + 40;
+
     private ImageHelper() {
     }
 
+    /**
+     * Encodes an image, QOI and BMP are written straight from the raster of {@code TYPE_INT_RGB} images.
+     *
+     * @param image The image, opaque.
+     * @param format The format.
+     * @return the encoded image.
+     */
+    public static byte[] asBytes(BufferedImage image, ImageFormat format) {
+        return switch (format) {
+            case PNG -> asBytes(image, "png");
+            case QOI -> asQoi(image);
+            case BMP -> asBmp(image);
+        };
+    }
+
+    /**
+     * Encodes an image in the Quite OK Image format with 3 channels.
+     *
+     * @see <a href="https://qoiformat.org/qoi-specification.pdf">The Quite OK Image Format</a>
+     */
+    static byte[] asQoi(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = pixels(image);
+
+        // header, worst case of 4 bytes per pixel and end marker
+        byte[] out = new byte[14 + 4 * rgb.length + 8];
+        ByteBuffer.wrap(out).put((byte) 'q').put((byte) 'o').put((byte) 'i').put((byte) 'f')
+                .putInt(width).putInt(height).put((byte) 3).put((byte) 0);
+        int o = 14;
+
+        // the index holds 0xAARRGGBB, so opaque black differs from an empty entry
+        int[] index = new int[64];
+        int previous = 0xff000000;
+        int run = 0;
+
+        for (int i = 0; i < rgb.length; i++) {
+            int px = rgb[i] | 0xff000000;
+
+            if (px == previous) {
+                run++;
+
+                if (run == QOI_MAX_RUN || i == rgb.length - 1) {
+                    out[o++] = (byte) (QOI_OP_RUN | run - 1);
+                    run = 0;
+                }
+
+                continue;
+            }
+
+            if (run > 0) {
+                out[o++] = (byte) (QOI_OP_RUN | run - 1);
+                run = 0;
+            }
+
+            int r = px >> 16 & 255;
+            int g = px >> 8 & 255;
+            int b = px & 255;
+            int hash = (r * 3 + g * 5 + b * 7 + 255 * 11) & 63;
+
+            if (index[hash] == px) {
+                out[o++] = (byte) (QOI_OP_INDEX | hash);
+            }
+            else {
+                index[hash] = px;
+
+                // differences wrap around like unsigned bytes
+                int dr = (byte) (r - (previous >> 16 & 255));
+                int dg = (byte) (g - (previous >> 8 & 255));
+                int db = (byte) (b - (previous & 255));
+                int drg = dr - dg;
+                int dbg = db - dg;
+
+                if (dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+                    out[o++] = (byte) (QOI_OP_DIFF | dr + 2 << 4 | dg + 2 << 2 | db + 2);
+                }
+                else if (dg >= -32 && dg <= 31 && drg >= -8 && drg <= 7 && dbg >= -8 && dbg <= 7) {
+                    out[o++] = (byte) (QOI_OP_LUMA | dg + 32);
+                    out[o++] = (byte) (drg + 8 << 4 | dbg + 8);
+                }
+                else {
+                    out[o++] = (byte) QOI_OP_RGB;
+                    out[o++] = (byte) r;
+                    out[o++] = (byte) g;
+                    out[o++] = (byte) b;
+                }
+            }
+
+            previous = px;
+        }
+
+        // end marker: seven 0x00 and one 0x01
+        o += 7;
+        out[o++] = 1;
+
+        return Arrays.copyOf(out, o);
+    }
+
+    /**
+     * Encodes an image as uncompressed top-down BMP with 32 bits per pixel, its rows are the raster as it is.
+     */
+    static byte[] asBmp(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = pixels(image);
+        int size = BMP_HEADER_SIZE + 4 * rgb.length;
+
+        ByteBuffer bmp = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        // file header
+        bmp.put((byte) 'B').put((byte) 'M').putInt(size).putInt(0).putInt(BMP_HEADER_SIZE);
+
+        // BITMAPINFOHEADER, a negative height means top-down, 2835 pixels per metre are 72 dpi
+        bmp.putInt(40).putInt(width).putInt(-height).putShort((short) 1).putShort((short) 32).putInt(0)
+                .putInt(4 * rgb.length).putInt(2835).putInt(2835).putInt(0).putInt(0);
+
+        // 0xAARRGGBB little-endian is B, G, R, A, the last byte is reserved
+        bmp.asIntBuffer().put(rgb);
+
+        return bmp.array();
+    }
+
+    // the raster of TYPE_INT_RGB images as it is, indexed ones are looked up, the others are converted
+    private static int[] pixels(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        if (image.getType() == BufferedImage.TYPE_BYTE_INDEXED
+            && image.getRaster().getDataBuffer() instanceof DataBufferByte buffer
+            && buffer.getSize() == image.getWidth() * image.getHeight()) {
+            IndexColorModel model = (IndexColorModel) image.getColorModel();
+            int[] colors = new int[256];
+            model.getRGBs(colors);
+
+            byte[] indices = buffer.getData();
+            int[] rgb = new int[indices.length];
+            for (int i = 0; i < rgb.length; i++) {
+                rgb[i] = colors[indices[i] & 255];
+            }
+
+            return rgb;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
     public static byte[] asBytes(RenderedImage image, String format) {
         ByteArrayOutputStream stream = new ByteArrayOutputStream(image.getHeight() * image.getWidth() * 4);
         try {
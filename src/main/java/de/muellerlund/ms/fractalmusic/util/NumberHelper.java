@@ -19,10 +19,6 @@ package de.muellerlund.ms.fractalmusic.util;
 
 import de.muellerlund.math.complex.MutableComplex;
 
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.complex.ComplexFormat;
-import org.apache.commons.math3.exception.MathParseException;
-
 import java.util.Locale;
 
 public final class NumberHelper {
@@ -30,18 +26,21 @@ public final class NumberHelper {
     private NumberHelper() {
     }
 
+    /**
+     * Parses a complex literal, see {@link ComplexParser}.
+     *
+     * @param toParse The literal, may be {@code null}.
+     * @param defaultValue The value if the literal is {@code null} or invalid.
+     * @param locale The locale of the numbers.
+     * @return the parsed value or a copy of the default value.
+     */
     public static MutableComplex parseComplex(String toParse, MutableComplex defaultValue, Locale locale) {
         if (toParse == null) {
             return defaultValue.clone();
         }
 
-        try {
-            ComplexFormat format = ComplexFormat.getInstance(locale);
-            Complex z = format.parse(toParse);
-            return new MutableComplex(z);
-        }
-        catch (MathParseException e) {
-            return defaultValue.clone();
-        }
+        MutableComplex z = MutableComplex.zero();
+
+        return ComplexParser.of(locale).parse(toParse, z) ? z : defaultValue.clone();
     }
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.Precision;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compact little-endian binary format of a {@link PointCloud} for machine consumers.
+ *
+ * <pre>
+ * header (16 bytes)
+ *     magic      4 bytes "MLSP"
+ *     version    u8      1
+ *     encoding   u8      0: raw, 1: delta + varint
+ *     precision  u8      4: float32, 8: float64
+ *     reserved   u8      0
+ *     count      u64     number of points
+ * raw record (12 or 20 bytes)
+ *     re, im     float32 or float64
+ *     tag        u32     depth &lt;&lt; 8 | id
+ * delta record (3 varints)
+ *     zigzag(bits(re) - bits(re of previous point))
+ *     zigzag(bits(im) - bits(im of previous point))
+ *     zigzag(tag - tag of previous point)
+ * </pre>
+ *
+ * <p>{@code bits} is the IEEE 754 representation as integer of the precision's width, the previous point of the
+ * first one is 0. As neighbouring points of a preimage tree are close to each other, their representations share
+ * most of the leading bits and the deltas are short. Both encodings are lossless. Varints are little-endian base 128
+ * as in protocol buffers.</p>
+ */
+public final class PointCloudFormat {
+
+    public static final String RAW_MEDIA_TYPE = "application/x-mls-points";
+    public static final String DELTA_MEDIA_TYPE = "application/x-mls-points-delta";
+
+    private static final int MAGIC = 'M' | 'L' << 8 | 'S' << 16 | 'P' << 24;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // longest record: three varints of 64 bits
+    private static final int MAX_RECORD = 30;
+
+    private PointCloudFormat() {
+    }
+
+    /**
+     * Writes the point cloud in its precision.
+     *
+     * @param cloud The points.
+     * @param delta {@code true} for the delta encoding, {@code false} for raw records.
+     * @param out The stream to write to, it isn't closed.
+     * @return the number of bytes written.
+     * @throws IOException if writing fails.
+     */
+    public static long write(PointCloud cloud, boolean delta, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        boolean single = cloud.precision() == Precision.FLOAT;
+        long written = 0;
+
+        buffer.putInt(MAGIC)
+              .put((byte) VERSION)
+              .put((byte) (delta ? 1 : 0))
+              .put((byte) (single ? 4 : 8))
+              .put((byte) 0)
+              .putLong(cloud.count());
+
+        long re0 = 0;
+        long im0 = 0;
+        int tag0 = 0;
+
+        // the rotations of a symmetric point cloud follow their point
+        for (int i = 0; i < cloud.size(); i++) {
+            for (int r = 0; r < cloud.rotations(i); r++) {
+                if (buffer.remaining() < MAX_RECORD) {
+                    written += flush(buffer, channel);
+                }
+
+                int tag = cloud.depth(i) << 8 | cloud.id(i, r);
+
+                if (!delta) {
+                    if (single) {
+                        buffer.putFloat((float) cloud.re(i, r)).putFloat((float) cloud.im(i, r));
+                    }
+                    else {
+                        buffer.putDouble(cloud.re(i, r)).putDouble(cloud.im(i, r));
+                    }
+
+                    buffer.putInt(tag);
+                }
+                else {
+                    long re = bits(cloud.re(i, r), single);
+                    long im = bits(cloud.im(i, r), single);
+
+                    putVarint(buffer, zigzag(re - re0));
+                    putVarint(buffer, zigzag(im - im0));
+                    putVarint(buffer, zigzag(tag - tag0));
+
+                    re0 = re;
+                    im0 = im;
+                    tag0 = tag;
+                }
+            }
+        }
+
+        written += flush(buffer, channel);
+        out.flush();
+
+        return written;
+    }
+
+    /**
+     * Reads a point cloud written by {@link #write(PointCloud, boolean, OutputStream)}.
+     *
+     * @param in The stream to read from, it isn't closed.
+     * @return the points.
+     * @throws IOException if reading fails or the data isn't a point cloud.
+     */
+    public static PointCloud read(InputStream in) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+
+        fill(buffer, channel, 16);
+        if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            throw new IOException("Not a point cloud of version " + VERSION + ".");
+        }
+
+        boolean delta = buffer.get() == 1;
+        boolean single = buffer.get() == 4;
+        buffer.get();
+        long count = buffer.getLong();
+
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Illegal number of points: " + count);
+        }
+
+        PointCloud cloud = PointCloud.create(single ? Precision.FLOAT : Precision.DOUBLE, (int) count);
+        long re = 0;
+        long im = 0;
+        int tag = 0;
+
+        for (long i = 0; i < count; i++) {
+            if (!delta) {
+                fill(buffer, channel, single ? 12 : 20);
+                re = single ? Float.floatToRawIntBits(buffer.getFloat()) : Double.doubleToRawLongBits(buffer.getDouble());
+                im = single ? Float.floatToRawIntBits(buffer.getFloat()) : Double.doubleToRawLongBits(buffer.getDouble());
+                tag = buffer.getInt();
+            }
+            else {
+                re += unzigzag(getVarint(buffer, channel));
+                im += unzigzag(getVarint(buffer, channel));
+                tag += (int) unzigzag(getVarint(buffer, channel));
+            }
+
+            cloud.add(value(re, single), value(im, single), tag >>> 8, tag & 255);
+        }
+
+        return cloud;
+    }
+
+    private static long bits(double value, boolean single) {
+        return single ? Float.floatToRawIntBits((float) value) : Double.doubleToRawLongBits(value);
+    }
+
+    private static double value(long bits, boolean single) {
+        return single ? Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+    }
+
+    private static long zigzag(long v) {
+        return v << 1 ^ v >> 63;
+    }
+
+    private static long unzigzag(long v) {
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    private static void putVarint(ByteBuffer buffer, long v) {
+        while ((v & ~0x7fL) != 0) {
+            buffer.put((byte) (v & 0x7f | 0x80));
+            v >>>= 7;
+        }
+
+        buffer.put((byte) v);
+    }
+
+    private static long getVarint(ByteBuffer buffer, ReadableByteChannel channel) throws IOException {
+        long v = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                fill(buffer, channel, 1);
+            }
+
+            byte b = buffer.get();
+            v |= (long) (b & 0x7f) << shift;
+
+            if (b >= 0) {
+                return v;
+            }
+        }
+
+        throw new IOException("Malformed varint.");
+    }
+
+    private static int flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        int n = buffer.remaining();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+
+        return n;
+    }
+
+    // makes at least n bytes available
+    private static void fill(ByteBuffer buffer, ReadableByteChannel channel, int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return;
+        }
+
+        buffer.compact();
+
+        while (buffer.position() < n) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of point cloud.");
+            }
+        }
+
+        buffer.flip();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import de.muellerlund.math.complex.MutableComplex;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Canonical binary form of a request: its parsed values packed into longs, so requests spelled differently but with
+ * equal values get equal keys. Caches and the coalescing of requests key on it, entity tags are hashes of it.
+ *
+ * <p>Every kind of request starts with its name and appends its values in a fixed order, values of variable count
+ * are preceded by their count. Doubles keep their bits, so {@code -0.0} and {@code 0.0} differ.</p>
+ */
+public final class RequestKey {
+
+    private final long[] words;
+    private final int hash;
+
+    private RequestKey(long[] words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * Starts the key of a kind of request.
+     *
+     * @param kind The name of the kind, e.g. {@code "escape"}.
+     * @return the builder.
+     */
+    public static Builder builder(String kind) {
+        return new Builder(new long[8], 0).add(kind);
+    }
+
+    /**
+     * Starts a key with all values of this one, e.g. the key of an image with the key of its geometry.
+     *
+     * @return the builder.
+     */
+    public Builder extend() {
+        return new Builder(Arrays.copyOf(words, words.length + 8), words.length);
+    }
+
+    /**
+     * Returns the key as bytes, the words in big-endian order.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * words.length);
+        buffer.asLongBuffer().put(words);
+
+        return buffer.array();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RequestKey key && hash == key.hash && Arrays.equals(words, key.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (long word : words) {
+            sb.append(sb.isEmpty() ? "" : ":").append(Long.toHexString(word));
+        }
+
+        return sb.toString();
+    }
+
+    public static final class Builder {
+        private long[] words;
+        private int size;
+
+        private Builder(long[] words, int size) {
+            this.words = words;
+            this.size = size;
+        }
+
+        public Builder add(long value) {
+            if (size == words.length) {
+                words = Arrays.copyOf(words, 2 * size);
+            }
+
+            words[size++] = value;
+
+            return this;
+        }
+
+        /**
+         * Appends the bits of a double, all NaNs are the same.
+         */
+        public Builder add(double value) {
+            return add(Double.doubleToLongBits(value));
+        }
+
+        public Builder add(MutableComplex z) {
+            return add(z.real()).add(z.imag());
+        }
+
+        /**
+         * Appends the length of a string and its characters, four per word.
+         */
+        public Builder add(String s) {
+            add((long) s.length());
+
+            for (int i = 0; i < s.length(); i += 4) {
+                long word = 0;
+                for (int k = i; k < Math.min(i + 4, s.length()); k++) {
+                    word = word << 16 | s.charAt(k);
+                }
+
+                add(word);
+            }
+
+            return this;
+        }
+
+        /**
+         * Appends the name of a constant, so keys don't depend on the order of the constants.
+         */
+        public Builder add(Enum<?> constant) {
+            return add(constant.name());
+        }
+
+        public RequestKey build() {
+            return new RequestKey(Arrays.copyOf(words, size));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AberthSolverTest {
+    @Test
+    public void testDeg4All() {
+        List<MutableComplex> givenZeros = Arrays.asList(
+                new MutableComplex(3, -0.5),
+                new MutableComplex(-2, 1),
+                new MutableComplex(0, 2),
+                new MutableComplex(1, 1)
+        );
+        ComplexPolynomial p = ComplexPolynomial.byZeros(givenZeros);
+        List<MutableComplex> zeros = AberthSolver.solveAll(p, 1e-20, 500);
+        assertThat(zeros).hasSize(4);
+        ComplexTestUtil.assertContains(zeros, Offset.offset(1e-7), givenZeros);
+    }
+
+    @Test
+    public void testMultipleZero() {
+        List<MutableComplex> givenZeros = Arrays.asList(
+                new MutableComplex(1),
+                new MutableComplex(1),
+                new MutableComplex(-1, 2)
+        );
+        ComplexPolynomial p = ComplexPolynomial.byZeros(givenZeros);
+        List<MutableComplex> zeros = AberthSolver.solveAll(p, 1e-15, 500);
+        assertThat(zeros).hasSize(3);
+        ComplexTestUtil.assertContains(zeros, Offset.offset(1e-4), givenZeros);
+    }
+
+    @Test
+    public void testTelemetry() {
+        ComplexPolynomial p = ComplexPolynomial.byZeros(Arrays.asList(
+                new MutableComplex(3, -0.5), new MutableComplex(-2, 1), new MutableComplex(0, 2)));
+        AberthSolver.Result result = AberthSolver.solve(p, 1e-20, 500);
+
+        assertThat(result.zeros()).hasSize(3);
+        assertThat(result.iterations()).isBetween(1, 100);
+
+        // p and p' for every pending approximation, the converged ones only p once more
+        assertThat(result.evaluations()).isBetween(2 * 3, 2 * 3 * result.iterations());
+    }
+}
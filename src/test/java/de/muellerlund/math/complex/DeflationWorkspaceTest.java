@@ -0,0 +1,261 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DeflationWorkspaceTest {
+    @Test
+    public void testDeg4All() {
+        List<MutableComplex> givenZeros = Arrays.asList(
+                new MutableComplex(3, -0.5),
+                new MutableComplex(-2, 1),
+                new MutableComplex(0, 2),
+                new MutableComplex(1, 1)
+        );
+        DeflationWorkspace workspace = new DeflationWorkspace();
+        List<Zero> zeros = solveAll(workspace, ComplexPolynomial.byZeros(givenZeros), MutableComplex.zero());
+        assertThat(zeros).hasSize(4);
+
+        ComplexTestUtil.assertContains(values(zeros), Offset.offset(1e-5), givenZeros);
+    }
+
+    @Test
+    public void testMultipleZeros() {
+        List<MutableComplex> givenZeros = Arrays.asList(
+                new MutableComplex(3, -0.5),
+                new MutableComplex(-2, 1),
+                new MutableComplex(0, 2),
+                new MutableComplex(0, 2)
+        );
+        DeflationWorkspace workspace = new DeflationWorkspace();
+        List<Zero> zeros = solveAll(workspace, ComplexPolynomial.byZeros(givenZeros), MutableComplex.zero());
+        assertThat(zeros).hasSize(3);
+
+        ComplexTestUtil.assertContains(values(zeros), Offset.offset(1e-5), givenZeros);
+        assertThat(zeros.stream().mapToInt(Zero::quantity).sum()).isEqualTo(4);
+    }
+
+    @Test
+    public void testShiftMatchesNewtonSolver() {
+        // a z³ + b z + c - s with a start value where plain Newton's method cycles
+        ComplexPolynomial p = new ComplexPolynomial(new MutableComplex(1, 0.5),
+                                                    MutableComplex.zero(),
+                                                    new MutableComplex(-0.5, 0.1),
+                                                    new MutableComplex(0.3));
+        DeflationWorkspace workspace = new DeflationWorkspace();
+
+        for (MutableComplex s : ComplexTestUtil.someSmallNumbers()) {
+            ComplexPolynomial q = p.clone();
+            q.move(s.clone().neg());
+
+            List<Zero> zeros = solveAll(workspace, p, s);
+            List<Zero> expected = NewtonSolver.solveAll(q, null, 1e-15);
+
+            assertThat(zeros).hasSameSizeAs(expected);
+            ComplexTestUtil.assertContains(values(zeros), Offset.offset(1e-5), values(expected));
+        }
+    }
+
+    @Test
+    public void testNoAllocations() {
+        ComplexPolynomial p = ComplexPolynomial.byZeros(new MutableComplex(3, -0.5),
+                                                        new MutableComplex(-2, 1),
+                                                        new MutableComplex(0, 2),
+                                                        new MutableComplex(1, 1),
+                                                        new MutableComplex(-1, -1));
+        double[] re = new double[6];
+        double[] im = new double[6];
+        for (int k = 0; k <= 5; k++) {
+            re[k] = p.get(k).real();
+            im[k] = p.get(k).imag();
+        }
+
+        DeflationWorkspace workspace = new DeflationWorkspace();
+        workspace.solveAll(re, im, 5, 0.1, 0.2, 1e-15, 100, null);
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+
+        long before = bean.getThreadAllocatedBytes(id);
+        int n = 0;
+        for (int i = 0; i < 1000; i++) {
+            n += workspace.solveAll(re, im, 5, 0.1 * (i % 7), 0.2, 1e-15, 100, null);
+        }
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+
+        assertThat(n).isEqualTo(5000);
+        // allow for a little noise of the measurement itself
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    @Test
+    public void testCubicMethods() {
+        List<MutableComplex> givenZeros = Arrays.asList(
+                new MutableComplex(3, -0.5),
+                new MutableComplex(-2, 1),
+                new MutableComplex(0, 2),
+                new MutableComplex(1, 1),
+                new MutableComplex(-1, -1)
+        );
+        ComplexPolynomial p = ComplexPolynomial.byZeros(givenZeros);
+
+        for (RootMethod method : RootMethod.values()) {
+            DeflationWorkspace workspace = new DeflationWorkspace();
+            List<Zero> zeros = solveAll(workspace, p, MutableComplex.zero(), method, null);
+            assertThat(zeros).as(method.name()).hasSize(5);
+            ComplexTestUtil.assertContains(values(zeros), Offset.offset(1e-5), givenZeros);
+        }
+    }
+
+    @Test
+    public void testLaguerreNeedsFewerEvaluations() {
+        // the preimages of z³ + (-0.5 + 0.1i) z + 0.3 for a couple of points
+        ComplexPolynomial p = new ComplexPolynomial(MutableComplex.one(),
+                                                    MutableComplex.zero(),
+                                                    new MutableComplex(-0.5, 0.1),
+                                                    new MutableComplex(0.3));
+        long[] evaluations = new long[RootMethod.values().length];
+
+        for (RootMethod method : RootMethod.values()) {
+            DeflationWorkspace workspace = new DeflationWorkspace();
+            for (MutableComplex s : ComplexTestUtil.someSmallNumbers()) {
+                List<Zero> zeros = solveAll(workspace, p, s, method,
+                                            (iterations, n, residual, escalated) -> evaluations[method.ordinal()] += n);
+                assertThat(zeros.stream().mapToInt(Zero::quantity).sum()).isEqualTo(3);
+            }
+        }
+
+        assertThat(evaluations[RootMethod.LAGUERRE.ordinal()]).isLessThan(evaluations[RootMethod.NEWTON.ordinal()]);
+        assertThat(evaluations[RootMethod.HALLEY.ordinal()]).isLessThan(evaluations[RootMethod.NEWTON.ordinal()]);
+    }
+
+    @Test
+    public void testSeeds() {
+        // the preimages of z^5 - 0.5 z² + (0.1 + 0.3i) z + 0.3 for a slowly moving point
+        ComplexPolynomial p = new ComplexPolynomial(MutableComplex.one(), MutableComplex.zero(),
+                                                    MutableComplex.zero(), new MutableComplex(-0.5),
+                                                    new MutableComplex(0.1, 0.3), new MutableComplex(0.3));
+        double[] re = new double[6];
+        double[] im = new double[6];
+        for (int k = 0; k <= 5; k++) {
+            re[k] = p.get(k).real();
+            im[k] = p.get(k).imag();
+        }
+
+        DeflationWorkspace workspace = new DeflationWorkspace();
+        int[] evaluations = new int[2];
+        double[] seedRe = new double[5];
+        double[] seedIm = new double[5];
+        workspace.solveAll(re, im, 5, 0.2, 0.1, 1e-15, 100, RootMethod.LAGUERRE, null);
+
+        for (int step = 1; step <= 20; step++) {
+            for (int j = 0; j < 5; j++) {
+                seedRe[j] = workspace.re(j);
+                seedIm[j] = workspace.im(j);
+            }
+
+            double s = 0.2 + 0.01 * step;
+            workspace.solveAll(re, im, 5, s, 0.1, 1e-15, 100, RootMethod.LAGUERRE, (i, n, r, e) -> evaluations[0] += n);
+            List<Zero> cold = solveAll(workspace, p, new MutableComplex(s, 0.1), RootMethod.LAGUERRE, null);
+            int count = workspace.solveAll(re, im, 5, s, 0.1, 1e-15, 100, RootMethod.LAGUERRE,
+                                           (i, n, r, e) -> evaluations[1] += n, seedRe, seedIm, 0);
+            assertThat(count).isEqualTo(5);
+
+            // each zero follows its seed and all zeros are found
+            List<MutableComplex> seeded = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                assertThat(Math.hypot(workspace.re(j) - seedRe[j], workspace.im(j) - seedIm[j])).isLessThan(0.05);
+                seeded.add(new MutableComplex(workspace.re(j), workspace.im(j)));
+            }
+
+            ComplexTestUtil.assertContains(seeded, Offset.offset(1e-6), values(cold));
+        }
+
+        assertThat(evaluations[1]).isLessThan(evaluations[0]);
+    }
+
+    @Test
+    public void testEscalation() {
+        // Newton's method started at 0 doesn't converge for this one
+        MutableComplex z = new MutableComplex(-0.44395200233187704, 0.7689474241607477);
+        ComplexPolynomial p = new ComplexPolynomial(MutableComplex.one(),
+                                                    MutableComplex.zero(),
+                                                    MutableComplex.zero(),
+                                                    new MutableComplex(0.3).sub(z));
+        List<Integer> iterations = new ArrayList<>();
+        List<Zero> zeros = solveAll(new DeflationWorkspace(), p, MutableComplex.zero(), RootMethod.NEWTON,
+                                    (i, n, residual, escalated) -> {
+                                        if (escalated) {
+                                            iterations.add(i);
+                                        }
+                                    });
+        assertThat(zeros.stream().mapToInt(Zero::quantity).sum()).isEqualTo(3);
+        assertThat(iterations).isNotEmpty();
+
+        // the Newton steps and the actual Aberth steps, far fewer than their budget
+        for (int i : iterations) {
+            assertThat(i).isBetween(101, 200);
+        }
+    }
+
+    private static List<Zero> solveAll(DeflationWorkspace workspace, ComplexPolynomial p, MutableComplex s) {
+        return solveAll(workspace, p, s, RootMethod.NEWTON, null);
+    }
+
+    private static List<Zero> solveAll(DeflationWorkspace workspace, ComplexPolynomial p, MutableComplex s,
+                                       RootMethod method, NewtonSolver.Listener listener) {
+        int n = p.degree();
+        double[] re = new double[n + 1];
+        double[] im = new double[n + 1];
+
+        for (int k = 0; k <= n; k++) {
+            re[k] = p.get(k).real();
+            im[k] = p.get(k).imag();
+        }
+
+        int count = workspace.solveAll(re, im, n, s.real(), s.imag(), 1e-15, 100, method, listener);
+        List<Zero> zeros = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            zeros.add(new Zero(new MutableComplex(workspace.re(i), workspace.im(i)), workspace.quantity(i)));
+        }
+
+        return zeros;
+    }
+
+    private static List<MutableComplex> values(List<Zero> zeros) {
+        List<MutableComplex> values = new ArrayList<>();
+
+        for (Zero zero : zeros) {
+            values.add(zero.value());
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.math.complex;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class DoubleDoubleComplexTest {
+    @Test
+    public void testParseKeepsDigitsBeyondDouble() {
+        DoubleDoubleComplex z = DoubleDoubleComplex.parse("1.0000000000000000000000000003", "-0.25");
+        z.sub(new DoubleDoubleComplex(1.0, -0.25));
+
+        assertThat(z.real()).isCloseTo(3e-28, offset(1e-40));
+        assertThat(z.imag()).isZero();
+    }
+
+    @Test
+    public void testSqrOfTinyDifference() {
+        // (1 + ε)² - 1 = 2ε + ε², invisible in double precision
+        DoubleDoubleComplex z = DoubleDoubleComplex.parse("1.00000000000000000001", "0");
+        z.sqr().sub(new DoubleDoubleComplex(1.0, 0.0));
+
+        assertThat(z.real()).isCloseTo(2e-20, offset(1e-33));
+        assertThat(z.imag()).isZero();
+    }
+
+    @Test
+    public void testMultMatchesBigDecimal() {
+        String ar = "0.3333333333333333333333333333333";
+        String ai = "-1.4142135623730950488016887242097";
+        String br = "2.7182818284590452353602874713527";
+        String bi = "0.5772156649015328606065120900824";
+
+        DoubleDoubleComplex z = DoubleDoubleComplex.parse(ar, ai).mult(DoubleDoubleComplex.parse(br, bi));
+
+        MathContext mc = MathContext.DECIMAL128;
+        BigDecimal re = new BigDecimal(ar).multiply(new BigDecimal(br), mc)
+                                          .subtract(new BigDecimal(ai).multiply(new BigDecimal(bi), mc), mc);
+        BigDecimal im = new BigDecimal(ar).multiply(new BigDecimal(bi), mc)
+                                          .add(new BigDecimal(ai).multiply(new BigDecimal(br), mc), mc);
+
+        assertThat(exact(z.realHi(), z.realLo()).subtract(re).abs().doubleValue()).isLessThan(1e-30);
+        assertThat(exact(z.imagHi(), z.imagLo()).subtract(im).abs().doubleValue()).isLessThan(1e-30);
+    }
+
+    @Test
+    public void testSqrMatchesMult() {
+        DoubleDoubleComplex z = DoubleDoubleComplex.parse("-0.7436438870371587047521915061147",
+                                                          "0.1318259042053624243688393819466");
+        DoubleDoubleComplex w = z.clone().mult(z);
+        z.sqr();
+
+        assertThat(z.clone().sub(w).norm()).isLessThan(1e-62);
+    }
+
+    @Test
+    public void testAddDouble() {
+        DoubleDoubleComplex z = new DoubleDoubleComplex(1.0, 1.0).add(1e-25, -1e-30);
+        z.sub(new DoubleDoubleComplex(1.0, 1.0));
+
+        assertThat(z.real()).isEqualTo(1e-25);
+        assertThat(z.imag()).isEqualTo(-1e-30);
+    }
+
+    private static BigDecimal exact(double hi, double lo) {
+        return new BigDecimal(hi).add(new BigDecimal(lo));
+    }
+}
@@ -20,6 +20,7 @@ package de.muellerlund.math.complex;
 import org.assertj.core.data.Offset;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -134,6 +135,59 @@ public class NewtonSolverTest {
         assertThat(zeros).hasSize(3);
     }
 
+    @Test
+    public void testSquareNotNormalized() {
+        List<MutableComplex> givenZeros = Arrays.asList(
+                new MutableComplex(1, 1),
+                new MutableComplex(-2, 0.5)
+        );
+        ComplexPolynomial p = ComplexPolynomial.byZeros(givenZeros).multiply(new ComplexPolynomial(new MutableComplex(0, 3)));
+        List<Zero> zeros = NewtonSolver.solveAll(p, null, 1e-15);
+        assertThat(zeros).hasSize(2);
+
+        List<MutableComplex> solutions = zeros.stream().map(Zero::value).collect(Collectors.toList());
+        ComplexTestUtil.assertContains(solutions, Offset.offset(1e-5), givenZeros);
+    }
+
+    @Test
+    public void testTelemetry() {
+        ComplexPolynomial p = new ComplexPolynomial(MutableComplex.one(), MutableComplex.zero(), new MutableComplex(-2));
+        SolverResult result = NewtonSolver.solve(p, MutableComplex.one(), 1e-15, 100);
+
+        ComplexTestUtil.assertCloseTo(result.zero().value(), new MutableComplex(Math.sqrt(2)), Offset.offset(1e-7));
+        assertThat(result.iterations()).isBetween(1, 10);
+        assertThat(result.evaluations()).isGreaterThan(result.iterations());
+        assertThat(result.residual()).isLessThan(1e-15);
+        assertThat(result.escalated()).isFalse();
+    }
+
+    @Test
+    public void testEscalation() {
+        // Newton's method started at 0 doesn't converge for this one
+        MutableComplex z = new MutableComplex(-0.44395200233187704, 0.7689474241607477);
+        ComplexPolynomial p = new ComplexPolynomial(MutableComplex.one(),
+                                                    MutableComplex.zero(),
+                                                    MutableComplex.zero(),
+                                                    new MutableComplex(0.3).sub(z));
+
+        SolverResult result = NewtonSolver.solve(p, MutableComplex.zero(), 1e-15, 100);
+        assertThat(result.escalated()).isTrue();
+        // the Newton steps and the actual Aberth steps, far fewer than their budget
+        assertThat(result.iterations()).isBetween(101, 200);
+        assertThat(result.evaluations()).isLessThan(2 * 500 * 3);
+        assertThat(p.apply(result.zero().value()).norm()).isLessThan(1e-12);
+
+        List<Boolean> escalations = new ArrayList<>();
+        List<Zero> zeros = NewtonSolver.solveAll(p, null, 1e-15, 100,
+                                                 (iterations, evaluations, residual, escalated) -> escalations.add(escalated));
+        assertThat(zeros).hasSize(3);
+        assertThat(escalations).contains(true);
+
+        for (Zero zero : zeros) {
+            assertThat(p.apply(zero.value()).norm()).isLessThan(1e-12);
+        }
+    }
+
     private static Zero zeroByValue(Iterable<Zero> zeros, MutableComplex value, double eps2) {
         for (Zero zero : zeros) {
             if (zero.value().clone().sub(value).norm() < eps2) {
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.ms.fractalmusic.calculation.fractals.PolynomialFractal;
+import de.muellerlund.ms.fractalmusic.calculation.fractals.SquareFractal;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class CalculatorTest {
+    @Test
+    public void testPointCloudMatchesList() {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+
+        List<ExtendedComplex> list = Calculator.calculate(fractal, z0, 12);
+        PointCloud doubles = Calculator.calculate(fractal, z0, 12, Precision.DOUBLE);
+        PointCloud floats = Calculator.calculate(fractal, z0, 12, Precision.FLOAT);
+
+        assertThat(doubles.size()).isEqualTo(list.size());
+        assertThat(floats.size()).isEqualTo(list.size());
+
+        for (int i = 0; i < list.size(); i++) {
+            ExtendedComplex ez = list.get(i);
+
+            assertThat(doubles.re(i)).isEqualTo(ez.number().getReal());
+            assertThat(doubles.im(i)).isEqualTo(ez.number().getImaginary());
+            assertThat(doubles.depth(i)).isEqualTo(ez.depth());
+            assertThat(doubles.id(i)).isEqualTo(ez.id());
+
+            // the float kernel picks the same branches
+            assertThat(floats.re(i)).isCloseTo(ez.number().getReal(), offset(1e-5));
+            assertThat(floats.im(i)).isCloseTo(ez.number().getImaginary(), offset(1e-5));
+            assertThat(floats.depth(i)).isEqualTo(ez.depth());
+            assertThat(floats.id(i)).isEqualTo(ez.id());
+        }
+    }
+
+    @Test
+    public void testFloatKernelOnNegativeRealAxis() {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(MutableComplex.zero());
+        float[] w = new float[4];
+
+        fractal.preImages(-4.0f, 0.0f, w);
+        MutableComplex expected = new MutableComplex(-4.0, 0.0).sqrt();
+
+        assertThat((double) w[0]).isEqualTo(expected.real());
+        assertThat((double) w[1]).isEqualTo(expected.imag());
+    }
+
+    @Test
+    public void testPointCloudGrows() {
+        PointCloud cloud = PointCloud.create(Precision.FLOAT, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            cloud.add(i, -i, i, i & 255);
+        }
+
+        assertThat(cloud.size()).isEqualTo(1000);
+        assertThat(cloud.re(999)).isEqualTo(999.0);
+        assertThat(cloud.im(999)).isEqualTo(-999.0);
+        assertThat(cloud.depth(999)).isEqualTo(999);
+        assertThat(cloud.id(999)).isEqualTo(999 & 255);
+        assertThat(Precision.forWidth(800)).isEqualTo(Precision.FLOAT);
+        assertThat(Precision.forWidth(4096)).isEqualTo(Precision.DOUBLE);
+    }
+
+    @Test
+    public void testMappedPointCloud(@TempDir Path directory) {
+        try (PointCloud cloud = PointCloud.mapped(Precision.DOUBLE, directory)) {
+            // crosses a page boundary
+            for (int i = 0; i < (1 << 20) + 10; i++) {
+                cloud.add(i, -0.5 * i, i & 0xffff, i & 255);
+            }
+
+            int i = (1 << 20) + 3;
+            assertThat(cloud.size()).isEqualTo((1 << 20) + 10);
+            assertThat(cloud.precision()).isEqualTo(Precision.DOUBLE);
+            assertThat(cloud.re(i)).isEqualTo(i);
+            assertThat(cloud.im(i)).isEqualTo(-0.5 * i);
+            assertThat(cloud.depth(i)).isEqualTo(i & 0xffff);
+            assertThat(cloud.id(i)).isEqualTo(i & 255);
+
+            // the rest of the last page isn't part of the cloud
+            assertThatThrownBy(() -> cloud.re(cloud.size())).isInstanceOf(IndexOutOfBoundsException.class);
+            assertThatThrownBy(() -> cloud.im(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+
+            cloud.close();
+            assertThatThrownBy(() -> cloud.re(0)).isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> cloud.add(0.0, 0.0, 1, 0)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    public void testSharedPointCloud(@TempDir Path directory) throws IOException {
+        PointCloud cloud = PointCloud.mapped(Precision.FLOAT, directory);
+        cloud.add(0.5, 0.25, 1, 0);
+        cloud.retain();
+
+        cloud.close();
+        assertThat(cloud.re(0)).isEqualTo(0.5);
+
+        // the last reference deletes the file
+        cloud.close();
+        cloud.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+
+        assertThatThrownBy(() -> cloud.re(0)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(cloud::retain).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testSpilledTree(@TempDir Path directory) {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+
+        assertThatThrownBy(() -> Calculator.calculate(fractal, z0, 21, Precision.FLOAT))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Calculator.spills(fractal, 20)).isFalse();
+        assertThat(Calculator.spills(fractal, 21)).isTrue();
+
+        try (PointCloud spilled = Calculator.calculate(fractal, z0, 21, Precision.FLOAT, directory)) {
+            assertThat(spilled.size()).isEqualTo((1 << 21) - 1);
+
+            // the subtree of the first preimage is the tree of depth 20 rooted there
+            PointCloud heap = Calculator.calculate(fractal, new Complex(spilled.re(1), spilled.im(1)), 20,
+                                                   Precision.FLOAT);
+            for (int i = 0; i < heap.size(); i += 997) {
+                assertThat(spilled.re(i + 1)).isEqualTo(heap.re(i));
+                assertThat(spilled.im(i + 1)).isEqualTo(heap.im(i));
+                assertThat(spilled.depth(i + 1)).isEqualTo(heap.depth(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDeduplication() {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+
+        PointCloud all = Calculator.calculate(fractal, z0, 12, Precision.DOUBLE);
+        PointCloud fine = Calculator.calculate(fractal, z0, 12, Precision.DOUBLE, null, 1e-12);
+        assertThat(fine.size()).isEqualTo(all.size());
+
+        // far beyond the size limit without deduplication
+        PointCloud deep = Calculator.calculate(fractal, z0, 60, Precision.FLOAT, null, 1e-2);
+        assertThat(deep.size()).isBetween(all.size() / 4, 1 << 20);
+        assertThat(deep.depth(0)).isEqualTo(60);
+
+        assertThatThrownBy(() -> Calculator.calculate(fractal, z0, 12, Precision.DOUBLE, null, -1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testVisitedCells() {
+        VisitedCells cells = new VisitedCells(0.5);
+
+        assertThat(cells.visit(0.1, 0.1, 3)).isTrue();
+        assertThat(cells.visit(0.4, 0.2, 3)).isFalse();
+        assertThat(cells.visit(0.4, 0.2, 2)).isFalse();
+        assertThat(cells.visit(0.4, 0.2, 4)).isTrue();
+        assertThat(cells.visit(-0.1, 0.1, 1)).isTrue();
+
+        for (int i = 1; i < 10000; i++) {
+            assertThat(cells.visit(i, -i, 1)).isTrue();
+        }
+
+        assertThat(cells.size()).isEqualTo(10001);
+        assertThat(cells.visit(9999.25, -9999.0, 1)).isFalse();
+    }
+
+    @Test
+    public void testSymmetricSquareTree() {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+
+        for (Precision precision : Precision.values()) {
+            PointCloud all = Calculator.calculate(fractal, z0, 12, precision);
+            PointCloud symmetric = Calculator.calculate(fractal, z0, 12, precision, null, 0.0, true);
+
+            assertThat(symmetric.symmetry()).isEqualTo(2);
+            assertThat(symmetric.size()).isEqualTo(all.size() / 2 + 1);
+            assertThat(symmetric.count()).isEqualTo(all.size());
+
+            // negation is exact, so both trees consist of the same points
+            assertThat(points(symmetric)).isEqualTo(points(all));
+        }
+    }
+
+    @Test
+    public void testSymmetricPolynomialTree() {
+        // z^4 - 0.5 z^2 + c has a symmetry of order 2
+        MutableComplex c = new MutableComplex(0.1, 0.3);
+        PolynomialFractal fractal = new PolynomialFractal(MutableComplex.one(), MutableComplex.zero(),
+                                                          new MutableComplex(-0.5, 0.0), MutableComplex.zero(), c);
+        assertThat(fractal.symmetry()).isEqualTo(2);
+        assertThat(new PolynomialFractal(MutableComplex.one(), MutableComplex.zero(), MutableComplex.zero(),
+                                         MutableComplex.zero(), c).symmetry()).isEqualTo(4);
+        assertThat(new PolynomialFractal(MutableComplex.one(), MutableComplex.one(), c).symmetry()).isEqualTo(1);
+
+        Complex z0 = new Complex(1.0, 0.5);
+        PointCloud all = Calculator.calculate(fractal, z0, 5, Precision.DOUBLE);
+        PointCloud symmetric = Calculator.calculate(fractal, z0, 5, Precision.DOUBLE, null, 0.0, true);
+        assertThat(symmetric.count()).isEqualTo(all.size());
+
+        double[] re = new double[all.size()];
+        double[] im = new double[all.size()];
+        symmetric.forEach(new PointConsumer() {
+            int k;
+
+            @Override
+            public void accept(double x, double y, int depth, int id) {
+                re[k] = x;
+                im[k++] = y;
+            }
+        });
+
+        for (int i = 0; i < all.size(); i++) {
+            double nearest = Double.MAX_VALUE;
+            for (int k = 0; k < re.length; k++) {
+                nearest = Math.min(nearest, Math.hypot(re[k] - all.re(i), im[k] - all.im(i)));
+            }
+
+            assertThat(nearest).isLessThan(1e-6);
+        }
+    }
+
+    @Test
+    public void testBatchPreImages() {
+        SquareFractal square = new SquareFractal();
+        square.getC().assign(new MutableComplex(-0.12, 0.75));
+        PolynomialFractal cubic = new PolynomialFractal(MutableComplex.one(), MutableComplex.one(),
+                                                        MutableComplex.zero(), new MutableComplex(0.2, -0.4));
+        ComplexFractal adapted = new ComplexFractal() {
+            @Override
+            public int dimensions() {
+                return cubic.dimensions();
+            }
+
+            @Override
+            public List<MutableComplex> preImages(MutableComplex z) {
+                return cubic.preImages(z);
+            }
+        };
+
+        double[] re = {1.0, -0.5, 0.0, 3.0};
+        double[] im = {0.5, -2.0, 0.0, 0.0};
+
+        for (ComplexFractal fractal : List.of(square, cubic, adapted)) {
+            int n = fractal.dimensions();
+            double[] outRe = new double[re.length * n];
+            double[] outIm = new double[re.length * n];
+
+            assertThat(fractal.preImages(re, im, re.length, outRe, outIm)).isEqualTo(re.length * n);
+
+            for (int k = 0; k < re.length; k++) {
+                List<MutableComplex> expected = fractal.preImages(new MutableComplex(re[k], im[k]));
+                for (int j = 0; j < n; j++) {
+                    assertThat(outRe[k * n + j]).isEqualTo(expected.get(j).real());
+                    assertThat(outIm[k * n + j]).isEqualTo(expected.get(j).imag());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLevels() {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+
+        PointCloud levels = Calculator.calculateLevels(fractal, z0, 12, Precision.DOUBLE);
+
+        assertThat(points(levels)).isEqualTo(points(Calculator.calculate(fractal, z0, 12, Precision.DOUBLE)));
+        assertThat(levels.depth(levels.size() - 1)).isEqualTo(1);
+    }
+
+    @Test
+    public void testWarmStart() {
+        Complex z0 = new Complex(1.0, 0.5);
+        WarmStart warmStart = new WarmStart();
+        PointCloud previous = null;
+
+        // z³ - 0.3 z + c along a short path
+        for (int k = 0; k < 5; k++) {
+            MutableComplex c = new MutableComplex(-0.5 + 0.002 * k, 0.3);
+            PolynomialFractal fractal = new PolynomialFractal(MutableComplex.one(), MutableComplex.zero(),
+                                                              new MutableComplex(-0.3), c);
+            PointCloud warm = Calculator.calculateLevels(fractal, z0, 7, Precision.DOUBLE, warmStart);
+            PointCloud cold = Calculator.calculateLevels(fractal, z0, 7, Precision.DOUBLE);
+
+            assertThat(warm.size()).isEqualTo(cold.size());
+            for (int i = 1; i < warm.size(); i++) {
+                assertThat(warm.depth(i)).isEqualTo(cold.depth(i));
+
+                // the same level, maybe in another order
+                assertThat(nearestDistance(cold, warm.depth(i), warm.re(i), warm.im(i)))
+                        .as("point " + i).isLessThan(1e-6);
+
+                // each point moves only a little from frame to frame
+                if (previous != null) {
+                    assertThat(Math.hypot(warm.re(i) - previous.re(i), warm.im(i) - previous.im(i)))
+                            .isLessThan(0.1);
+                }
+            }
+
+            previous = warm;
+        }
+    }
+
+    private static double nearestDistance(PointCloud cloud, int depth, double re, double im) {
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < cloud.size(); i++) {
+            if (cloud.depth(i) == depth) {
+                min = Math.min(min, Math.hypot(cloud.re(i) - re, cloud.im(i) - im));
+            }
+        }
+
+        return min;
+    }
+
+    // the sorted points with depth and id
+    private static List<String> points(PointCloud cloud) {
+        List<String> points = new ArrayList<>();
+        cloud.forEach((re, im, depth, id) -> points.add(re + "," + im + "," + depth + "," + id));
+        Collections.sort(points);
+
+        return points;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation;
+
+import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.ms.fractalmusic.calculation.fractals.SquareFractal;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+public class ExtentTest {
+    @Test
+    public void testQuantiles() {
+        Extent extent = new Extent();
+        assertThat(extent.quantileRe(0.5)).isNaN();
+
+        // the histogram grows while the values do
+        for (int i = 0; i <= 1000; i++) {
+            extent.add(i * 1e-3, -i);
+        }
+
+        // two outliers
+        extent.add(1000.0, 0.0);
+        extent.add(-1000.0, 0.0);
+
+        assertThat(extent.count()).isEqualTo(1003);
+        assertThat(extent.minRe()).isEqualTo(-1000.0);
+        assertThat(extent.maxRe()).isEqualTo(1000.0);
+        assertThat(extent.minIm()).isEqualTo(-1000.0);
+        assertThat(extent.maxIm()).isEqualTo(0.0);
+
+        // a bin of [-1024, 1024) is 0.5 wide
+        assertThat(extent.quantileRe(0.01)).isLessThanOrEqualTo(0.01).isCloseTo(0.0, offset(0.5));
+        assertThat(extent.quantileRe(0.99)).isGreaterThanOrEqualTo(0.99).isCloseTo(1.0, offset(0.5));
+        assertThat(extent.quantileIm(0.01)).isLessThanOrEqualTo(-990.0).isCloseTo(-990.0, offset(1.0));
+        assertThat(extent.quantileIm(1.0)).isEqualTo(0.0);
+        assertThat(extent.quantileRe(0.0)).isEqualTo(-1000.0);
+    }
+
+    @Test
+    public void testZerosAndNonFinite() {
+        Extent extent = new Extent();
+        extent.add(0.0, 0.0);
+        extent.add(0.0, Double.NaN);
+        assertThat(extent.quantileRe(0.5)).isEqualTo(0.0);
+
+        extent.add(3.0, 1.0);
+        assertThat(extent.count()).isEqualTo(3);
+        assertThat(extent.quantileRe(0.25)).isEqualTo(0.0);
+        assertThat(extent.quantileRe(0.9)).isEqualTo(3.0);
+    }
+
+    @Test
+    public void testPointCloudExtent() {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+
+        for (boolean symmetric : new boolean[] {false, true}) {
+            PointCloud points = Calculator.calculate(fractal, z0, 12, Precision.DOUBLE, null, 0.0, symmetric);
+            double[] bounds = {Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+
+            points.forEach((re, im, depth, id) -> {
+                bounds[0] = Math.min(bounds[0], re);
+                bounds[1] = Math.max(bounds[1], re);
+                bounds[2] = Math.min(bounds[2], im);
+                bounds[3] = Math.max(bounds[3], im);
+            });
+
+            Extent extent = points.extent();
+            assertThat(extent.count()).isEqualTo(points.count());
+            assertThat(new double[] {extent.minRe(), extent.maxRe(), extent.minIm(), extent.maxIm()})
+                    .containsExactly(bounds);
+            assertThatThrownBy(() -> extent.quantileRe(0.5)).isInstanceOf(IllegalStateException.class);
+
+            Extent quantiles = points.quantiles();
+            assertThat(quantiles.count()).isEqualTo(points.count());
+            assertThat(quantiles.quantileRe(0.0)).isEqualTo(bounds[0]);
+            assertThat(quantiles.quantileIm(1.0)).isEqualTo(bounds[3]);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.DoubleDoubleComplex;
+import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.ms.fractalmusic.calculation.ParallelLoop;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class EscapeRendererTest {
+    // z² - 1, the basilica
+    private static final ComplexPolynomial BASILICA = new ComplexPolynomial(
+            MutableComplex.one(), MutableComplex.zero(), new MutableComplex(-1.0, 0.0));
+
+    @Test
+    public void testRadius() {
+        // the repelling fixed point (1 + √5) / 2 is the rightmost point of the basilica
+        assertThat(EscapeRenderer.radius(BASILICA)).isCloseTo(0.5 * (1.0 + Math.sqrt(5.0)), offset(1e-12));
+    }
+
+    @Test
+    public void testMatchesPerturbation() {
+        EscapeField direct = EscapeRenderer.render(BASILICA, 0.0, 0.0, 1.7, 64, 48, 300, ParallelLoop.SEQUENTIAL);
+        EscapeField perturbed = PerturbationRenderer.render(BASILICA, new DoubleDoubleComplex(), 1.7, 64, 48, 300);
+
+        int matches = 0;
+        for (int i = 0; i < direct.values().length; i++) {
+            if (Math.abs(direct.values()[i] - perturbed.values()[i]) < 1e-3) {
+                matches++;
+            }
+        }
+
+        // the interior contains the superattracting cycle 0 ↔ -1
+        assertThat(direct.get(32, 24)).isEqualTo(EscapeField.INTERIOR);
+        assertThat(matches).isGreaterThanOrEqualTo(direct.values().length * 99 / 100);
+    }
+
+    @Test
+    public void testCycleDetectionFindsInterior() {
+        // z² - 1 + 0.1i has an attracting cycle of period 2, its interior must not run into the iteration limit
+        ComplexPolynomial f = new ComplexPolynomial(
+                MutableComplex.one(), MutableComplex.zero(), new MutableComplex(-1.0, 0.1));
+        long start = System.nanoTime();
+        EscapeField field = EscapeRenderer.render(f, 0.0, 0.0, 1.5, 100, 100, EscapeField.MAX_ITERATIONS,
+                                                  ParallelLoop.SEQUENTIAL);
+        long elapsed = System.nanoTime() - start;
+
+        assertThat(field.get(50, 50)).isEqualTo(EscapeField.INTERIOR);
+        // 10000 pixels, thousands of them interior: without cycle detection about 10⁸ iterations
+        assertThat(elapsed).isLessThan(5_000_000_000L);
+    }
+
+    @Test
+    public void testParallelRows() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            ParallelLoop loop = (count, action) -> {
+                Future<?>[] futures = IntStream.range(0, count)
+                                               .mapToObj(i -> pool.submit(() -> action.accept(i)))
+                                               .toArray(Future[]::new);
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    }
+                    catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+
+            EscapeField sequential = EscapeRenderer.render(BASILICA, 0.1, 0.2, 1.0, 50, 40, 500,
+                                                           ParallelLoop.SEQUENTIAL);
+            EscapeField parallel = EscapeRenderer.render(BASILICA, 0.1, 0.2, 1.0, 50, 40, 500, loop);
+
+            assertThat(parallel.values()).containsExactly(sequential.values());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}
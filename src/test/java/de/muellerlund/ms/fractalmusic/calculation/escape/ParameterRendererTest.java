@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.ms.fractalmusic.calculation.ParallelLoop;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParameterRendererTest {
+    // z² + c, the constant is the parameter
+    private static final ComplexPolynomial QUADRATIC = new ComplexPolynomial(
+            MutableComplex.one(), MutableComplex.zero(), MutableComplex.zero());
+
+    @Test
+    public void testMandelbrot() {
+        assertThat(value(QUADRATIC, 0.0, 0.0)).isEqualTo(EscapeField.INTERIOR);
+        assertThat(value(QUADRATIC, -1.0, 0.0)).isEqualTo(EscapeField.INTERIOR);
+        assertThat(value(QUADRATIC, -0.12, 0.75)).isEqualTo(EscapeField.INTERIOR);
+
+        // right of the cusp at 1/4 and outside of the tip at -2
+        assertThat(value(QUADRATIC, 0.3, 0.0)).isGreaterThan(0.0f);
+        assertThat(value(QUADRATIC, -2.1, 0.0)).isGreaterThan(0.0f);
+        assertThat(value(QUADRATIC, 0.3, 0.0)).isGreaterThan(value(QUADRATIC, 0.5, 0.0));
+    }
+
+    @Test
+    public void testRadius() {
+        // the Mandelbrot set lies in the disc of radius 2
+        assertThat(ParameterRenderer.radius(QUADRATIC)).isBetween(2.0, 4.0);
+    }
+
+    @Test
+    public void testCubicSliceWithTwoCriticalPoints() {
+        // z³ - 0.75 z + c has the critical points ±1/2
+        ComplexPolynomial f = new ComplexPolynomial(
+                MutableComplex.one(), MutableComplex.zero(), new MutableComplex(-0.75, 0.0), MutableComplex.zero());
+
+        assertThat(value(f, 0.0, 0.0)).isEqualTo(EscapeField.INTERIOR);
+        assertThat(value(f, 3.0, 0.0)).isGreaterThan(0.0f);
+
+        // nothing beyond the radius is connected
+        double r = ParameterRenderer.radius(f);
+        assertThat(value(f, r * 1.01, 0.0)).isGreaterThan(0.0f);
+        assertThat(value(f, 0.0, -r * 1.01)).isGreaterThan(0.0f);
+    }
+
+    @Test
+    public void testRadiusOfHugeCoefficients() {
+        ComplexPolynomial infinite = new ComplexPolynomial(
+                MutableComplex.one(), new MutableComplex(Double.POSITIVE_INFINITY, 0.0), MutableComplex.zero());
+        assertThatThrownBy(() -> ParameterRenderer.radius(infinite)).isInstanceOf(IllegalArgumentException.class);
+
+        // finite, but the critical value overflows
+        ComplexPolynomial huge = new ComplexPolynomial(
+                MutableComplex.one(), new MutableComplex(1e300, 0.0), MutableComplex.zero());
+        assertThatThrownBy(() -> ParameterRenderer.radius(huge)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static float value(ComplexPolynomial f, double cr, double ci) {
+        return ParameterRenderer.render(f, cr, ci, 1e-9, 1, 1, 2000, ParallelLoop.SEQUENTIAL).get(0, 0);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.escape;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.DoubleDoubleComplex;
+import de.muellerlund.math.complex.MutableComplex;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PerturbationRendererTest {
+    // z² - 1, the basilica
+    private static final ComplexPolynomial BASILICA = new ComplexPolynomial(
+            MutableComplex.one(), MutableComplex.zero(), new MutableComplex(-1.0, 0.0));
+
+    // repelling fixed point of the basilica, (1 + √5) / 2
+    private static final String BETA = "1.6180339887498948482045868343656381";
+
+    @Test
+    public void testMatchesDirectIteration() {
+        int width = 80;
+        int height = 60;
+        double radius = 1.6;
+        EscapeField field = PerturbationRenderer.render(BASILICA, new DoubleDoubleComplex(), radius, width, height, 200);
+        EscapeMap map = new EscapeMap(BASILICA);
+
+        int matches = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double zr = (x + 0.5 - 0.5 * width) * 2.0 * radius / width;
+                double zi = -(y + 0.5 - 0.5 * height) * 2.0 * radius / width;
+                float expected = EscapeField.INTERIOR;
+
+                for (int i = 0; i < 200; i++) {
+                    double norm = zr * zr + zi * zi;
+                    if (norm > map.bailout2) {
+                        expected = map.smooth(i, norm);
+                        break;
+                    }
+
+                    double t = zr * zr - zi * zi - 1.0;
+                    zi = 2.0 * zr * zi;
+                    zr = t;
+                }
+
+                if (Math.abs(field.get(x, y) - expected) < 1e-3) {
+                    matches++;
+                }
+            }
+        }
+
+        assertThat(matches).isGreaterThanOrEqualTo(width * height * 99 / 100);
+    }
+
+    @Test
+    public void testDeepZoomIsSelfSimilar() {
+        // near the repelling fixed point β the map is z ↦ β + λ (z - β) with λ = f'(β) = 2β, so zooming out by λ
+        // takes exactly one iteration off every pixel
+        DoubleDoubleComplex center = DoubleDoubleComplex.parse(BETA, "0");
+        double radius = 1e-25;
+        double lambda = 1.0 + Math.sqrt(5.0);
+
+        EscapeField deep = PerturbationRenderer.render(BASILICA, center, radius, 64, 48, 1000);
+        EscapeField shallow = PerturbationRenderer.render(BASILICA, center, radius * lambda, 64, 48, 1000);
+
+        int escaped = 0;
+        int matches = 0;
+        for (int i = 0; i < deep.values().length; i++) {
+            if (deep.values()[i] != EscapeField.INTERIOR) {
+                escaped++;
+
+                if (Math.abs(deep.values()[i] - shallow.values()[i] - 1.0f) < 1e-2) {
+                    matches++;
+                }
+            }
+        }
+
+        assertThat(escaped).isBetween(100, deep.values().length - 100);
+        assertThat(matches).isGreaterThanOrEqualTo(escaped * 95 / 100);
+        assertThat(deep.glitches()).isZero();
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        ComplexPolynomial linear = new ComplexPolynomial(MutableComplex.one(), MutableComplex.one());
+
+        assertThatThrownBy(() -> PerturbationRenderer.render(linear, new DoubleDoubleComplex(), 1.0, 10, 10, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PerturbationRenderer.render(BASILICA, new DoubleDoubleComplex(), 0.0, 10, 10, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.calculation.fractals;
+
+import de.muellerlund.math.complex.ComplexPolynomial;
+import de.muellerlund.math.complex.MutableComplex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PolynomialFractalTest {
+    @Test
+    public void testMonomialDetection() {
+        MutableComplex c = new MutableComplex(0.1, -0.3);
+        MutableComplex zero = MutableComplex.zero();
+
+        assertThat(new PolynomialFractal(new MutableComplex(2.0, 1.0), zero, zero, c).isMonomial()).isTrue();
+        assertThat(new PolynomialFractal(MutableComplex.one(), zero, zero, zero, zero, c).isMonomial()).isTrue();
+        assertThat(new PolynomialFractal(MutableComplex.one(), zero, MutableComplex.one(), c).isMonomial()).isFalse();
+        assertThat(new PolynomialFractal(MutableComplex.one(), zero, zero, zero, c).preImageCost()).isLessThan(8.0);
+    }
+
+    @Test
+    public void testMonomialPreImages() {
+        MutableComplex a = new MutableComplex(2.0, 1.0);
+        MutableComplex c = new MutableComplex(0.1, -0.3);
+        MutableComplex zero = MutableComplex.zero();
+
+        for (int n = 2; n <= 5; n++) {
+            MutableComplex[] coefficients = new MutableComplex[n + 1];
+            coefficients[0] = a;
+            for (int k = 1; k < n; k++) {
+                coefficients[k] = zero;
+            }
+            coefficients[n] = c;
+
+            PolynomialFractal fractal = new PolynomialFractal(coefficients);
+            ComplexPolynomial p = new ComplexPolynomial(coefficients);
+            MutableComplex z = new MutableComplex(-0.7, 1.3);
+            List<MutableComplex> preImages = fractal.preImages(z);
+
+            assertThat(preImages).hasSize(n);
+
+            for (int j = 0; j < n; j++) {
+                MutableComplex w = preImages.get(j);
+                assertThat(p.apply(w).sub(z).abs()).isLessThan(1e-12);
+
+                // distinct roots, the first is the principal one
+                for (int k = 0; k < j; k++) {
+                    assertThat(w.clone().sub(preImages.get(k)).abs()).isGreaterThan(1e-3);
+                }
+            }
+
+            MutableComplex principal = fractal.fundamentalPreImages(z).get(0);
+            assertThat(principal.real()).isEqualTo(preImages.get(0).real());
+            assertThat(principal.imag()).isEqualTo(preImages.get(0).imag());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdmissionControlTest {
+    @Test
+    public void testBudget() {
+        AdmissionControl control = new AdmissionControl(100);
+
+        AdmissionControl.Permit p1 = control.acquire(60);
+        AdmissionControl.Permit p2 = control.acquire(40);
+        assertThat(control.getInFlight()).isEqualTo(100);
+
+        assertThatThrownBy(() -> control.acquire(1))
+                .isInstanceOf(TooBusyException.class)
+                .satisfies(e -> assertThat(((TooBusyException) e).getRetryAfter()).isBetween(1L, 60L));
+
+        p1.close();
+        p1.close(); // closing twice must not release twice
+        assertThat(control.getInFlight()).isEqualTo(40);
+
+        control.acquire(60).close();
+        p2.close();
+        assertThat(control.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOversizedRequestOnIdleNode() {
+        AdmissionControl control = new AdmissionControl(100);
+
+        try (AdmissionControl.Permit p = control.acquire(1000)) {
+            assertThat(p.getCost()).isEqualTo(1000);
+            assertThatThrownBy(() -> control.acquire(1)).isInstanceOf(TooBusyException.class);
+        }
+
+        assertThat(control.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void testHugeCosts() {
+        AdmissionControl control = new AdmissionControl(100);
+
+        // a saturated estimate is never admitted
+        assertThatThrownBy(() -> control.acquire(Long.MAX_VALUE)).isInstanceOf(IllegalArgumentException.class);
+
+        try (AdmissionControl.Permit p = control.acquire(10)) {
+            assertThatThrownBy(() -> control.acquire(Long.MAX_VALUE - 1)).isInstanceOf(TooBusyException.class);
+        }
+
+        // nor does an oversized one admit anything beside it
+        try (AdmissionControl.Permit p = control.acquire(Long.MAX_VALUE - 1)) {
+            assertThatThrownBy(() -> control.acquire(Long.MAX_VALUE - 1)).isInstanceOf(TooBusyException.class);
+        }
+
+        assertThat(control.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void testPoints() {
+        assertThat(CostEstimator.points(2, 1)).isEqualTo(1);
+        assertThat(CostEstimator.points(2, 10)).isEqualTo(1023);
+        assertThat(CostEstimator.points(3, 3)).isEqualTo(13);
+        assertThat(CostEstimator.points(10, 40)).isEqualTo(Long.MAX_VALUE);
+    }
+}
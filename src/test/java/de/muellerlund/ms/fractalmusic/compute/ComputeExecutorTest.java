@@ -0,0 +1,215 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ComputeExecutorTest {
+    @Test
+    public void testForEachVisitsEveryIndexOnce() {
+        ComputeExecutor executor = new ComputeExecutor(new AdmissionControl(100), 4, 16);
+
+        try {
+            AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+            executor.forEach(visits.length(), visits::incrementAndGet);
+
+            for (int i = 0; i < visits.length(); i++) {
+                assertThat(visits.get(i)).isEqualTo(1);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testNestedForEachOnBusyPool() throws Exception {
+        // every compute thread runs a task which uses the pool itself
+        ComputeExecutor executor = new ComputeExecutor(new AdmissionControl(100), 2, 16);
+
+        try {
+            var f1 = executor.submit(1, () -> sum(executor));
+            var f2 = executor.submit(1, () -> sum(executor));
+
+            assertThat(f1.get()).isEqualTo(4950);
+            assertThat(f2.get()).isEqualTo(4950);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testForEachPropagatesFailure() {
+        ComputeExecutor executor = new ComputeExecutor(new AdmissionControl(100), 4, 16);
+
+        try {
+            assertThatThrownBy(() -> executor.forEach(100, i -> {
+                if (i == 42) {
+                    throw new IllegalArgumentException("42");
+                }
+            })).isInstanceOf(IllegalArgumentException.class).hasMessage("42");
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueueCapacityUnderContention() throws Exception {
+        AdmissionControl control = new AdmissionControl(1000);
+        ComputeExecutor executor = new ComputeExecutor(control, 1, 4);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // the only compute thread is blocked, so nothing leaves the queue
+            executor.submit(1, () -> {
+                running.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            running.await();
+
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int k = 0; k < 16; k++) {
+                results.add(clients.submit(() -> {
+                    go.await();
+                    try {
+                        executor.submit(1, () -> null);
+                        return true;
+                    }
+                    catch (ResponseStatusException e) {
+                        assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                        return false;
+                    }
+                }));
+            }
+            go.countDown();
+
+            int accepted = 0;
+            for (Future<Boolean> result : results) {
+                accepted += result.get() ? 1 : 0;
+            }
+
+            assertThat(accepted).isEqualTo(4);
+            assertThat(control.getInFlight()).isEqualTo(5);
+        }
+        finally {
+            release.countDown();
+            clients.shutdownNow();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSubmitAllIsAdmittedOnce() throws Exception {
+        AdmissionControl control = new AdmissionControl(100);
+        ComputeExecutor executor = new ComputeExecutor(control, 2, 16);
+
+        try {
+            // together over budget, but admitted on an idle node
+            List<CompletableFuture<Integer>> futures = executor.submitAll(
+                    150, List.<Supplier<Integer>>of(() -> 1, () -> 2, () -> 3));
+
+            for (int k = 0; k < futures.size(); k++) {
+                assertThat(futures.get(k).get()).isEqualTo(k + 1);
+            }
+
+            assertThat(control.getInFlight()).isEqualTo(0);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSubmitAllRemovesQueuedTasksIfRejected() throws Exception {
+        AdmissionControl control = new AdmissionControl(1000);
+        ComputeExecutor executor = new ComputeExecutor(control, 1, 2);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        try {
+            CompletableFuture<Object> blocker = executor.submit(1, () -> {
+                running.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            running.await();
+
+            // only two of three fit into the queue
+            List<Supplier<Integer>> tasks = List.of(runs::incrementAndGet, runs::incrementAndGet,
+                                                    runs::incrementAndGet);
+            assertThatThrownBy(() -> executor.submitAll(30, tasks))
+                    .isInstanceOf(ResponseStatusException.class)
+                    .hasMessageContaining("queue is full");
+            assertThat(control.getInFlight()).isEqualTo(1);
+
+            release.countDown();
+            blocker.get();
+            executor.submit(1, () -> null).get();
+            assertThat(runs.get()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static int sum(ComputeExecutor executor) {
+        AtomicIntegerArray values = new AtomicIntegerArray(100);
+        executor.forEach(values.length(), i -> values.set(i, i));
+
+        int sum = 0;
+        for (int i = 0; i < values.length(); i++) {
+            sum += values.get(i);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.compute;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RequestCoalescerTest {
+    @Test
+    public void testCoalescing() {
+        RequestCoalescer<String, byte[]> coalescer = new RequestCoalescer<>();
+        AtomicInteger count = new AtomicInteger();
+        CompletableFuture<byte[]> computation = new CompletableFuture<>();
+
+        CompletableFuture<byte[]> f1 = coalescer.execute("a", () -> {
+            count.incrementAndGet();
+            return computation;
+        });
+        CompletableFuture<byte[]> f2 = coalescer.execute("a", () -> {
+            count.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        assertThat(count.get()).isEqualTo(1);
+        assertThat(coalescer.size()).isEqualTo(1);
+
+        byte[] bytes = {1, 2, 3};
+        computation.complete(bytes);
+
+        assertThat(f1.join()).isSameAs(bytes);
+        assertThat(f2.join()).isSameAs(bytes);
+        assertThat(coalescer.size()).isEqualTo(0);
+
+        // done, so the next one computes again
+        coalescer.execute("a", () -> {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture(bytes);
+        });
+        assertThat(count.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSharing() {
+        AtomicInteger shares = new AtomicInteger();
+        RequestCoalescer<String, byte[]> coalescer = new RequestCoalescer<>(hit -> {}, bytes -> {
+            // before any request gets the result
+            assertThat(bytes).hasSize(3);
+            shares.incrementAndGet();
+        });
+        CompletableFuture<byte[]> computation = new CompletableFuture<>();
+
+        CompletableFuture<byte[]> f1 = coalescer.execute("a", () -> computation);
+        CompletableFuture<byte[]> f2 = coalescer.execute("a", CompletableFuture::new);
+        CompletableFuture<byte[]> f3 = coalescer.execute("a", CompletableFuture::new);
+
+        assertThat(shares.get()).isEqualTo(0);
+        computation.complete(new byte[3]);
+
+        // once for every request beyond the first
+        assertThat(shares.get()).isEqualTo(2);
+        assertThat(f1.join()).isSameAs(f2.join()).isSameAs(f3.join());
+
+        coalescer.execute("b", () -> CompletableFuture.completedFuture(new byte[3]));
+        assertThat(shares.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSynchronousFailure() {
+        RequestCoalescer<String, byte[]> coalescer = new RequestCoalescer<>();
+
+        assertThatThrownBy(() -> coalescer.execute("a", () -> {
+            throw new TooBusyException("busy", 1);
+        })).isInstanceOf(TooBusyException.class);
+
+        assertThat(coalescer.size()).isEqualTo(0);
+    }
+}
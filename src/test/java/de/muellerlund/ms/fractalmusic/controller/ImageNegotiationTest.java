@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.controller;
+
+import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.ms.fractalmusic.util.ImageFormat;
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImageNegotiationTest {
+    @Test
+    public void testNegotiate() {
+        assertThat(ImageNegotiation.negotiate(null, null)).isEqualTo(ImageFormat.PNG);
+        assertThat(ImageNegotiation.negotiate(null, "*/*")).isEqualTo(ImageFormat.PNG);
+        assertThat(ImageNegotiation.negotiate(null, "image/bmp, image/*;q=0.5")).isEqualTo(ImageFormat.BMP);
+        assertThat(ImageNegotiation.negotiate(null, "image/png;q=0.5, image/qoi")).isEqualTo(ImageFormat.QOI);
+        assertThat(ImageNegotiation.negotiate("bmp", "image/qoi")).isEqualTo(ImageFormat.BMP);
+    }
+
+    @Test
+    public void testEtag() {
+        String etag = ImageNegotiation.etag(key(ImageFormat.PNG));
+
+        assertThat(etag).matches("\"[0-9a-f]{32}\"");
+        assertThat(ImageNegotiation.etag(key(ImageFormat.PNG))).isEqualTo(etag);
+        assertThat(ImageNegotiation.etag(key(ImageFormat.QOI))).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void testMatches() {
+        String etag = ImageNegotiation.etag(key(ImageFormat.PNG));
+
+        assertThat(ImageNegotiation.matches(null, etag)).isFalse();
+        assertThat(ImageNegotiation.matches(etag, etag)).isTrue();
+        assertThat(ImageNegotiation.matches("\"other\", W/" + etag, etag)).isTrue();
+        assertThat(ImageNegotiation.matches("*", etag)).isTrue();
+        assertThat(ImageNegotiation.matches("\"other\"", etag)).isFalse();
+        assertThat(ImageNegotiation.matches(etag.substring(1, etag.length() - 1), etag)).isFalse();
+    }
+
+    @Test
+    public void testResponses() {
+        String etag = ImageNegotiation.etag(key(ImageFormat.PNG));
+        ResponseEntity<byte[]> ok = ImageNegotiation.response(new byte[]{1}, ImageFormat.QOI, etag);
+        ResponseEntity<byte[]> notModified = ImageNegotiation.notModified(etag);
+
+        assertThat(ok.getHeaders().getContentType()).hasToString(ImageFormat.QOI_MEDIA_TYPE);
+        assertThat(ok.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(ok.getHeaders().getCacheControl()).contains("max-age=31536000");
+        assertThat(ok.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT);
+
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(notModified.getBody()).isNull();
+    }
+
+    @Test
+    public void testWeakEtag() {
+        String etag = ImageNegotiation.etag(key(ImageFormat.PNG));
+        String weak = ImageNegotiation.weakEtag(key(ImageFormat.PNG));
+        ResponseEntity<byte[]> ok = ImageNegotiation.response(new byte[]{1}, ImageFormat.PNG, weak);
+
+        assertThat(weak).isEqualTo("W/" + etag);
+        assertThat(ImageNegotiation.matches(weak, weak)).isTrue();
+        assertThat(ImageNegotiation.matches(etag, weak)).isTrue();
+        assertThat(ImageNegotiation.matches("\"other\"", weak)).isFalse();
+
+        // equivalent, but not byte by byte, so it isn't immutable
+        assertThat(ok.getHeaders().getETag()).isEqualTo(weak);
+        assertThat(ok.getHeaders().getCacheControl()).contains("max-age=86400").doesNotContain("immutable");
+        assertThat(ImageNegotiation.notModified(weak).getHeaders().getCacheControl()).doesNotContain("immutable");
+    }
+
+    private static RequestKey key(ImageFormat format) {
+        return RequestKey.builder("escape").add("square").add(10).add(new MutableComplex(-0.12, 0.75)).add(format)
+                .build();
+    }
+}
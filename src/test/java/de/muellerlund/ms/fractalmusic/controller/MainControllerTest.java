@@ -0,0 +1,227 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.controller;
+
+import de.muellerlund.ms.fractalmusic.compute.AdmissionControl;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MainControllerTest {
+    // small trees and images, the parameter sets differ in the constant
+    private static final String SET = "{\"type\": \"square\", \"imax\": \"8\", \"a0\": \"%s\", \"width\": \"64\"%s}";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    public void testBatchEntries() throws Exception {
+        String body = "[" + set("-0.12+0.75i", "") + ", " + set("-1", ", \"format\": \"bmp\"") + ", "
+                      + set("0.25", ", \"format\": \"qoi\"") + "]";
+
+        Map<String, ZipEntry> entries = new LinkedHashMap<>();
+        Map<String, byte[]> contents = unzip(batch(body), entries);
+
+        assertThat(contents.keySet()).containsExactly("000.png", "001.bmp", "002.qoi");
+
+        // compressed formats are stored with their size and CRC in the local header
+        for (String name : new String[] {"000.png", "002.qoi"}) {
+            ZipEntry entry = entries.get(name);
+            byte[] bytes = contents.get(name);
+
+            assertThat(entry.getMethod()).as(name).isEqualTo(ZipEntry.STORED);
+            assertThat(entry.getSize()).as(name).isEqualTo(bytes.length);
+            assertThat(entry.getCompressedSize()).as(name).isEqualTo(bytes.length);
+            assertThat(entry.getCrc()).as(name).isEqualTo(crc(bytes));
+        }
+
+        assertThat(entries.get("001.bmp").getMethod()).isEqualTo(ZipEntry.DEFLATED);
+
+        // the same images as single requests
+        assertThat(contents.get("000.png")).isEqualTo(image("-0.12+0.75i", "png"));
+        assertThat(contents.get("001.bmp")).isEqualTo(image("-1", "bmp"));
+        assertThat(contents.get("002.qoi")).isEqualTo(image("0.25", "qoi"));
+    }
+
+    @Test
+    public void testBatchErrorEntries() throws Exception {
+        String body = "[" + set("-1", "") + ", " + set("-1", ", \"palette\": \"nope\"") + ", "
+                      + set("-1", ", \"width\": \"0x40\"") + ", " + set("-1", ", \"format\": \"bmp\"") + "]";
+
+        Map<String, byte[]> contents = unzip(batch(body), new LinkedHashMap<>());
+
+        // a failed set doesn't affect the others
+        assertThat(contents.keySet()).containsExactly("000.png", "001.txt", "002.txt", "003.bmp");
+        assertThat(text(contents.get("001.txt"))).isEqualTo("Unknown palette: nope");
+        assertThat(text(contents.get("002.txt"))).contains("0x40");
+    }
+
+    @Test
+    public void testBatchOnBusyNode() throws Exception {
+        // cached images need no admission
+        String cached = set("-0.5+0.5i", "");
+        unzip(batch("[" + cached + "]"), new LinkedHashMap<>());
+
+        // the permits of earlier requests are given back just after their results
+        for (int i = 0; i < 500 && admissionControl.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        Map<String, byte[]> contents;
+        try (AdmissionControl.Permit ignored = admissionControl.acquire(admissionControl.getBudget())) {
+            contents = unzip(batch("[" + cached + ", " + set("-0.5+0.25i", "") + "]"), new LinkedHashMap<>());
+        }
+
+        assertThat(contents.keySet()).containsExactly("000.png", "001.txt");
+        assertThat(contents.get("000.png")).isEqualTo(image("-0.5+0.5i", "png"));
+        assertThat(text(contents.get("001.txt"))).contains("budget").contains("exhausted");
+    }
+
+    @Test
+    public void testPointsOncePerTree() throws Exception {
+        long before = calculatedTrees();
+
+        // the second format renders the cached tree
+        image("0.3+0.1i", "png");
+        image("0.3+0.1i", "bmp");
+
+        assertThat(calculatedTrees() - before).isEqualTo(1);
+    }
+
+    @Test
+    public void testEscapeMode() throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(escape("width", "48")));
+        assertThat(image.getWidth()).isEqualTo(48);
+        assertThat(image.getHeight()).isEqualTo(48);
+
+        // the height follows from the viewport
+        image = ImageIO.read(new ByteArrayInputStream(escape("width", "48", "xmin", "-1", "xmax", "1",
+                                                             "ymin", "0", "ymax", "0.5")));
+        assertThat(image.getWidth()).isEqualTo(48);
+        assertThat(image.getHeight()).isEqualTo(12);
+
+        for (String name : new String[]{"z0", "palette", "trim", "precision", "grid", "solver"}) {
+            mvc.perform(get("/fractal-music/png").param("type", "square").param("mode", "escape")
+                                .param("imax", "20").param(name, "0"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    private long calculatedTrees() {
+        return registry.find("fractal.points").summaries().stream().mapToLong(DistributionSummary::count).sum();
+    }
+
+    private static String set(String a0, String more) {
+        return String.format(SET, a0, more);
+    }
+
+    private byte[] batch(String body) throws Exception {
+        MvcResult result = mvc.perform(post("/fractal-music/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/zip"))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private byte[] image(String a0, String format) throws Exception {
+        MvcResult result = mvc.perform(get("/fractal-music/png").param("type", "square").param("imax", "8")
+                                               .param("a0", a0).param("width", "64").param("format", format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private byte[] escape(String... parameters) throws Exception {
+        MockHttpServletRequestBuilder builder = get("/fractal-music/png").param("type", "square")
+                .param("a0", "-0.12+0.75i").param("mode", "escape").param("imax", "20");
+
+        for (int i = 0; i < parameters.length; i += 2) {
+            builder.param(parameters[i], parameters[i + 1]);
+        }
+
+        MvcResult result = mvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    // the contents by name in the order of the archive
+    private static Map<String, byte[]> unzip(byte[] zip, Map<String, ZipEntry> entries) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                entries.put(entry.getName(), entry);
+                contents.put(entry.getName(), in.readAllBytes());
+            }
+        }
+
+        return contents;
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
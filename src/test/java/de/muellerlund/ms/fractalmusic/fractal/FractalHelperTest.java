@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.Precision;
+import de.muellerlund.ms.fractalmusic.util.ImageFormat;
+import de.muellerlund.ms.fractalmusic.util.ImageHelper;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FractalHelperTest {
+    private static final Rectangle2D.Double VIEWPORT = new Rectangle2D.Double(-1.0, -0.75, 2.0, 1.5);
+
+    @Test
+    public void testIndexedImage() throws IOException {
+        // points all over the viewport and beyond its borders
+        PointCloud points = points(5000, 12, 4);
+
+        for (Palette palette : Palette.values()) {
+            BufferedImage rgb = FractalHelper.createImage(points, VIEWPORT, 200, palette);
+            BufferedImage indexed = FractalHelper.createIndexedImage(points, VIEWPORT, 200, palette);
+
+            assertThat(indexed.getType()).isEqualTo(BufferedImage.TYPE_BYTE_INDEXED);
+            assertSamePixels(indexed, rgb);
+
+            byte[] png = ImageHelper.asBytes(indexed, ImageFormat.PNG);
+            assertThat(png.length).isLessThan(ImageHelper.asBytes(rgb, ImageFormat.PNG).length);
+            assertSamePixels(ImageIO.read(new ByteArrayInputStream(png)), rgb);
+
+            // the other encoders expand the color table
+            assertThat(ImageHelper.asBytes(indexed, ImageFormat.QOI)).isEqualTo(ImageHelper.asBytes(rgb,
+                                                                                                     ImageFormat.QOI));
+            assertThat(ImageHelper.asBytes(indexed, ImageFormat.BMP)).isEqualTo(ImageHelper.asBytes(rgb,
+                                                                                                     ImageFormat.BMP));
+        }
+    }
+
+    @Test
+    public void testTooManyColors() {
+        // 40 depths and 8 ids exceed the color table
+        PointCloud points = points(5000, 40, 8);
+
+        BufferedImage image = FractalHelper.createIndexedImage(points, VIEWPORT, 200, Palette.CLASSIC);
+
+        assertThat(image.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage rgb = FractalHelper.createImage(points, VIEWPORT, 200, Palette.CLASSIC);
+        assertSamePixels(image, rgb);
+        assertThat(ImageHelper.asBytes(image, ImageFormat.BMP)).isEqualTo(ImageHelper.asBytes(rgb, ImageFormat.BMP));
+    }
+
+    private static PointCloud points(int count, int depths, int ids) {
+        Random random = new Random(42);
+        PointCloud points = PointCloud.create(Precision.DOUBLE, count);
+
+        for (int i = 0; i < count; i++) {
+            points.add(2.4 * random.nextDouble() - 1.2, 1.8 * random.nextDouble() - 0.9, 1 + random.nextInt(depths),
+                       random.nextInt(ids));
+        }
+
+        return points;
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        assertThat(actual.getWidth()).isEqualTo(expected.getWidth());
+        assertThat(actual.getHeight()).isEqualTo(expected.getHeight());
+
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (actual.getRGB(x, y) != expected.getRGB(x, y)) {
+                    assertThat(Integer.toHexString(actual.getRGB(x, y)))
+                            .as("pixel (%d, %d)", x, y)
+                            .isEqualTo(Integer.toHexString(expected.getRGB(x, y)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import de.muellerlund.ms.fractalmusic.util.RequestKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TileCacheTest {
+    @Test
+    public void testMipmap() {
+        TileCache cache = new TileCache(8);
+        TileCache.TileKey key = new TileCache.TileKey(family("f"), 1, 1, 0);
+
+        // children (2, 0), (3, 0), (2, 1), (3, 1) on level 2
+        int[] colors = {0x000000, 0xff0000, 0x00ff00, 0x0000ff};
+        for (int i = 0; i < 3; i++) {
+            cache.put(key.child(i & 1, i >> 1), tile(colors[i]));
+        }
+
+        assertThat(cache.mipmap(key)).isNull();
+
+        cache.put(new TileCache.TileKey(family("f"), 2, 3, 1), tile(colors[3]));
+        int[] rgb = cache.mipmap(key);
+        int half = TileCache.TILE_SIZE / 2;
+
+        assertThat(rgb[0]).isEqualTo(colors[0]);
+        assertThat(rgb[half]).isEqualTo(colors[1]);
+        assertThat(rgb[half * TileCache.TILE_SIZE]).isEqualTo(colors[2]);
+        assertThat(rgb[rgb.length - 1]).isEqualTo(colors[3]);
+    }
+
+    @Test
+    public void testMipmapAverages() {
+        TileCache cache = new TileCache(8);
+        TileCache.TileKey key = new TileCache.TileKey(family("f"), 0, 0, 0);
+        int[] checkerboard = new int[TileCache.TILE_SIZE * TileCache.TILE_SIZE];
+
+        for (int i = 0; i < checkerboard.length; i++) {
+            checkerboard[i] = ((i + i / TileCache.TILE_SIZE) & 1) == 0 ? 0xffffff : 0x000000;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            cache.put(key.child(i & 1, i >> 1), new TileCache.Tile(checkerboard, new byte[0]));
+        }
+
+        assertThat(cache.mipmap(key)).containsOnly(0x808080);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        TileCache cache = new TileCache(2);
+        TileCache.TileKey k1 = new TileCache.TileKey(family("f"), 0, 0, 0);
+        TileCache.TileKey k2 = new TileCache.TileKey(family("g"), 0, 0, 0);
+        TileCache.TileKey k3 = new TileCache.TileKey(family("h"), 0, 0, 0);
+
+        cache.put(k1, tile(1));
+        cache.put(k2, tile(2));
+        cache.get(k1);
+        cache.put(k3, tile(3));
+
+        assertThat(cache.get(k1)).isNotNull();
+        assertThat(cache.get(k2)).isNull();
+        assertThat(cache.get(k3)).isNotNull();
+    }
+
+    private static RequestKey family(String name) {
+        return RequestKey.builder("parameter").add(name).build();
+    }
+
+    private static TileCache.Tile tile(int color) {
+        int[] rgb = new int[TileCache.TILE_SIZE * TileCache.TILE_SIZE];
+        Arrays.fill(rgb, color);
+
+        return new TileCache.Tile(rgb, new byte[0]);
+    }
+}
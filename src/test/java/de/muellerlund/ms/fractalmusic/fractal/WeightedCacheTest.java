@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.fractal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WeightedCacheTest {
+    @Test
+    public void testEvictsByWeight() {
+        WeightedCache<String, byte[]> cache = new WeightedCache<>(10, bytes -> bytes.length);
+
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+        cache.put("c", new byte[4]);
+
+        // b was the least recently used
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+        assertThat(cache.weight()).isEqualTo(8);
+
+        cache.put("a", new byte[2]);
+        assertThat(cache.weight()).isEqualTo(6);
+
+        // too heavy to be cached at all
+        cache.put("d", new byte[11]);
+        assertThat(cache.get("d")).isNull();
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.put("e", new byte[10]);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.weight()).isEqualTo(10);
+    }
+
+    @Test
+    public void testRemovalListener() {
+        List<byte[]> removed = new ArrayList<>();
+        WeightedCache<String, byte[]> cache = new WeightedCache<>(10, bytes -> bytes.length, removed::add);
+        byte[] a = new byte[4];
+        byte[] b = new byte[4];
+        byte[] c = new byte[4];
+        byte[] d = new byte[11];
+        byte[] e = new byte[2];
+
+        cache.put("a", a);
+        cache.put("a", a);
+        cache.put("b", b);
+        cache.put("c", c);
+        cache.put("d", d);
+        cache.put("b", e);
+
+        // evicted, rejected and replaced, putting the same value again keeps it
+        assertThat(removed).containsExactly(a, d, b);
+        assertThat(cache.weight()).isEqualTo(6);
+    }
+
+    @Test
+    public void testCapacityMustBePositive() {
+        assertThatThrownBy(() -> new WeightedCache<String, byte[]>(0, bytes -> bytes.length))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
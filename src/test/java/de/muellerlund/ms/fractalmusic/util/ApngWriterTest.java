@@ -0,0 +1,172 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ApngWriterTest {
+    @Test
+    public void testRoundTrip() throws IOException, DataFormatException {
+        int width = 40;
+        int height = 30;
+        Random random = new Random(42);
+        List<int[]> frames = new ArrayList<>();
+        int[] rgb = new int[width * height];
+        Arrays.fill(rgb, 0xffffff);
+
+        for (int k = 0; k < 5; k++) {
+            rgb = rgb.clone();
+
+            // a few changed pixels, none at all in frame 3
+            for (int i = 0; i < (k == 3 ? 0 : 20); i++) {
+                rgb[10 * width + 5 + random.nextInt(width * 10)] = random.nextInt(1 << 24);
+            }
+
+            frames.add(rgb);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ApngWriter writer = new ApngWriter(out, width, height, frames.size(), 0);
+        for (int k = 0; k < frames.size(); k++) {
+            writer.write(ApngWriter.encode(frames.get(k), k == 0 ? null : frames.get(k - 1), width, height), 40);
+        }
+        writer.finish();
+
+        // decode and compose the frames again
+        ByteBuffer png = ByteBuffer.wrap(out.toByteArray());
+        png.position(8);
+        int[] canvas = new int[width * height];
+        int[] fcTL = null;
+        int frame = 0;
+        int sequence = 0;
+        List<String> types = new ArrayList<>();
+
+        while (png.hasRemaining()) {
+            int length = png.getInt();
+            byte[] type = new byte[4];
+            png.get(type);
+            byte[] data = new byte[length];
+            png.get(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(data);
+            assertThat(png.getInt()).isEqualTo((int) crc.getValue());
+
+            String name = new String(type, StandardCharsets.US_ASCII);
+            types.add(name);
+            ByteBuffer chunk = ByteBuffer.wrap(data);
+
+            switch (name) {
+                case "fcTL" -> {
+                    assertThat(chunk.getInt()).isEqualTo(sequence++);
+                    fcTL = new int[] {chunk.getInt(), chunk.getInt(), chunk.getInt(), chunk.getInt(), 0};
+                    chunk.position(chunk.position() + 5);
+                    fcTL[4] = chunk.get();
+                }
+                case "IDAT", "fdAT" -> {
+                    if (name.equals("fdAT")) {
+                        assertThat(chunk.getInt()).isEqualTo(sequence++);
+                    }
+
+                    compose(canvas, width, fcTL, inflate(chunk));
+                    assertThat(canvas).as("frame " + frame).isEqualTo(frames.get(frame));
+                    frame++;
+                }
+                default -> {
+                }
+            }
+        }
+
+        assertThat(frame).isEqualTo(5);
+        assertThat(types).startsWith("IHDR", "acTL", "fcTL", "IDAT").endsWith("IEND");
+    }
+
+    @Test
+    public void testFrameCount() throws IOException {
+        ApngWriter writer = new ApngWriter(new ByteArrayOutputStream(), 2, 2, 2, 0);
+
+        // the first frame must cover the whole image
+        assertThatThrownBy(() -> writer.write(ApngWriter.encode(new int[4], null, 1, 1), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        writer.write(ApngWriter.encode(new int[4], null, 2, 2), 10);
+        assertThatThrownBy(writer::finish).isInstanceOf(IllegalStateException.class);
+
+        writer.write(ApngWriter.encode(new int[4], new int[4], 2, 2), 10);
+        writer.finish();
+        assertThatThrownBy(() -> writer.write(ApngWriter.encode(new int[4], null, 2, 2), 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static byte[] inflate(ByteBuffer chunk) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(chunk);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+
+        while (!inflater.finished()) {
+            raw.write(buffer, 0, inflater.inflate(buffer));
+        }
+
+        inflater.end();
+
+        return raw.toByteArray();
+    }
+
+    // undoes the up filter and draws the rows over the canvas
+    private static void compose(int[] canvas, int width, int[] fcTL, byte[] raw) {
+        int w = fcTL[0];
+        int h = fcTL[1];
+        int row = 1 + 4 * w;
+
+        for (int y = 0; y < h; y++) {
+            assertThat(raw[y * row]).isEqualTo((byte) 2);
+
+            for (int o = y * row + 1; y > 0 && o < (y + 1) * row; o++) {
+                raw[o] += raw[o - row];
+            }
+
+            for (int x = 0; x < w; x++) {
+                int o = y * row + 1 + 4 * x;
+                int alpha = raw[o + 3] & 0xff;
+
+                if (fcTL[4] == 0 || alpha != 0) {
+                    assertThat(alpha).isEqualTo(255);
+                    canvas[(fcTL[3] + y) * width + fcTL[2] + x] =
+                            (raw[o] & 0xff) << 16 | (raw[o + 1] & 0xff) << 8 | raw[o + 2] & 0xff;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import de.muellerlund.math.complex.MutableComplex;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.complex.ComplexFormat;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.ParsePosition;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ComplexParserTest {
+    @Test
+    public void testLikeComplexFormat() {
+        List<String> literals = List.of(
+                "1", "  -0.12+0.75i", "-0.12 + 0.75i ", "1-2i", "1+-2i", "0+0i", "-0-0i", "-0.0", "1,234.5",
+                "1,234.5+1,000i", "1.", ".5", "007.25", "1E3", "1E-3+2E2i", "1.5E-3 - 2i", "0.000000000000000000000001",
+                "123456789012345678901234567890", "1e3", "1E+3", "1E-", "i", "1+2", "1+2 i", "1+2ix",
+                "", " ", "abc", ".", "-", "1.234,5", "1+i", "1-.5i");
+
+        assertSameAs(Locale.US, literals);
+        assertSameAs(Locale.GERMANY, List.of("-0,12+0,75i", "1.234,5", "1,5E-3-2i", "1,234.5", "1.5", "12,"));
+
+        // ComplexFormat ignores a single character after the real part if it is the last one
+        ComplexParser parser = ComplexParser.of(Locale.US);
+        assertThat(parser.parse("1E", MutableComplex.zero())).isFalse();
+        assertThat(parser.parse("1 2", MutableComplex.zero())).isFalse();
+
+        // and reads 0.75i as 0.75
+        MutableComplex z = MutableComplex.zero();
+        assertThat(parser.parse("-0.75i", z)).isTrue();
+        assertThat(z.real()).isEqualTo(0.0);
+        assertThat(z.imag()).isEqualTo(-0.75);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ComplexParser parser = ComplexParser.of(Locale.US);
+        MutableComplex z = MutableComplex.zero();
+        Random random = new Random(42);
+
+        for (int k = 0; k < 10000; k++) {
+            // all magnitudes and the shortest decimals of doubles
+            double re = Double.longBitsToDouble(random.nextLong());
+            double im = random.nextGaussian();
+            if (!Double.isFinite(re)) {
+                continue;
+            }
+
+            assertThat(parser.parse(re + (im < 0 ? "" : "+") + im + "i", z)).isTrue();
+            assertThat(z.real()).isEqualTo(re);
+            assertThat(z.imag()).isEqualTo(im);
+
+            // plain decimals with up to 25 digits
+            String plain = new BigDecimal(random.nextLong()).movePointLeft(random.nextInt(25)).toPlainString();
+            assertThat(parser.parse(plain, z)).isTrue();
+            assertThat(z.real()).as(plain).isEqualTo(Double.parseDouble(plain));
+        }
+    }
+
+    @Test
+    public void testNumberHelper() {
+        MutableComplex one = MutableComplex.one();
+
+        assertThat(NumberHelper.parseComplex("-0.12+0.75i", one, Locale.US).imag()).isEqualTo(0.75);
+        assertThat(NumberHelper.parseComplex("invalid", one, Locale.US).real()).isEqualTo(1.0);
+        assertThat(NumberHelper.parseComplex(null, one, Locale.US)).isNotSameAs(one);
+
+        // overflows fall back to the default
+        assertThat(NumberHelper.parseComplex("1E400", one, Locale.US).real()).isEqualTo(1.0);
+        assertThat(NumberHelper.parseComplex("1-1E400i", one, Locale.US).imag()).isEqualTo(0.0);
+        assertThat(NumberHelper.parseComplex("1E308", one, Locale.US).real()).isEqualTo(1e308);
+    }
+
+    private static void assertSameAs(Locale locale, List<String> literals) {
+        ComplexParser parser = ComplexParser.of(locale);
+        ComplexFormat format = ComplexFormat.getInstance(locale);
+
+        for (String literal : literals) {
+            ParsePosition position = new ParsePosition(0);
+            Complex expected = format.parse(literal, position);
+            boolean valid = expected != null && literal.substring(position.getIndex()).isBlank();
+            MutableComplex z = MutableComplex.zero();
+
+            assertThat(parser.parse(literal, z)).as(literal).isEqualTo(valid);
+
+            if (valid) {
+                assertThat(z.real()).as(literal).isEqualTo(expected.getReal());
+                assertThat(z.imag()).as(literal).isEqualTo(expected.getImaginary());
+            }
+        }
+    }
+}
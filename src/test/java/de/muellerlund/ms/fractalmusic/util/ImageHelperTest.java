@@ -0,0 +1,169 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ImageHelperTest {
+    @Test
+    public void testQoi() {
+        BufferedImage image = sample(37, 23);
+        byte[] qoi = ImageHelper.asBytes(image, ImageFormat.QOI);
+
+        assertThat(decodeQoi(qoi)).isEqualTo(raster(image));
+
+        // runs, small differences and repeated colors compress well
+        assertThat(qoi.length).isLessThan(3 * 37 * 23);
+    }
+
+    @Test
+    public void testQoiLongRun() {
+        BufferedImage image = new BufferedImage(100, 3, BufferedImage.TYPE_INT_RGB);
+        raster(image)[250] = 0x123456;
+
+        assertThat(decodeQoi(ImageHelper.asBytes(image, ImageFormat.QOI))).isEqualTo(raster(image));
+    }
+
+    @Test
+    public void testBmp() throws IOException {
+        BufferedImage image = sample(37, 23);
+        byte[] bmp = ImageHelper.asBytes(image, ImageFormat.BMP);
+        BufferedImage read = ImageIO.read(new ByteArrayInputStream(bmp));
+
+        assertThat(bmp.length).isEqualTo(14 + 40 + 4 * 37 * 23);
+        assertThat(read.getWidth()).isEqualTo(37);
+        assertThat(read.getHeight()).isEqualTo(23);
+
+        for (int y = 0; y < 23; y++) {
+            for (int x = 0; x < 37; x++) {
+                assertThat(read.getRGB(x, y) & 0xffffff).isEqualTo(image.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    @Test
+    public void testParse() {
+        assertThat(ImageFormat.parse("QOI")).isEqualTo(ImageFormat.QOI);
+        assertThat(ImageFormat.parse("bmp").mediaType()).isEqualTo(ImageFormat.BMP_MEDIA_TYPE);
+        assertThatThrownBy(() -> ImageFormat.parse("gif")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // flat areas, gradients and noise
+    private static BufferedImage sample(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] rgb = raster(image);
+        Random random = new Random(42);
+
+        for (int i = 0; i < rgb.length; i++) {
+            int x = i % width;
+            int y = i / width;
+
+            if (y < height / 3) {
+                rgb[i] = x < width / 2 ? 0xffffff : 0x336699;
+            }
+            else if (y < 2 * height / 3) {
+                rgb[i] = (4 * x) << 16 | (4 * y) << 8 | 128;
+            }
+            else {
+                rgb[i] = random.nextInt(4) == 0 ? random.nextInt(1 << 24) : 0x102030;
+            }
+        }
+
+        return image;
+    }
+
+    private static int[] raster(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    // straight from the specification, 0x00RRGGBB
+    private static int[] decodeQoi(byte[] qoi) {
+        ByteBuffer in = ByteBuffer.wrap(qoi);
+        assertThat(in.getInt()).isEqualTo('q' << 24 | 'o' << 16 | 'i' << 8 | 'f');
+        int width = in.getInt();
+        int height = in.getInt();
+        assertThat(in.get()).isEqualTo((byte) 3);
+        in.get();
+
+        int[] rgb = new int[width * height];
+        int[] index = new int[64];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int a = 255;
+
+        for (int i = 0; i < rgb.length; ) {
+            int op = in.get() & 255;
+
+            if (op == 0xfe) {
+                r = in.get() & 255;
+                g = in.get() & 255;
+                b = in.get() & 255;
+            }
+            else if (op == 0xff) {
+                r = in.get() & 255;
+                g = in.get() & 255;
+                b = in.get() & 255;
+                a = in.get() & 255;
+            }
+            else if ((op & 0xc0) == 0x00) {
+                int px = index[op];
+                a = px >>> 24;
+                r = px >> 16 & 255;
+                g = px >> 8 & 255;
+                b = px & 255;
+            }
+            else if ((op & 0xc0) == 0x40) {
+                r = r + (op >> 4 & 3) - 2 & 255;
+                g = g + (op >> 2 & 3) - 2 & 255;
+                b = b + (op & 3) - 2 & 255;
+            }
+            else if ((op & 0xc0) == 0x80) {
+                int dg = (op & 63) - 32;
+                int next = in.get() & 255;
+                r = r + dg + (next >> 4) - 8 & 255;
+                g = g + dg & 255;
+                b = b + dg + (next & 15) - 8 & 255;
+            }
+            else {
+                for (int k = (op & 63); k > 0; k--) {
+                    rgb[i++] = r << 16 | g << 8 | b;
+                }
+            }
+
+            index[(r * 3 + g * 5 + b * 7 + a * 11) & 63] = a << 24 | r << 16 | g << 8 | b;
+            rgb[i++] = r << 16 | g << 8 | b;
+        }
+
+        assertThat(in.getLong()).isEqualTo(1L);
+        assertThat(in.hasRemaining()).isFalse();
+
+        return rgb;
+    }
+}
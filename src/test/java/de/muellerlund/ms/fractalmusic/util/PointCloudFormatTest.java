@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import de.muellerlund.math.complex.MutableComplex;
+import de.muellerlund.ms.fractalmusic.calculation.Calculator;
+import de.muellerlund.ms.fractalmusic.calculation.PointCloud;
+import de.muellerlund.ms.fractalmusic.calculation.Precision;
+import de.muellerlund.ms.fractalmusic.calculation.fractals.SquareFractal;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PointCloudFormatTest {
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (Precision precision : Precision.values()) {
+            PointCloud cloud = tree(precision);
+
+            for (boolean delta : new boolean[] {false, true}) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                long written = PointCloudFormat.write(cloud, delta, out);
+                PointCloud read = PointCloudFormat.read(new ByteArrayInputStream(out.toByteArray()));
+
+                assertThat(written).isEqualTo(out.size());
+                assertThat(read.precision()).isEqualTo(precision);
+                assertThat(read.size()).isEqualTo(cloud.size());
+
+                for (int i = 0; i < cloud.size(); i++) {
+                    assertThat(read.re(i)).isEqualTo(cloud.re(i));
+                    assertThat(read.im(i)).isEqualTo(cloud.im(i));
+                    assertThat(read.depth(i)).isEqualTo(cloud.depth(i));
+                    assertThat(read.id(i)).isEqualTo(cloud.id(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSymmetricCloud() throws IOException {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+        Complex z0 = new Complex(1.0, 0.5);
+        PointCloud symmetric = Calculator.calculate(fractal, z0, 10, Precision.DOUBLE, null, 0.0, true);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PointCloudFormat.write(symmetric, true, out);
+        PointCloud read = PointCloudFormat.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(read.symmetry()).isEqualTo(1);
+        assertThat(read.size()).isEqualTo(symmetric.count());
+        assertThat(read.re(2)).isEqualTo(-symmetric.re(1));
+        assertThat(read.id(2)).isEqualTo(1);
+    }
+
+    @Test
+    public void testRawLayout() throws IOException {
+        PointCloud cloud = PointCloud.create(Precision.FLOAT, 1);
+        cloud.add(0.5, -2.0, 3, 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PointCloudFormat.write(cloud, false, out);
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        assertThat(buffer.remaining()).isEqualTo(16 + 12);
+        assertThat(new byte[] {buffer.get(), buffer.get(), buffer.get(), buffer.get()}).isEqualTo("MLSP".getBytes());
+        assertThat(buffer.get()).isEqualTo((byte) 1);
+        assertThat(buffer.get()).isEqualTo((byte) 0);
+        assertThat(buffer.get()).isEqualTo((byte) 4);
+        assertThat(buffer.get()).isEqualTo((byte) 0);
+        assertThat(buffer.getLong()).isEqualTo(1L);
+        assertThat(buffer.getFloat()).isEqualTo(0.5f);
+        assertThat(buffer.getFloat()).isEqualTo(-2.0f);
+        assertThat(buffer.getInt()).isEqualTo(3 << 8 | 1);
+    }
+
+    @Test
+    public void testDeltaIsSmaller() throws IOException {
+        PointCloud cloud = tree(Precision.FLOAT);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+
+        PointCloudFormat.write(cloud, false, raw);
+        PointCloudFormat.write(cloud, true, delta);
+
+        assertThat(delta.size()).isLessThan(raw.size());
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PointCloudFormat.write(tree(Precision.DOUBLE), true, out);
+        byte[] bytes = out.toByteArray();
+
+        assertThatThrownBy(() -> PointCloudFormat.read(new ByteArrayInputStream(bytes, 0, bytes.length - 1)))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> PointCloudFormat.read(new ByteArrayInputStream(new byte[16])))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static PointCloud tree(Precision precision) {
+        SquareFractal fractal = new SquareFractal();
+        fractal.getC().assign(new MutableComplex(-0.12, 0.75));
+
+        return Calculator.calculate(fractal, new Complex(1.0, 0.5), 12, precision);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 Sönke Müller-Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.muellerlund.ms.fractalmusic.util;
+
+import de.muellerlund.math.complex.MutableComplex;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestKeyTest {
+    @Test
+    public void testEquality() {
+        RequestKey key = RequestKey.builder("escape").add(ImageFormat.PNG).add(1000).add(new MutableComplex(-0.12, 0.75))
+                .build();
+
+        assertThat(key).isEqualTo(RequestKey.builder("escape").add(ImageFormat.PNG).add(1000L)
+                                          .add(new MutableComplex(-0.120, 0.750)).build());
+        assertThat(key.hashCode()).isEqualTo(RequestKey.builder("escape").add(ImageFormat.PNG).add(1000)
+                                                     .add(new MutableComplex(-0.12, 0.75)).build().hashCode());
+
+        assertThat(key).isNotEqualTo(RequestKey.builder("zoom").add(ImageFormat.PNG).add(1000)
+                                             .add(new MutableComplex(-0.12, 0.75)).build());
+        assertThat(key).isNotEqualTo(RequestKey.builder("escape").add(ImageFormat.QOI).add(1000)
+                                             .add(new MutableComplex(-0.12, 0.75)).build());
+        assertThat(RequestKey.builder("k").add(0.0).build()).isNotEqualTo(RequestKey.builder("k").add(-0.0).build());
+        assertThat(RequestKey.builder("k").add(Double.NaN).build())
+                .isEqualTo(RequestKey.builder("k").add(Double.longBitsToDouble(0x7ff0000000000123L)).build());
+    }
+
+    @Test
+    public void testStrings() {
+        // the length separates strings sharing their packed words
+        assertThat(RequestKey.builder("ab").build()).isNotEqualTo(RequestKey.builder("\0ab").build());
+        assertThat(RequestKey.builder("a").add("bc").build()).isNotEqualTo(RequestKey.builder("ab").add("c").build());
+        assertThat(RequestKey.builder("preimages").build().toBytes()).hasSize(8 * 4);
+    }
+
+    @Test
+    public void testExtend() {
+        RequestKey geometry = RequestKey.builder("preimages").add(10).add(new MutableComplex(1.0, 0.0)).build();
+        RequestKey image = geometry.extend().add(800).build();
+
+        // grows beyond the initial capacity
+        RequestKey.Builder builder = geometry.extend();
+        for (int i = 0; i < 100; i++) {
+            builder.add(i);
+        }
+
+        assertThat(image).isNotEqualTo(geometry);
+        assertThat(image).isEqualTo(RequestKey.builder("preimages").add(10).add(new MutableComplex(1.0, 0.0)).add(800)
+                                            .build());
+        assertThat(builder.build().toBytes()).hasSize(image.toBytes().length + 8 * 99);
+    }
+}